@@ -0,0 +1,97 @@
+package solitaire.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import solitaire.BitboardMarbleSolitaireModel;
+import solitaire.MarbleSolitaireModel;
+import solitaire.MarbleSolitaireModelImpl;
+
+/**
+ * This class measures the four constructors of each model. The constructors that take no arm
+ * thickness always build a board with arm thickness 3.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConstructorBenchmark {
+
+  /**
+   * The arm thickness of the boards built by the constructors that take one.
+   */
+  @State(Scope.Benchmark)
+  public static class Size {
+    @Param({"1", "3", "5", "9", "51", "201"})
+    private int armThickness;
+  }
+
+  /**
+   * Measure the constructor that takes no arguments.
+   */
+  @Benchmark
+  public MarbleSolitaireModel implDefault() {
+    return new MarbleSolitaireModelImpl();
+  }
+
+  /**
+   * Measure the constructor that takes the arm thickness.
+   */
+  @Benchmark
+  public MarbleSolitaireModel implArmThickness(Size size) {
+    return new MarbleSolitaireModelImpl(size.armThickness);
+  }
+
+  /**
+   * Measure the constructor that takes the empty cell.
+   */
+  @Benchmark
+  public MarbleSolitaireModel implEmptyCell() {
+    return new MarbleSolitaireModelImpl(2, 3);
+  }
+
+  /**
+   * Measure the constructor that takes the arm thickness and the empty cell, with the empty cell
+   * at the top of the board.
+   */
+  @Benchmark
+  public MarbleSolitaireModel implArmThicknessAndEmptyCell(Size size) {
+    return new MarbleSolitaireModelImpl(size.armThickness, 0, size.armThickness);
+  }
+
+  /**
+   * Measure the constructor that takes no arguments.
+   */
+  @Benchmark
+  public MarbleSolitaireModel bitboardDefault() {
+    return new BitboardMarbleSolitaireModel();
+  }
+
+  /**
+   * Measure the constructor that takes the arm thickness.
+   */
+  @Benchmark
+  public MarbleSolitaireModel bitboardArmThickness(Size size) {
+    return new BitboardMarbleSolitaireModel(size.armThickness);
+  }
+
+  /**
+   * Measure the constructor that takes the empty cell.
+   */
+  @Benchmark
+  public MarbleSolitaireModel bitboardEmptyCell() {
+    return new BitboardMarbleSolitaireModel(2, 3);
+  }
+
+  /**
+   * Measure the constructor that takes the arm thickness and the empty cell, with the empty cell
+   * at the top of the board.
+   */
+  @Benchmark
+  public MarbleSolitaireModel bitboardArmThicknessAndEmptyCell(Size size) {
+    return new BitboardMarbleSolitaireModel(size.armThickness, 0, size.armThickness);
+  }
+}
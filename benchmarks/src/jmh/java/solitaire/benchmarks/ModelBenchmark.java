@@ -0,0 +1,75 @@
+package solitaire.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import solitaire.MarbleSolitaireModel;
+
+/**
+ * This class measures the queries of a model and the rejection of an illegal move, on a new game
+ * of each size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ModelBenchmark {
+  @Param({"1", "3", "5", "9", "51", "201"})
+  private int armThickness;
+
+  @Param({ModelFactory.IMPL, ModelFactory.BITBOARD})
+  private String implementation;
+
+  private MarbleSolitaireModel model;
+
+  /**
+   * Construct the game every benchmark of this class runs on.
+   */
+  @Setup
+  public void setUp() {
+    model = ModelFactory.create(implementation, armThickness);
+  }
+
+  /**
+   * Measure isGameOver.
+   */
+  @Benchmark
+  public boolean isGameOver() {
+    return model.isGameOver();
+  }
+
+  /**
+   * Measure getGameState of a board that has not changed since it was last rendered, which
+   * returns the kept string. {@link RenderBenchmark} measures the rendering itself.
+   */
+  @Benchmark
+  public String getGameState() {
+    return model.getGameState();
+  }
+
+  /**
+   * Measure getScore.
+   */
+  @Benchmark
+  public int getScore() {
+    return model.getScore();
+  }
+
+  /**
+   * Measure a move that move rejects with an exception, because the to position is not empty.
+   */
+  @Benchmark
+  public String moveRejected() {
+    try {
+      model.move(0, armThickness, 2, armThickness);
+      return null;
+    } catch (IllegalArgumentException e) {
+      return e.getMessage();
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package solitaire.benchmarks;
+
+import solitaire.BitboardMarbleSolitaireModel;
+import solitaire.ConcurrentMarbleSolitaireModel;
+import solitaire.MarbleSolitaireModel;
+import solitaire.MarbleSolitaireModelImpl;
+
+/**
+ * This class builds the model implementation a benchmark is parameterized with.
+ */
+final class ModelFactory {
+  static final String IMPL = "impl";
+  static final String BITBOARD = "bitboard";
+  static final String CONCURRENT = "concurrent";
+
+  private ModelFactory() {
+  }
+
+  /**
+   * Construct a new game with the empty cell at the center.
+   *
+   * @param implementation {@link #IMPL}, {@link #BITBOARD} or {@link #CONCURRENT}, which wraps
+   *                       {@link #IMPL}
+   * @param armThickness   the arm thickness of the board
+   * @return the new game
+   */
+  static MarbleSolitaireModel create(String implementation, int armThickness) {
+    if (BITBOARD.equals(implementation)) {
+      return new BitboardMarbleSolitaireModel(armThickness);
+    }
+    if (CONCURRENT.equals(implementation)) {
+      return new ConcurrentMarbleSolitaireModel(new MarbleSolitaireModelImpl(armThickness));
+    }
+    return new MarbleSolitaireModelImpl(armThickness);
+  }
+}
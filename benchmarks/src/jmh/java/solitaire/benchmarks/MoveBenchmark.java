@@ -0,0 +1,47 @@
+package solitaire.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import solitaire.MarbleSolitaireModel;
+
+/**
+ * This class measures a legal move. Each invocation makes a move into the center and takes it
+ * back, so the board is the same for every invocation. Boards with arm thickness 1 have no legal
+ * move, so they are not measured here.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MoveBenchmark {
+  @Param({"3", "5", "9", "51", "201"})
+  private int armThickness;
+
+  @Param({ModelFactory.IMPL, ModelFactory.BITBOARD})
+  private String implementation;
+
+  private MarbleSolitaireModel model;
+
+  /**
+   * Construct the game every benchmark of this class runs on.
+   */
+  @Setup
+  public void setUp() {
+    model = ModelFactory.create(implementation, armThickness);
+  }
+
+  /**
+   * Measure move, together with the undo that restores the board.
+   */
+  @Benchmark
+  public boolean moveAndUndo() {
+    model.move(armThickness - 2, armThickness, armThickness, armThickness);
+    return model.undo();
+  }
+}
@@ -0,0 +1,85 @@
+package solitaire.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import solitaire.MarbleSolitaireModel;
+
+/**
+ * This class measures rendering a board that changed since it was last rendered, so the game
+ * state kept by a model is never the one returned. Each invocation first makes a move into the
+ * center or takes it back, in turn, so the board alternates between two states. The change alone
+ * is measured too, to be subtracted from the others. Boards with arm thickness 1 have no legal
+ * move, so they are not measured here.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RenderBenchmark {
+  @Param({"3", "5", "9", "51", "201"})
+  private int armThickness;
+
+  @Param({ModelFactory.IMPL, ModelFactory.BITBOARD, ModelFactory.CONCURRENT})
+  private String implementation;
+
+  private MarbleSolitaireModel model;
+  private ByteBuffer buffer;
+  private boolean moved;
+
+  /**
+   * Construct the game every benchmark of this class runs on, and a buffer that fits its state.
+   */
+  @Setup
+  public void setUp() {
+    model = ModelFactory.create(implementation, armThickness);
+    int size = model.getBoardSize();
+    buffer = ByteBuffer.allocate(2 * size * size - 1);
+    moved = false;
+  }
+
+  private void changeBoard() {
+    if (moved) {
+      model.undo();
+    } else {
+      model.move(armThickness - 2, armThickness, armThickness, armThickness);
+    }
+    moved = !moved;
+  }
+
+  /**
+   * Measure the move or undo that every other benchmark of this class starts with.
+   */
+  @Benchmark
+  public int changeOnly() {
+    changeBoard();
+    return model.getScore();
+  }
+
+  /**
+   * Measure getGameState of a board that was just changed, together with the change.
+   */
+  @Benchmark
+  public String getGameState() {
+    changeBoard();
+    return model.getGameState();
+  }
+
+  /**
+   * Measure renderTo into a reused buffer, of a board that was just changed, together with the
+   * change.
+   */
+  @Benchmark
+  public ByteBuffer renderToBuffer() {
+    changeBoard();
+    buffer.clear();
+    model.renderTo(buffer);
+    return buffer;
+  }
+}
@@ -0,0 +1,60 @@
+package solitaire.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import solitaire.MarbleSolitaireModel;
+import solitaire.MarbleSolitaireModelImpl;
+import solitaire.RolloutEngine;
+import solitaire.RolloutResult;
+
+/**
+ * This class measures random playouts from the opening of a board, on one worker thread so that
+ * the result is the cost of a single playout.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RolloutBenchmark {
+  private static final int PLAYOUTS = 1000;
+
+  @Param({"3", "5", "9"})
+  private int armThickness;
+
+  private MarbleSolitaireModel model;
+  private RolloutEngine engine;
+
+  /**
+   * Construct the game and the engine every benchmark of this class runs on.
+   */
+  @Setup
+  public void setUp() {
+    model = new MarbleSolitaireModelImpl(armThickness);
+    engine = new RolloutEngine(1);
+  }
+
+  /**
+   * Stop the worker thread of the engine.
+   */
+  @TearDown
+  public void tearDown() {
+    engine.close();
+  }
+
+  /**
+   * Measure one playout, averaged over a batch.
+   */
+  @Benchmark
+  @OperationsPerInvocation(PLAYOUTS)
+  public RolloutResult playout() {
+    return engine.run(model, PLAYOUTS, 42);
+  }
+}
@@ -0,0 +1,60 @@
+package solitaire;
+
+/**
+ * This class represents the operations offered by the marble solitaire model, with the board
+ * stored as packed bits instead of strings. Only the valid cells of the cross-shaped board are
+ * stored, one bit per cell, where a set bit is a marble and a clear bit is an empty cell. The
+ * cells are numbered as described in {@link BoardGeometry}.
+ * One object of the model represents one game of marble solitaire. {@link MarbleSolitaireModelImpl}
+ * stores its board the same way, so this model is that one under the name it was first offered
+ * by, and everything it does is done by {@link MarbleSolitaireModelImpl}.
+ */
+public class BitboardMarbleSolitaireModel extends MarbleSolitaireModelImpl {
+
+  /**
+   * Construct a new game of Marble Solitaire using the default arm thickness of 3 and the empty
+   * cell at the center.
+   */
+  public BitboardMarbleSolitaireModel() {
+    super();
+  }
+
+  /**
+   * Construct a new game of Marble Solitaire using user input for the arm thickness and the empty
+   * cell at the center.
+   *
+   * @param armThickness the arm thickness of the board
+   * @throws IllegalArgumentException if the arm thickness is invalid
+   */
+  public BitboardMarbleSolitaireModel(int armThickness) {
+    super(armThickness);
+  }
+
+  /**
+   * Construct a new game of Marble Solitaire using two parameters:emptyRow and emptyColumn.
+   * The arm thickness is set to 3 by default.
+   * The empty cell is set to the position (emptyRow, emptyColumn).
+   *
+   * @param emptyRow    the row number of the empty cell
+   * @param emptyColumn the column number of the empty cell
+   * @throws IllegalArgumentException if the empty cell position is invalid
+   */
+  public BitboardMarbleSolitaireModel(int emptyRow, int emptyColumn) {
+    super(emptyRow, emptyColumn);
+  }
+
+  /**
+   * Construct a new game of Marble Solitaire using three parameters:armThickness, emptyRow and
+   * emptyColumn.
+   * The empty cell is set to the position (emptyRow, emptyColumn).
+   *
+   * @param armThickness the arm thickness of the board
+   * @param emptyRow     the row number of the empty cell
+   * @param emptyColumn  the column number of the empty cell
+   * @throws IllegalArgumentException if the arm thickness is invalid
+   * @throws IllegalArgumentException if the empty cell position is invalid
+   */
+  public BitboardMarbleSolitaireModel(int armThickness, int emptyRow, int emptyColumn) {
+    super(armThickness, emptyRow, emptyColumn);
+  }
+}
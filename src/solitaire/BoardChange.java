@@ -0,0 +1,143 @@
+package solitaire;
+
+/**
+ * This class represents how one move, or taking one move back, changed a board: the three cells
+ * of the move, and the score and whether the game was over afterwards. A move empties the cell it
+ * is made from and the cell it jumps over, and puts a marble on the cell it is made to; taking it
+ * back does the opposite. No other cell changes, so a copy of the board can be kept up to date
+ * from these changes alone.
+ */
+public final class BoardChange {
+  private final int move;
+  private final boolean undo;
+  private final int score;
+  private final boolean gameOver;
+
+  BoardChange(int move, boolean undo, int score, boolean gameOver) {
+    this.move = move;
+    this.undo = undo;
+    this.score = score;
+    this.gameOver = gameOver;
+  }
+
+  /**
+   * Return the move, encoded as described in {@link Moves}.
+   *
+   * @return the encoded move
+   */
+  public int getMove() {
+    return move;
+  }
+
+  /**
+   * Determine if the move was taken back rather than made.
+   *
+   * @return true if the move was taken back, false if it was made or made again
+   */
+  public boolean isUndo() {
+    return undo;
+  }
+
+  /**
+   * Return the row number of the position the move is made from.
+   *
+   * @return the row number of the from position
+   */
+  public int getFromRow() {
+    return Moves.fromRow(move);
+  }
+
+  /**
+   * Return the column number of the position the move is made from.
+   *
+   * @return the column number of the from position
+   */
+  public int getFromCol() {
+    return Moves.fromCol(move);
+  }
+
+  /**
+   * Return the row number of the position the move jumps over.
+   *
+   * @return the row number of the jumped position
+   */
+  public int getOverRow() {
+    return Moves.fromRow(move) + Moves.rowStep(Moves.direction(move));
+  }
+
+  /**
+   * Return the column number of the position the move jumps over.
+   *
+   * @return the column number of the jumped position
+   */
+  public int getOverCol() {
+    return Moves.fromCol(move) + Moves.colStep(Moves.direction(move));
+  }
+
+  /**
+   * Return the row number of the position the move is made to.
+   *
+   * @return the row number of the to position
+   */
+  public int getToRow() {
+    return Moves.toRow(move);
+  }
+
+  /**
+   * Return the column number of the position the move is made to.
+   *
+   * @return the column number of the to position
+   */
+  public int getToCol() {
+    return Moves.toCol(move);
+  }
+
+  /**
+   * Return what the from and jumped positions hold after the change.
+   *
+   * @return {@link Elements#EMPTY} if the move was made, {@link Elements#MARBLE} if it was taken
+   *         back
+   */
+  public Elements getFromElement() {
+    return undo ? Elements.MARBLE : Elements.EMPTY;
+  }
+
+  /**
+   * Return what the to position holds after the change.
+   *
+   * @return {@link Elements#MARBLE} if the move was made, {@link Elements#EMPTY} if it was taken
+   *         back
+   */
+  public Elements getToElement() {
+    return undo ? Elements.EMPTY : Elements.MARBLE;
+  }
+
+  /**
+   * Return the number of marbles on the board after the change.
+   *
+   * @return the score
+   */
+  public int getScore() {
+    return score;
+  }
+
+  /**
+   * Determine if the game was over after the change.
+   *
+   * @return true if no more moves could be made, false otherwise
+   */
+  public boolean isGameOver() {
+    return gameOver;
+  }
+
+  /**
+   * Return a short description of the change, its cells, the score and whether the game is over.
+   *
+   * @return the description of the change
+   */
+  @Override
+  public String toString() {
+    return (undo ? "undo " : "move ") + "(" + getFromRow() + ", " + getFromCol() + ") -> ("
+        + getToRow() + ", " + getToCol() + "), score " + score + (gameOver ? ", game over" : "");
+  }
+}
@@ -0,0 +1,17 @@
+package solitaire;
+
+/**
+ * This interface represents something that is told about every change of the board of an
+ * {@link ObservableMarbleSolitaireModel}, on the thread that made the change, right after it was
+ * made. An exception thrown by a listener is reported to the uncaught exception handler of that
+ * thread, and does not keep the change from the other listeners.
+ */
+@FunctionalInterface
+public interface BoardChangeListener {
+  /**
+   * Be told about a change of the board.
+   *
+   * @param change the change
+   */
+  void boardChanged(BoardChange change);
+}
@@ -0,0 +1,314 @@
+package solitaire;
+
+import java.util.Arrays;
+
+/**
+ * This class describes the shape of a cross-shaped board of a given arm thickness: which cells
+ * are valid, and how the valid cells are numbered so that a board can be stored as one bit per
+ * valid cell. Cells are numbered row by row, skipping the invalid corners: the top arm first, then
+ * the full-width middle rows, then the bottom arm.
+ *
+ * <p>Geometries are immutable and obtained through {@link #of(int)}, which shares one geometry
+ * between all the boards of a given arm thickness up to {@value #MAX_CACHED_ARM}. Those shared
+ * geometries also hold precomputed tables: a full board to copy, the position of every cell and
+ * the cells jumped over and landed on by every jump, so models can start a game with a copy and
+ * follow jumps without testing positions. Larger boards get a geometry of their own that computes
+ * everything from the arm thickness, so it takes constant memory whatever the size of the board.
+ * The arm thickness is at most {@value #MAX_ARM_THICKNESS}, so that every row and column number
+ * fits in the 15 bits {@link Moves} keeps for it.
+ */
+final class BoardGeometry {
+  static final int MAX_ARM_THICKNESS = 16383;
+  static final int MAX_CACHED_ARM = 63;
+  //filled lazily; a thread that sees no geometry yet builds an equal one, which is harmless
+  private static final BoardGeometry[] CACHE = new BoardGeometry[(MAX_CACHED_ARM + 1) / 2];
+
+  final int armThickness;
+  final int boardWidth;
+  //the first and last row (or column) of the arms, every cell outside both is invalid
+  final int armStart;
+  final int armEnd;
+  final int cellCount;
+  //the number of valid cells in each class of LostPositions.residue, which must not be changed
+  final int[] residueCounts = new int[9];
+  //the tables below are only built for shared geometries, they are null otherwise
+  //the row and column number of every cell
+  final int[] cellRows;
+  final int[] cellCols;
+  //the cell jumped over and the cell landed on by the jump from cell i in direction d, at index
+  //4 * i + d, or -1 if the jump leaves the board
+  final int[] jumpOver;
+  final int[] jumpTo;
+  private final long[] template;
+  private long allCellsHash;
+  //written after allCellsHash, so a thread that sees it set also sees the hash
+  private volatile boolean allCellsHashed;
+
+  /**
+   * Return the geometry of a board, shared with every other board of the same arm thickness if
+   * the board is small enough.
+   *
+   * @param armThickness a positive odd arm thickness
+   * @return the geometry
+   * @throws IllegalArgumentException if the arm thickness is larger than
+   *                                  {@value #MAX_ARM_THICKNESS}
+   */
+  static BoardGeometry of(int armThickness) throws IllegalArgumentException {
+    if (armThickness > MAX_CACHED_ARM) {
+      return new BoardGeometry(armThickness, false);
+    }
+    BoardGeometry geometry = CACHE[armThickness / 2];
+    if (geometry == null) {
+      geometry = new BoardGeometry(armThickness, true);
+      CACHE[armThickness / 2] = geometry;
+    }
+    return geometry;
+  }
+
+  /**
+   * Construct the geometry of a board.
+   *
+   * @param armThickness a positive odd arm thickness
+   * @param tabulate     true to build the tables of the geometry
+   * @throws IllegalArgumentException if the arm thickness is larger than
+   *                                  {@value #MAX_ARM_THICKNESS}
+   */
+  private BoardGeometry(int armThickness, boolean tabulate) {
+    if (armThickness > MAX_ARM_THICKNESS) {
+      throw new IllegalArgumentException("Invalid arm thickness, it should be at most "
+          + MAX_ARM_THICKNESS);
+    }
+    this.armThickness = armThickness;
+    this.boardWidth = 2 * armThickness + 1;
+    this.armStart = (armThickness + 1) / 2;
+    this.armEnd = armStart + armThickness - 1;
+    //at most 32767 * 32767 cells, which fits in an int
+    this.cellCount = boardWidth * boardWidth - 4 * armStart * armStart;
+    //the board is the middle rows plus the top and bottom parts of the arm columns
+    countResidues(armStart, armEnd, 0, boardWidth - 1);
+    countResidues(0, armStart - 1, armStart, armEnd);
+    countResidues(armEnd + 1, boardWidth - 1, armStart, armEnd);
+    if (!tabulate) {
+      this.cellRows = null;
+      this.cellCols = null;
+      this.jumpOver = null;
+      this.jumpTo = null;
+      this.template = null;
+      return;
+    }
+    this.cellRows = new int[cellCount];
+    this.cellCols = new int[cellCount];
+    this.jumpOver = new int[4 * cellCount];
+    this.jumpTo = new int[4 * cellCount];
+    for (int i = 0; i < boardWidth; i++) {
+      for (int j = 0; j < boardWidth; j++) {
+        if (isValid(i, j)) {
+          int cell = cellIndex(i, j);
+          cellRows[cell] = i;
+          cellCols[cell] = j;
+          for (int direction = Moves.UP; direction <= Moves.RIGHT; direction++) {
+            int rowStep = Moves.rowStep(direction);
+            int colStep = Moves.colStep(direction);
+            boolean onBoard = isValid(i + 2 * rowStep, j + 2 * colStep)
+                && isValid(i + rowStep, j + colStep);
+            jumpOver[4 * cell + direction] = onBoard ? cellIndex(i + rowStep, j + colStep) : -1;
+            jumpTo[4 * cell + direction] = onBoard
+                ? cellIndex(i + 2 * rowStep, j + 2 * colStep) : -1;
+          }
+        }
+      }
+    }
+    //the template is still null here, so the full board is built rather than copied
+    this.template = fullBoard();
+    allCellsHash();
+  }
+
+  /**
+   * Add the cells of a rectangle of valid cells to the counts of their residue classes.
+   */
+  private void countResidues(int firstRow, int lastRow, int firstCol, int lastCol) {
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 3; j++) {
+        residueCounts[3 * i + j] += countModulo3(firstRow, lastRow, i)
+            * countModulo3(firstCol, lastCol, j);
+      }
+    }
+  }
+
+  /**
+   * Count the numbers from first to last that are equal to a given residue modulo 3.
+   */
+  private static int countModulo3(int first, int last, int residue) {
+    if (last < first) {
+      return 0;
+    }
+    //the numbers up to n that are equal to residue modulo 3, for n >= -1
+    return (last - residue + 3) / 3 - (first - 1 - residue + 3) / 3;
+  }
+
+  /**
+   * Determine if this geometry holds the tables of precomputed cells and jumps.
+   *
+   * @return true if the tables are available, false if they are null
+   */
+  boolean isTabulated() {
+    return jumpTo != null;
+  }
+
+  /**
+   * Determine if a position is inside the board and inside the cross-shaped playing area.
+   *
+   * @param row the row number of the position
+   * @param col the column number of the position
+   * @return true if a marble could exist at the position, false otherwise
+   */
+  boolean isValid(int row, int col) {
+    if (row < 0 || col < 0 || row >= boardWidth || col >= boardWidth) {
+      return false;
+    }
+    return (row >= armStart && row <= armEnd) || (col >= armStart && col <= armEnd);
+  }
+
+  /**
+   * Map a valid position to the number of its cell.
+   *
+   * @param row the row number of a valid position
+   * @param col the column number of a valid position
+   * @return the number of the cell, from 0 to {@link #cellCount} - 1
+   */
+  int cellIndex(int row, int col) {
+    if (row < armStart) {
+      return row * armThickness + col - armStart;
+    }
+    int topCells = armStart * armThickness;
+    if (row <= armEnd) {
+      return topCells + (row - armStart) * boardWidth + col;
+    }
+    return topCells + armThickness * boardWidth
+        + (row - armEnd - 1) * armThickness + col - armStart;
+  }
+
+  /**
+   * Map the number of a cell back to its row number.
+   *
+   * @param cell the number of a cell, from 0 to {@link #cellCount} - 1
+   * @return the row number of the cell
+   */
+  int rowOf(int cell) {
+    int topCells = armStart * armThickness;
+    if (cell < topCells) {
+      return cell / armThickness;
+    }
+    cell -= topCells;
+    if (cell < armThickness * boardWidth) {
+      return armStart + cell / boardWidth;
+    }
+    return armEnd + 1 + (cell - armThickness * boardWidth) / armThickness;
+  }
+
+  /**
+   * Map the number of a cell back to its column number.
+   *
+   * @param cell the number of a cell, from 0 to {@link #cellCount} - 1
+   * @return the column number of the cell
+   */
+  int colOf(int cell) {
+    int topCells = armStart * armThickness;
+    if (cell < topCells) {
+      return armStart + cell % armThickness;
+    }
+    cell -= topCells;
+    if (cell < armThickness * boardWidth) {
+      return cell % boardWidth;
+    }
+    return armStart + (cell - armThickness * boardWidth) % armThickness;
+  }
+
+  /**
+   * Return the number of longs needed to store one bit per valid cell.
+   *
+   * @return the number of words of a packed board
+   */
+  int wordCount() {
+    return (cellCount + Long.SIZE - 1) / Long.SIZE;
+  }
+
+  /**
+   * Return the number of characters of the game state of a board of this shape: one per cell,
+   * a space between the cells of a row, and a line break between the rows.
+   *
+   * @return the length of the game state
+   */
+  int gameStateLength() {
+    return 2 * boardWidth * boardWidth - 1;
+  }
+
+  /**
+   * Return a packed board with a marble in every valid cell. This takes time proportional to the
+   * number of words, not to the number of cells, and is a plain copy for shared geometries.
+   *
+   * @return a new array with one set bit per valid cell
+   */
+  long[] fullBoard() {
+    long[] words = new long[wordCount()];
+    fillBoard(words);
+    return words;
+  }
+
+  /**
+   * Put a marble in every valid cell of a packed board.
+   *
+   * @param words a packed board of {@link #wordCount()} words
+   */
+  void fillBoard(long[] words) {
+    if (template != null) {
+      System.arraycopy(template, 0, words, 0, words.length);
+    } else {
+      Arrays.fill(words, -1L);
+      words[words.length - 1] = -1L >>> (words.length * Long.SIZE - cellCount);
+    }
+  }
+
+  /**
+   * Count the moves that can be made into a given empty cell, on a board where every other valid
+   * cell holds a marble. These are the only legal moves at the start of a game.
+   *
+   * @param emptyRow the row number of the empty cell
+   * @param emptyCol the column number of the empty cell
+   * @return the number of legal moves
+   */
+  int movesInto(int emptyRow, int emptyCol) {
+    int count = 0;
+    for (int direction = Moves.UP; direction <= Moves.RIGHT; direction++) {
+      if (isValid(emptyRow + 2 * Moves.rowStep(direction),
+          emptyCol + 2 * Moves.colStep(direction))) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Return the Zobrist hash of a board with a marble in every valid cell. It is computed the
+   * first time it is needed for large boards, since it takes time proportional to the number of
+   * cells, and up front for shared geometries.
+   *
+   * @return the XOR of the keys of every valid cell
+   */
+  long allCellsHash() {
+    if (!allCellsHashed) {
+      long hash = 0;
+      for (int i = 0; i < boardWidth; i++) {
+        boolean middleRow = i >= armStart && i <= armEnd;
+        int first = middleRow ? 0 : armStart;
+        int last = middleRow ? boardWidth - 1 : armEnd;
+        for (int j = first; j <= last; j++) {
+          hash ^= Zobrist.key(boardWidth, i, j);
+        }
+      }
+      allCellsHash = hash;
+      allCellsHashed = true;
+    }
+    return allCellsHash;
+  }
+}
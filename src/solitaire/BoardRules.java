@@ -0,0 +1,235 @@
+package solitaire;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class holds the rules of marble solitaire that every representation of a board shares:
+ * how a move is checked, which moves a jump can make legal or illegal, how a jump changes the
+ * hash of a position, and how a board is drawn. A board is read one cell at a time through
+ * {@link Cells}, with the cells numbered as described in {@link BoardGeometry}, so the models
+ * and the snapshots apply the same rules to their own storage.
+ */
+final class BoardRules {
+
+  /**
+   * This interface represents the cells of a board, one bit per valid cell.
+   */
+  @FunctionalInterface
+  interface Cells {
+    /**
+     * Determine if a valid cell holds a marble.
+     *
+     * @param cell the number of the cell, from 0 to {@link BoardGeometry#cellCount} - 1
+     * @return true if the cell holds a marble, false if it is empty
+     */
+    boolean hasMarble(int cell);
+  }
+
+  private BoardRules() {
+  }
+
+  /**
+   * Determine if a position is on the board and has a marble in it.
+   */
+  static boolean isMarble(BoardGeometry geometry, Cells cells, int row, int col) {
+    return geometry.isValid(row, col) && cells.hasMarble(geometry.cellIndex(row, col));
+  }
+
+  /**
+   * Determine if a position is on the board and is an empty cell.
+   */
+  static boolean isEmpty(BoardGeometry geometry, Cells cells, int row, int col) {
+    return geometry.isValid(row, col) && !cells.hasMarble(geometry.cellIndex(row, col));
+  }
+
+  /**
+   * Check a move from a given position to another given position, without making it. The
+   * checks are made in the order {@link MarbleSolitaireModel#tryMove} reports them.
+   *
+   * @return {@link MoveResult#OK} if the move can be made, or the reason it cannot
+   */
+  static MoveResult check(BoardGeometry geometry, Cells cells, int fromRow, int fromCol,
+      int toRow, int toCol) {
+    int width = geometry.boardWidth;
+    //check if the from and to position are inside the bound, and valid
+    if (fromRow < 0 || fromCol < 0 || fromRow >= width || fromCol >= width) {
+      return MoveResult.FROM_OUT_OF_BOUNDS;
+    }
+    if (toRow < 0 || toCol < 0 || toRow >= width || toCol >= width) {
+      return MoveResult.TO_OUT_OF_BOUNDS;
+    }
+    if (!geometry.isValid(fromRow, fromCol)) {
+      return MoveResult.FROM_INVALID;
+    }
+    if (!geometry.isValid(toRow, toCol)) {
+      return MoveResult.TO_INVALID;
+    }
+
+    //check if the to position has a marble, and if the from position is empty
+    if (cells.hasMarble(geometry.cellIndex(toRow, toCol))) {
+      return MoveResult.TO_OCCUPIED;
+    }
+    if (!cells.hasMarble(geometry.cellIndex(fromRow, fromCol))) {
+      return MoveResult.FROM_EMPTY;
+    }
+
+    //check if the move is 2 positions away, either horizontally or vertically
+    int rowDistance = Math.abs(fromRow - toRow);
+    int colDistance = Math.abs(fromCol - toCol);
+    if (rowDistance != 2 && colDistance != 2) {
+      return MoveResult.NOT_DISTANCE_TWO;
+    }
+    if ((rowDistance == 2 && fromCol != toCol) || (colDistance == 2 && fromRow != toRow)) {
+      return MoveResult.DIAGONAL;
+    }
+
+    //check if there is a marble between the from and to positions
+    if (!cells.hasMarble(geometry.cellIndex((fromRow + toRow) / 2, (fromCol + toCol) / 2))) {
+      return MoveResult.NO_MARBLE_JUMPED;
+    }
+    return MoveResult.OK;
+  }
+
+  /**
+   * Count the legal moves within the three cells in a line that start at (row, col) and go in
+   * the direction (rowStep, colStep). At most one move is legal inside three cells: the middle
+   * one must hold a marble, and exactly one of the two ends must be empty.
+   *
+   * @return 1 if a marble at one end can jump to the other end, 0 otherwise
+   */
+  private static int legalMovesIn(BoardGeometry geometry, Cells cells, int row, int col,
+      int rowStep, int colStep) {
+    if (!isMarble(geometry, cells, row + rowStep, col + colStep)) {
+      return 0;
+    }
+    int endRow = row + 2 * rowStep;
+    int endCol = col + 2 * colStep;
+    if ((isMarble(geometry, cells, row, col) && isEmpty(geometry, cells, endRow, endCol))
+        || (isEmpty(geometry, cells, row, col) && isMarble(geometry, cells, endRow, endCol))) {
+      return 1;
+    }
+    return 0;
+  }
+
+  /**
+   * Count the legal moves that use at least one of the three cells of a jump. These are the only
+   * moves that can become legal or illegal when the jump is made. Each move is counted once.
+   *
+   * @return the number of legal moves touching the from, jumped over and to positions
+   */
+  static int legalMovesAround(BoardGeometry geometry, Cells cells, int fromRow, int fromCol,
+      int toRow, int toCol) {
+    int rowStep = Integer.signum(toRow - fromRow);
+    int colStep = Integer.signum(toCol - fromCol);
+    int count = 0;
+    //lines of three along the jump
+    for (int k = -2; k <= 2; k++) {
+      count += legalMovesIn(geometry, cells, fromRow + k * rowStep, fromCol + k * colStep,
+          rowStep, colStep);
+    }
+    //lines of three across the jump, through each of its cells
+    for (int i = 0; i <= 2; i++) {
+      int row = fromRow + i * rowStep;
+      int col = fromCol + i * colStep;
+      for (int k = -2; k <= 0; k++) {
+        count += legalMovesIn(geometry, cells, row + k * colStep, col + k * rowStep,
+            colStep, rowStep);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Return how a jump changes the hash of a position: the XOR of the keys of its three cells,
+   * the same whether the jump is made or taken back.
+   *
+   * @return the XOR of the keys of the from, jumped over and to positions
+   */
+  static long jumpKey(int width, int fromRow, int fromCol, int toRow, int toCol) {
+    return Zobrist.key(width, fromRow, fromCol)
+        ^ Zobrist.key(width, (fromRow + toRow) / 2, (fromCol + toCol) / 2)
+        ^ Zobrist.key(width, toRow, toCol);
+  }
+
+  /**
+   * Write the legal moves of a board into a given array by scanning every position, as
+   * described in {@link MarbleSolitaireModel#legalMoves(int[])}.
+   *
+   * @return the number of legal moves
+   */
+  static int legalMoves(BoardGeometry geometry, Cells cells, int[] moves) {
+    int width = geometry.boardWidth;
+    int count = 0;
+    for (int i = 0; i < width; i++) {
+      for (int j = 0; j < width; j++) {
+        if (isMarble(geometry, cells, i, j)) {
+          for (int direction = Moves.UP; direction <= Moves.RIGHT; direction++) {
+            int rowStep = Moves.rowStep(direction);
+            int colStep = Moves.colStep(direction);
+            if (isMarble(geometry, cells, i + rowStep, j + colStep)
+                && isEmpty(geometry, cells, i + 2 * rowStep, j + 2 * colStep)) {
+              if (count < moves.length) {
+                moves[count] = Moves.encode(i, j, direction);
+              }
+              count++;
+            }
+          }
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Write the game state of a board into a buffer that has room for it, one byte per character.
+   */
+  static void render(BoardGeometry geometry, Cells cells, ByteBuffer buffer) {
+    int width = geometry.boardWidth;
+    //the valid cells are numbered row by row, so they are met in the order of their numbers
+    int cell = 0;
+    for (int i = 0; i < width; i++) {
+      for (int j = 0; j < width; j++) {
+        if (!geometry.isValid(i, j)) {
+          buffer.put((byte) Elements.INVALID.symbol());
+        } else {
+          buffer.put((byte) (cells.hasMarble(cell++) ? Elements.MARBLE.symbol()
+              : Elements.EMPTY.symbol()));
+        }
+        if (j != width - 1) {
+          buffer.put((byte) ' ');
+        }
+      }
+      if (i != width - 1) {
+        buffer.put((byte) '\n');
+      }
+    }
+  }
+
+  /**
+   * Append the game state of a board to a given destination, one character at a time.
+   *
+   * @throws IOException if the destination cannot be written
+   */
+  static void render(BoardGeometry geometry, Cells cells, Appendable destination)
+      throws IOException {
+    int width = geometry.boardWidth;
+    int cell = 0;
+    for (int i = 0; i < width; i++) {
+      for (int j = 0; j < width; j++) {
+        if (!geometry.isValid(i, j)) {
+          destination.append(Elements.INVALID.symbol());
+        } else {
+          destination.append(cells.hasMarble(cell++) ? Elements.MARBLE.symbol()
+              : Elements.EMPTY.symbol());
+        }
+        if (j != width - 1) {
+          destination.append(' ');
+        }
+      }
+      if (i != width - 1) {
+        destination.append('\n');
+      }
+    }
+  }
+}
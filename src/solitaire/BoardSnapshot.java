@@ -0,0 +1,319 @@
+package solitaire;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class represents an immutable position of a game of marble solitaire. Making a move does
+ * not change a snapshot, it returns a new one that shares everything but the changed cells with
+ * the old one, so thousands of branches of a game can be kept at little cost. The cells are
+ * packed one bit per valid cell, as described in {@link BoardGeometry}, into a tree of 32-way
+ * nodes whose leaves hold 32 longs (2048 cells): a move copies the leaves it changes and the
+ * nodes above them, never the whole board. Snapshots with the same marbles on boards of the same
+ * arm thickness are equal, so they can be used as map keys, and their hash code comes from
+ * {@link MarbleSolitaireModel#positionHash()}.
+ */
+public final class BoardSnapshot {
+  //a node has 32 children, and a leaf has 32 words
+  private static final int BITS = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK = WIDTH - 1;
+
+  private final BoardGeometry geometry;
+  //the number of levels of nodes above the leaves, and the root: a long[] leaf at depth 0
+  private final int depth;
+  private final Object root;
+  private final int score;
+  private final int legalMoves;
+  private final long hash;
+
+  private BoardSnapshot(BoardGeometry geometry, int depth, Object root, int score,
+      int legalMoves, long hash) {
+    this.geometry = geometry;
+    this.depth = depth;
+    this.root = root;
+    this.score = score;
+    this.legalMoves = legalMoves;
+    this.hash = hash;
+  }
+
+  /**
+   * Take a snapshot of the current position of a model. The model is not changed. This takes
+   * time proportional to the number of valid cells divided by 64 for a
+   * {@link MarbleSolitaireModelImpl}, and to the number of valid cells for other models.
+   *
+   * @param model the model whose position to take
+   * @return the snapshot of the position
+   */
+  public static BoardSnapshot of(MarbleSolitaireModel model) {
+    BoardGeometry geometry = BoardGeometry.of((model.getBoardSize() - 1) / 2);
+    long[] words;
+    if (model instanceof MarbleSolitaireModelImpl impl) {
+      words = impl.packedBoard();
+    } else {
+      words = new long[geometry.wordCount()];
+      for (int i = 0; i < geometry.boardWidth; i++) {
+        for (int j = 0; j < geometry.boardWidth; j++) {
+          if (model.getSlotAt(i, j) == Elements.MARBLE) {
+            int index = geometry.cellIndex(i, j);
+            words[index >>> 6] |= 1L << index;
+          }
+        }
+      }
+    }
+    int depth = depthFor(words.length);
+    return new BoardSnapshot(geometry, depth, build(words, depth, 0), model.getScore(),
+        model.legalMoveCount(), model.positionHash());
+  }
+
+  /**
+   * Return the number of levels of nodes needed above the leaves to hold a number of words.
+   */
+  private static int depthFor(int wordCount) {
+    int depth = 0;
+    for (long capacity = WIDTH; capacity < wordCount; capacity <<= BITS) {
+      depth++;
+    }
+    return depth;
+  }
+
+  /**
+   * Build the node at a given level that holds the words from a given offset. A lone leaf is
+   * only as long as the board needs, other leaves are full and padded with empty cells.
+   */
+  private static Object build(long[] words, int level, int offset) {
+    if (level == 0) {
+      int length = offset == 0 && words.length < WIDTH ? words.length : WIDTH;
+      return Arrays.copyOfRange(words, offset, offset + length);
+    }
+    Object[] node = new Object[WIDTH];
+    int span = 1 << (BITS * level);
+    for (int i = 0; i < WIDTH && offset + i * span < words.length; i++) {
+      node[i] = build(words, level - 1, offset + i * span);
+    }
+    return node;
+  }
+
+  /**
+   * Return the word at a given index of a tree.
+   */
+  private long word(Object tree, int index) {
+    Object node = tree;
+    for (int level = depth; level > 0; level--) {
+      node = ((Object[]) node)[(index >>> (BITS * level)) & MASK];
+    }
+    return ((long[]) node)[index & MASK];
+  }
+
+  /**
+   * Return a copy of a node in which the word at a given index is replaced, sharing every child
+   * that does not hold it.
+   */
+  private static Object withWord(Object node, int level, int index, long word) {
+    if (level == 0) {
+      long[] leaf = ((long[]) node).clone();
+      leaf[index & MASK] = word;
+      return leaf;
+    }
+    Object[] copy = ((Object[]) node).clone();
+    int slot = (index >>> (BITS * level)) & MASK;
+    copy[slot] = withWord(copy[slot], level - 1, index, word);
+    return copy;
+  }
+
+  /**
+   * Return a copy of a tree in which a given cell is flipped.
+   */
+  private Object flip(Object tree, int row, int col) {
+    int index = geometry.cellIndex(row, col);
+    return withWord(tree, depth, index >>> 6, word(tree, index >>> 6) ^ 1L << index);
+  }
+
+  /**
+   * Return the cells of a tree as the shared rules read them.
+   */
+  private BoardRules.Cells cells(Object tree) {
+    return cell -> (word(tree, cell >>> 6) >>> cell & 1L) != 0;
+  }
+
+  /**
+   * Return the position after moving a single marble from a given position to another given
+   * position. The move is checked exactly like {@link MarbleSolitaireModelImpl} checks it. This
+   * snapshot is not changed.
+   *
+   * @param fromRow the row number of the position to be moved from (starts at 0)
+   * @param fromCol the column number of the position to be moved from (starts at 0)
+   * @param toRow   the row number of the position to be moved to (starts at 0)
+   * @param toCol   the column number of the position to be moved to (starts at 0)
+   * @return the snapshot of the position after the move
+   * @throws IllegalArgumentException if the move is not possible
+   */
+  public BoardSnapshot move(int fromRow, int fromCol, int toRow, int toCol)
+      throws IllegalArgumentException {
+    MoveResult result = BoardRules.check(geometry, cells(root), fromRow, fromCol, toRow, toCol);
+    if (result != MoveResult.OK) {
+      throw new IllegalArgumentException(result.getMessage());
+    }
+    int overRow = (fromRow + toRow) / 2;
+    int overCol = (fromCol + toCol) / 2;
+    Object next = flip(flip(flip(root, fromRow, fromCol), overRow, overCol), toRow, toCol);
+    int nextLegalMoves = legalMoves
+        - BoardRules.legalMovesAround(geometry, cells(root), fromRow, fromCol, toRow, toCol)
+        + BoardRules.legalMovesAround(geometry, cells(next), fromRow, fromCol, toRow, toCol);
+    long nextHash = hash ^ BoardRules.jumpKey(geometry.boardWidth, fromRow, fromCol, toRow, toCol);
+    return new BoardSnapshot(geometry, depth, next, score - 1, nextLegalMoves, nextHash);
+  }
+
+  /**
+   * Return a new game that continues from this position, with no moves to take back. This takes
+   * time proportional to the number of valid cells divided by 64.
+   *
+   * @return a new model of this position
+   */
+  public MarbleSolitaireModelImpl toModel() {
+    long[] words = new long[geometry.wordCount()];
+    for (int i = 0; i < words.length; i++) {
+      words[i] = word(root, i);
+    }
+    return new MarbleSolitaireModelImpl(geometry, words, -1, -1, hash, legalMoves, new int[0], 0);
+  }
+
+  /**
+   * Return what is in the cell at a given position of the board.
+   *
+   * @param row the row number of the position (starts at 0)
+   * @param col the column number of the position (starts at 0)
+   * @return {@link Elements#MARBLE}, {@link Elements#EMPTY} or {@link Elements#INVALID}
+   * @throws IllegalArgumentException if the position is outside the board
+   */
+  public Elements getSlotAt(int row, int col) throws IllegalArgumentException {
+    if (row < 0 || col < 0 || row >= geometry.boardWidth || col >= geometry.boardWidth) {
+      throw new IllegalArgumentException("Invalid position, it is out of the board");
+    }
+    if (!geometry.isValid(row, col)) {
+      return Elements.INVALID;
+    }
+    return cells(root).hasMarble(geometry.cellIndex(row, col)) ? Elements.MARBLE : Elements.EMPTY;
+  }
+
+  /**
+   * Return the number of rows (and columns) of the square board, including the invalid corners.
+   *
+   * @return the width of the board
+   */
+  public int getBoardSize() {
+    return geometry.boardWidth;
+  }
+
+  /**
+   * Return the number of marbles in this position.
+   *
+   * @return the number of marbles
+   */
+  public int getScore() {
+    return score;
+  }
+
+  /**
+   * Return the number of moves that can be made from this position.
+   *
+   * @return the number of legal moves
+   */
+  public int legalMoveCount() {
+    return legalMoves;
+  }
+
+  /**
+   * Determine if no more moves can be made from this position.
+   *
+   * @return true if the game is over, false otherwise
+   */
+  public boolean isGameOver() {
+    return legalMoves == 0;
+  }
+
+  /**
+   * Return the hash of this position, the same as {@link MarbleSolitaireModel#positionHash()}
+   * of a model in this position.
+   *
+   * @return the hash of this position
+   */
+  public long positionHash() {
+    return hash;
+  }
+
+  /**
+   * Return a string that represents this position, in the format of
+   * {@link MarbleSolitaireModel#getGameState()}.
+   *
+   * @return the position as a string
+   */
+  public String getGameState() {
+    byte[] characters = new byte[geometry.gameStateLength()];
+    BoardRules.render(geometry, cells(root), ByteBuffer.wrap(characters));
+    return new String(characters, StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Determine if another object is a snapshot with the same marbles on a board of the same arm
+   * thickness. Subtrees shared by both snapshots are not compared.
+   *
+   * @param other the object to compare with
+   * @return true if the positions are the same, false otherwise
+   */
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof BoardSnapshot)) {
+      return false;
+    }
+    BoardSnapshot that = (BoardSnapshot) other;
+    return geometry.armThickness == that.geometry.armThickness && hash == that.hash
+        && score == that.score && sameCells(root, that.root, depth);
+  }
+
+  private static boolean sameCells(Object a, Object b, int level) {
+    if (a == b) {
+      return true;
+    }
+    if (a == null || b == null) {
+      return false;
+    }
+    if (level == 0) {
+      return Arrays.equals((long[]) a, (long[]) b);
+    }
+    Object[] nodeA = (Object[]) a;
+    Object[] nodeB = (Object[]) b;
+    for (int i = 0; i < WIDTH; i++) {
+      if (!sameCells(nodeA[i], nodeB[i], level - 1)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Return a hash code of the position, taken from its position hash, so that equal snapshots
+   * have equal hash codes.
+   *
+   * @return the hash code
+   */
+  @Override
+  public int hashCode() {
+    return Long.hashCode(hash);
+  }
+
+  /**
+   * Return the game state of the snapshot, as described in
+   * {@link MarbleSolitaireModel#getGameState()}.
+   *
+   * @return the game state as a string
+   */
+  @Override
+  public String toString() {
+    return getGameState();
+  }
+}
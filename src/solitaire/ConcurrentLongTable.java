@@ -0,0 +1,73 @@
+package solitaire;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is a fixed-size map from non-zero long keys to non-negative long values that many
+ * threads can read and write at once without locking. It is a cache: once the probe sequence of a
+ * key is full, a new entry is dropped instead of stored, and callers simply compute the value
+ * again. A reader may briefly miss an entry another thread is still writing.
+ */
+final class ConcurrentLongTable {
+  private static final int MAX_PROBES = 32;
+  private final AtomicLongArray keys;
+  //values are stored plus one, so that 0 means the value is not written yet
+  private final AtomicLongArray values;
+  private final int mask;
+
+  /**
+   * Construct an empty table.
+   *
+   * @param capacity the number of entries, rounded up to a power of two
+   */
+  ConcurrentLongTable(int capacity) {
+    int size = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+    this.keys = new AtomicLongArray(size);
+    this.values = new AtomicLongArray(size);
+    this.mask = size - 1;
+  }
+
+  /**
+   * Return the value stored for a key.
+   *
+   * @param key a non-zero key
+   * @return the value, or -1 if there is none
+   */
+  long get(long key) {
+    int slot = LongHashSet.hash(key) & mask;
+    for (int probe = 0; probe < MAX_PROBES; probe++) {
+      long found = keys.get(slot);
+      if (found == key) {
+        return values.get(slot) - 1;
+      }
+      if (found == 0) {
+        return -1;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Store the value for a key, unless the table has no room left near the key.
+   *
+   * @param key   a non-zero key
+   * @param value a non-negative value
+   */
+  void put(long key, long value) {
+    int slot = LongHashSet.hash(key) & mask;
+    for (int probe = 0; probe < MAX_PROBES; probe++) {
+      long found = keys.get(slot);
+      if (found == 0 && keys.compareAndSet(slot, 0, key)) {
+        found = key;
+      } else if (found == 0) {
+        found = keys.get(slot);
+      }
+      if (found == key) {
+        values.set(slot, value + 1);
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+}
@@ -0,0 +1,343 @@
+package solitaire;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/**
+ * This class makes a game of marble solitaire safe to use from many threads at once. It wraps
+ * another model and guards it with a {@link StampedLock}: moves, undo and redo take the write
+ * lock, and every other method first reads optimistically, without locking, and only takes the
+ * read lock if a move happened while it was reading. Readers therefore never block the player
+ * unless they keep losing that race, and they always see the board, the score and everything
+ * derived from them as they were between two moves.
+ *
+ * <p>The game state is also kept here until the next move, undo or redo, so that readers of an
+ * unchanged board get it without reading the game at all. It is rendered optimistically too, and
+ * only kept or handed out once the board it was made from is known to be whole.
+ */
+public class ConcurrentMarbleSolitaireModel implements MarbleSolitaireModel {
+  private final MarbleSolitaireModel game;
+  private final StampedLock lock = new StampedLock();
+  //the number of times the board may have changed, only changed under the write lock
+  private long version;
+  //the last game state made, tagged with the version of the board it was made from; it may be
+  //replaced by an older one, which is then just not used
+  private volatile RenderedState gameState;
+
+  /**
+   * Construct a thread-safe game that plays a given game. The given game must not be used
+   * directly afterwards, only through this one.
+   *
+   * @param game the game to play
+   * @throws IllegalArgumentException if the game is null
+   */
+  public ConcurrentMarbleSolitaireModel(MarbleSolitaireModel game)
+      throws IllegalArgumentException {
+    if (game == null) {
+      throw new IllegalArgumentException("Invalid game, it should not be null");
+    }
+    this.game = game;
+    //a game may hash its starting position lazily, so hash it before readers can race on it
+    game.positionHash();
+  }
+
+  /**
+   * Construct a thread-safe game on the regular board with the empty cell at the center.
+   */
+  public ConcurrentMarbleSolitaireModel() {
+    this(new MarbleSolitaireModelImpl());
+  }
+
+  /**
+   * Read several things from the game at once, all from the same position. The reader may run
+   * more than once, so it should only read the game, never change it or keep it. It runs without
+   * a lock, so it must only read state that the game sets up before it is wrapped or changes
+   * under the write lock, never state the game fills lazily on a first read. The game state kept
+   * by {@link MarbleSolitaireModelImpl} is the exception: it is tagged with the board it was
+   * made from, so a torn one is never returned.
+   *
+   * @param reader the function that reads the game
+   * @param <T>    the type of what is read
+   * @return what the reader returned the last time it ran
+   */
+  public <T> T read(Function<? super MarbleSolitaireModel, ? extends T> reader) {
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0) {
+      try {
+        T result = reader.apply(game);
+        if (lock.validate(stamp)) {
+          return result;
+        }
+      } catch (RuntimeException e) {
+        //an inconsistent read can fail, only report failures of a consistent one
+        if (lock.validate(stamp)) {
+          throw e;
+        }
+      }
+    }
+    stamp = lock.readLock();
+    try {
+      return reader.apply(game);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Move a single marble from a given position to another given position, while no other
+   * thread reads or changes the game.
+   *
+   * @param fromRow the row number of the position to be moved from (starts at 0)
+   * @param fromCol the column number of the position to be moved from (starts at 0)
+   * @param toRow   the row number of the position to be moved to (starts at 0)
+   * @param toCol   the column number of the position to be moved to (starts at 0)
+   * @throws IllegalArgumentException if the move is not possible
+   */
+  @Override
+  public void move(int fromRow, int fromCol, int toRow, int toCol) throws IllegalArgumentException {
+    long stamp = lock.writeLock();
+    try {
+      version++;
+      game.move(fromRow, fromCol, toRow, toCol);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Try to move a single marble from a given position to another given position, while no
+   * other thread reads or changes the game.
+   *
+   * @param fromRow the row number of the position to be moved from (starts at 0)
+   * @param fromCol the column number of the position to be moved from (starts at 0)
+   * @param toRow   the row number of the position to be moved to (starts at 0)
+   * @param toCol   the column number of the position to be moved to (starts at 0)
+   * @return {@link MoveResult#OK} if the move was made, or the reason it was rejected
+   */
+  @Override
+  public MoveResult tryMove(int fromRow, int fromCol, int toRow, int toCol) {
+    long stamp = lock.writeLock();
+    try {
+      version++;
+      return game.tryMove(fromRow, fromCol, toRow, toCol);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Take back the last move that was made and not taken back yet, while no other thread reads
+   * or changes the game.
+   *
+   * @return true if a move was taken back, false if there was no move to take back
+   */
+  @Override
+  public boolean undo() {
+    long stamp = lock.writeLock();
+    try {
+      version++;
+      return game.undo();
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Make again the last move that was taken back, while no other thread reads or changes the
+   * game.
+   *
+   * @return true if a move was made again, false if there was no move to make again
+   */
+  @Override
+  public boolean redo() {
+    long stamp = lock.writeLock();
+    try {
+      version++;
+      return game.redo();
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Determine if the game is over, without locking unless a move is made meanwhile.
+   *
+   * @return true if the game is over, false otherwise
+   */
+  @Override
+  public boolean isGameOver() {
+    long stamp = lock.tryOptimisticRead();
+    boolean gameOver = game.isGameOver();
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        gameOver = game.isGameOver();
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return gameOver;
+  }
+
+  /**
+   * Return the number of moves that can be made from the current state of the board, without
+   * locking unless a move is made meanwhile.
+   *
+   * @return the number of legal moves
+   */
+  @Override
+  public int legalMoveCount() {
+    long stamp = lock.tryOptimisticRead();
+    int count = game.legalMoveCount();
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        count = game.legalMoveCount();
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Write the moves that can be made from the current state of the board into a given array.
+   * If a move is made while the array is being written, it is written again.
+   *
+   * @param moves the array to write the encoded moves into, starting at index 0
+   * @return the number of legal moves, which is {@link #legalMoveCount()}
+   */
+  @Override
+  public int legalMoves(int[] moves) {
+    return read(game -> game.legalMoves(moves));
+  }
+
+  /**
+   * Return a string that represents the current state of the board. The string is kept until
+   * the board changes, so reading it again only reads it. It is made without locking unless a
+   * move is made meanwhile, and kept only once it is known to be a whole board.
+   *
+   * @return the game state as a string
+   */
+  @Override
+  public String getGameState() {
+    long stamp = lock.tryOptimisticRead();
+    RenderedState rendered = gameState;
+    if (rendered != null && rendered.changes == version && lock.validate(stamp)) {
+      return rendered.state;
+    }
+    //the wrapped game renders into a local array, so nothing is kept before it is validated
+    int size = game.getBoardSize();
+    rendered = read(game -> {
+      byte[] characters = new byte[2 * size * size - 1];
+      game.renderTo(ByteBuffer.wrap(characters));
+      return new RenderedState(new String(characters, StandardCharsets.US_ASCII), version);
+    });
+    gameState = rendered;
+    return rendered.state;
+  }
+
+  /**
+   * Append the game state to a given destination. The game is not locked while the destination
+   * is written, so a slow destination never holds up the player.
+   *
+   * @param destination where to append the game state
+   * @throws IOException if the destination cannot be written
+   */
+  @Override
+  public void renderTo(Appendable destination) throws IOException {
+    destination.append(getGameState());
+  }
+
+  /**
+   * Write the game state into a given buffer, one byte per character. The game state is taken
+   * from {@link #getGameState()}, so the buffer is only written once it is known to be a whole
+   * board, and the player is never held up while it is written.
+   *
+   * @param buffer the buffer to write into
+   * @throws BufferOverflowException if the buffer has less room than the game state needs, in
+   *                                 which case nothing is written
+   */
+  @Override
+  public void renderTo(ByteBuffer buffer) throws BufferOverflowException {
+    int size = game.getBoardSize();
+    if (buffer.remaining() < 2 * size * size - 1) {
+      throw new BufferOverflowException();
+    }
+    String state = getGameState();
+    for (int i = 0; i < state.length(); i++) {
+      buffer.put((byte) state.charAt(i));
+    }
+  }
+
+  /**
+   * Return the number of rows (and columns) of the square board, which never changes.
+   *
+   * @return the width of the board
+   */
+  @Override
+  public int getBoardSize() {
+    //the size of the board never changes
+    return game.getBoardSize();
+  }
+
+  /**
+   * Return what is in the cell at a given position of the board, without locking unless a
+   * move is made meanwhile.
+   *
+   * @param row the row number of the position (starts at 0)
+   * @param col the column number of the position (starts at 0)
+   * @return {@link Elements#MARBLE}, {@link Elements#EMPTY} or {@link Elements#INVALID}
+   * @throws IllegalArgumentException if the position is outside the board
+   */
+  @Override
+  public Elements getSlotAt(int row, int col) throws IllegalArgumentException {
+    return read(game -> game.getSlotAt(row, col));
+  }
+
+  /**
+   * Return the number of marbles currently on the board, without locking unless a move is made
+   * meanwhile.
+   *
+   * @return the number of marbles currently on the board
+   */
+  @Override
+  public int getScore() {
+    long stamp = lock.tryOptimisticRead();
+    int score = game.getScore();
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        score = game.getScore();
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return score;
+  }
+
+  /**
+   * Return a 64-bit hash of the current position, without locking unless a move is made
+   * meanwhile.
+   *
+   * @return the hash of the current position
+   */
+  @Override
+  public long positionHash() {
+    long stamp = lock.tryOptimisticRead();
+    long hash = game.positionHash();
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        hash = game.positionHash();
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return hash;
+  }
+}
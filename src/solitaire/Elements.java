@@ -22,4 +22,13 @@ public enum Elements {
   public String getDisplayName() {
     return displayName;
   }
+
+  /**
+   * Return the single character of the string representation of the element.
+   *
+   * @return the character that shows the element in a game state
+   */
+  char symbol() {
+    return displayName.charAt(0);
+  }
 }
@@ -0,0 +1,339 @@
+package solitaire;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class answers whether a position with few marbles can still be reduced to a single marble,
+ * from a file that lists every such position. The file is made once by
+ * {@link #generate(int, int, Path)}, which works backwards from every single-marble finish: taking
+ * a jump back from a solvable position always gives a solvable position with one more marble, and
+ * every solvable position is found that way. Positions are stored by their canonical form, so
+ * rotations and reflections are stored once, and only boards with arm thickness 1 and 3 are
+ * supported, as for {@link MarbleSolitaireSolver}.
+ *
+ * <p>The file starts with a header, followed by a directory of buckets and the positions, each in
+ * as few bytes as the board needs. Positions are spread over the buckets by their hash, and sorted
+ * within each bucket, so a lookup reads two directory entries and searches one small bucket. The
+ * file is memory-mapped, read-only, and can be used by many threads at once.
+ */
+public final class EndgameDatabase implements Closeable {
+  private static final int MAGIC = 0x4D534544;
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 32;
+  //the average number of positions in a bucket
+  private static final int BUCKET_LOAD = 4;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer file;
+  private final SolverBoard board;
+  private final int maxMarbles;
+  private final long size;
+  private final int bucketMask;
+  private final int keyBytes;
+  private final int keysStart;
+  //the mapping outlives the channel, so lookups check this rather than fail on their own
+  private volatile boolean closed;
+
+  private EndgameDatabase(FileChannel channel, MappedByteBuffer file) {
+    this.channel = channel;
+    this.file = file;
+    file.order(ByteOrder.LITTLE_ENDIAN);
+    if (file.capacity() < HEADER_BYTES || file.getInt(0) != MAGIC) {
+      throw new IllegalArgumentException("Invalid endgame database, it is not an endgame file");
+    }
+    if (file.getInt(4) != VERSION) {
+      throw new IllegalArgumentException("Invalid endgame database, unknown version "
+          + file.getInt(4));
+    }
+    this.board = SolverBoard.of(file.getInt(8));
+    this.maxMarbles = file.getInt(12);
+    this.size = file.getLong(16);
+    int bucketBits = file.getInt(24);
+    this.keyBytes = file.getInt(28);
+    this.bucketMask = (1 << bucketBits) - 1;
+    this.keysStart = HEADER_BYTES + Integer.BYTES * ((1 << bucketBits) + 1);
+    if (keyBytes != (board.cellCount + 7) / 8
+        || file.capacity() != keysStart + size * keyBytes) {
+      throw new IllegalArgumentException("Invalid endgame database, the file is truncated");
+    }
+  }
+
+  /**
+   * Find every solvable position with at most a given number of marbles, and write them to a
+   * file.
+   *
+   * @param armThickness the arm thickness of the board, 1 or 3
+   * @param maxMarbles   the largest number of marbles of a stored position
+   * @param path         the path of the file to write, replaced if it exists
+   * @return the number of positions written, counting rotations and reflections once
+   * @throws IOException if the file cannot be written
+   * @throws IllegalArgumentException if the board has more than 64 valid cells, or the number
+   *                                  of marbles is not positive or too large for the file
+   */
+  public static long generate(int armThickness, int maxMarbles, Path path)
+      throws IOException, IllegalArgumentException {
+    SolverBoard board = SolverBoard.of(armThickness);
+    if (maxMarbles <= 0) {
+      throw new IllegalArgumentException("Invalid number of marbles, it should be positive");
+    }
+    long[][] levels = new long[Math.min(maxMarbles, board.cellCount)][];
+    LongHashSet level = new LongHashSet(board.cellCount);
+    for (int cell = 0; cell < board.cellCount; cell++) {
+      level.add(board.canonical(1L << cell));
+    }
+    levels[0] = level.toArray();
+    long total = levels[0].length;
+    for (int marbles = 2; marbles <= levels.length; marbles++) {
+      long[] previous = levels[marbles - 2];
+      level = new LongHashSet(2 * previous.length);
+      for (long position : previous) {
+        for (int jump = 0; jump < board.jumpMasks.length; jump++) {
+          long mask = board.jumpMasks[jump];
+          //the jump can be taken back if it lands on a marble and the two other cells are empty
+          if ((position & mask) == (mask ^ board.jumpNeeds[jump])) {
+            level.add(board.canonical(position ^ mask));
+          }
+        }
+      }
+      levels[marbles - 1] = level.toArray();
+      total += levels[marbles - 1].length;
+    }
+    int keyBytes = (board.cellCount + 7) / 8;
+    int bucketBits = 0;
+    while ((1L << bucketBits) * BUCKET_LOAD < total) {
+      bucketBits++;
+    }
+    long fileSize = HEADER_BYTES + Integer.BYTES * ((1L << bucketBits) + 1) + total * keyBytes;
+    if (fileSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid number of marbles, "
+          + "the file would be larger than 2 GiB");
+    }
+
+    //spread the positions over the buckets, and sort each bucket
+    int buckets = 1 << bucketBits;
+    int[] starts = new int[buckets + 1];
+    for (long[] positions : levels) {
+      for (long position : positions) {
+        starts[(LongHashSet.hash(position) & (buckets - 1)) + 1]++;
+      }
+    }
+    for (int bucket = 0; bucket < buckets; bucket++) {
+      starts[bucket + 1] += starts[bucket];
+    }
+    long[] keys = new long[(int) total];
+    int[] next = Arrays.copyOf(starts, buckets);
+    for (int marbles = 0; marbles < levels.length; marbles++) {
+      for (long position : levels[marbles]) {
+        keys[next[LongHashSet.hash(position) & (buckets - 1)]++] = position;
+      }
+      levels[marbles] = null;
+    }
+    for (int bucket = 0; bucket < buckets; bucket++) {
+      Arrays.sort(keys, starts[bucket], starts[bucket + 1]);
+    }
+
+    try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(MAGIC).putInt(VERSION).putInt(armThickness).putInt(levels.length)
+          .putLong(total).putInt(bucketBits).putInt(keyBytes);
+      for (int start : starts) {
+        if (buffer.remaining() < Integer.BYTES) {
+          drain(out, buffer);
+        }
+        buffer.putInt(start);
+      }
+      for (long key : keys) {
+        if (buffer.remaining() < keyBytes) {
+          drain(out, buffer);
+        }
+        for (int b = 0; b < keyBytes; b++) {
+          buffer.put((byte) (key >>> (8 * b)));
+        }
+      }
+      drain(out, buffer);
+    }
+    return total;
+  }
+
+  private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Open a file written by {@link #generate(int, int, Path)}.
+   *
+   * @param path the path of the file
+   * @return the open database
+   * @throws IOException if the file cannot be read
+   * @throws IllegalArgumentException if the file is not an endgame database
+   */
+  public static EndgameDatabase open(Path path) throws IOException, IllegalArgumentException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Invalid endgame database, the file is too large");
+      }
+      return new EndgameDatabase(channel,
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Return the arm thickness of the board of the stored positions.
+   *
+   * @return the arm thickness
+   */
+  public int getArmThickness() {
+    return board.armThickness;
+  }
+
+  /**
+   * Return the largest number of marbles of a stored position.
+   *
+   * @return the largest number of marbles
+   */
+  public int getMaxMarbles() {
+    return maxMarbles;
+  }
+
+  /**
+   * Return the number of stored positions, counting rotations and reflections once.
+   *
+   * @return the number of positions
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Determine if the database can answer for the current position of a model: the board has
+   * the same arm thickness, and there are few enough marbles on it.
+   *
+   * @param model the model to check
+   * @return true if {@link #isSolvable(MarbleSolitaireModel)} can be asked about the model
+   */
+  public boolean covers(MarbleSolitaireModel model) {
+    return model.getBoardSize() == board.boardWidth && model.getScore() >= 1
+        && model.getScore() <= maxMarbles;
+  }
+
+  /**
+   * Determine if the current position of a model can be reduced to a single marble. The model is
+   * not changed.
+   *
+   * @param model the model to evaluate
+   * @return true if the position is solvable, false otherwise
+   * @throws IllegalArgumentException if the database does not cover the position
+   * @throws IllegalStateException if the database is closed
+   */
+  public boolean isSolvable(MarbleSolitaireModel model)
+      throws IllegalArgumentException, IllegalStateException {
+    checkOpen();
+    if (!covers(model)) {
+      throw new IllegalArgumentException("Invalid position, the endgame database holds boards "
+          + "of arm thickness " + board.armThickness + " with 1 to " + maxMarbles + " marbles");
+    }
+    return contains(board.canonical(positionOf(model)));
+  }
+
+  /**
+   * Find a move that keeps the current position of a model solvable. The model is not changed.
+   *
+   * @param model the model to find a move for
+   * @return the move, encoded as described in {@link Moves}, or -1 if no move keeps the position
+   *         solvable
+   * @throws IllegalArgumentException if the database does not cover the position
+   * @throws IllegalStateException if the database is closed
+   */
+  public int solvingMove(MarbleSolitaireModel model)
+      throws IllegalArgumentException, IllegalStateException {
+    checkOpen();
+    if (!covers(model)) {
+      throw new IllegalArgumentException("Invalid position, the endgame database holds boards "
+          + "of arm thickness " + board.armThickness + " with 1 to " + maxMarbles + " marbles");
+    }
+    long position = positionOf(model);
+    for (int jump = 0; jump < board.jumpMasks.length; jump++) {
+      if ((position & board.jumpMasks[jump]) == board.jumpNeeds[jump]
+          && contains(board.canonical(position ^ board.jumpMasks[jump]))) {
+        return board.jumpMoves[jump];
+      }
+    }
+    return -1;
+  }
+
+  private void checkOpen() throws IllegalStateException {
+    if (closed) {
+      throw new IllegalStateException("The endgame database is closed");
+    }
+  }
+
+  /**
+   * Read the position of a model, straight from the packed board when the model has one, since
+   * it numbers the cells the same way as the solver board.
+   */
+  private long positionOf(MarbleSolitaireModel model) {
+    if (model instanceof MarbleSolitaireModelImpl impl) {
+      return impl.packedBoard()[0];
+    }
+    return board.positionOf(model);
+  }
+
+  /**
+   * Determine if a canonical position is stored, by searching its bucket.
+   */
+  private boolean contains(long key) {
+    int bucket = LongHashSet.hash(key) & bucketMask;
+    int low = file.getInt(HEADER_BYTES + Integer.BYTES * bucket);
+    int high = file.getInt(HEADER_BYTES + Integer.BYTES * (bucket + 1)) - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      long stored = keyAt(middle);
+      if (stored < key) {
+        low = middle + 1;
+      } else if (stored > key) {
+        high = middle - 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private long keyAt(int index) {
+    int start = keysStart + index * keyBytes;
+    long key = 0;
+    for (int b = keyBytes - 1; b >= 0; b--) {
+      key = key << 8 | (file.get(start + b) & 0xFF);
+    }
+    return key;
+  }
+
+  /**
+   * Close the file of the database. Positions can no longer be looked up: later lookups throw an
+   * {@link IllegalStateException}. The mapping itself is released once it is no longer reachable.
+   *
+   * @throws IOException if the file cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    channel.close();
+  }
+}
@@ -0,0 +1,263 @@
+package solitaire;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class stores finished games of marble solitaire in an append-only archive on disk, and
+ * opens any of them by id without reading the others. An archive is two files: the data file
+ * holds one record per game, a 4-byte length followed by the game as written by
+ * {@link GameCodec}, and the index file next to it, with the same name and ".idx" appended,
+ * holds the 8-byte offset of every record, so the id of a game is its position in the index.
+ * Both files are read through memory mappings of fixed-size segments, which are mapped when
+ * first needed, so opening a game takes constant time however big the archive is. A record never
+ * crosses the end of a segment: if it does not fit, it starts at the next segment. Games are
+ * appended by one thread at a time, but can be read by many threads at once.
+ */
+public final class GameArchive implements Closeable {
+  private static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+  private static final int OFFSET_BYTES = Long.BYTES;
+  private static final int LENGTH_BYTES = Integer.BYTES;
+
+  private final FileChannel data;
+  private final FileChannel index;
+  private final int segmentSize;
+  //the mapped segments of each file, mapped lazily and remapped when the file has grown
+  private final Object mappingLock = new Object();
+  private MappedByteBuffer[] dataSegments = new MappedByteBuffer[0];
+  private MappedByteBuffer[] indexSegments = new MappedByteBuffer[0];
+  private volatile long size;
+  private long dataEnd;
+  private ByteBuffer record = ByteBuffer.allocate(256);
+  private final ByteBuffer offset = ByteBuffer.allocate(OFFSET_BYTES);
+  //the mappings outlive the channels, so reads check this rather than fail on their own
+  private volatile boolean closed;
+
+  private GameArchive(FileChannel data, FileChannel index, int segmentSize) throws IOException {
+    this.data = data;
+    this.index = index;
+    this.segmentSize = segmentSize;
+    //a record written after the last complete index entry is ignored, and written over
+    this.size = index.size() / OFFSET_BYTES;
+    this.dataEnd = size == 0 ? 0 : recordEnd(size - 1);
+  }
+
+  /**
+   * Return the position right after the record of a game, reading its offset and length from
+   * the files rather than through the mappings.
+   */
+  private long recordEnd(long id) throws IOException {
+    ByteBuffer bytes = ByteBuffer.allocate(OFFSET_BYTES);
+    readFully(index, bytes, id * OFFSET_BYTES);
+    long position = bytes.getLong(0);
+    bytes.clear().limit(LENGTH_BYTES);
+    readFully(data, bytes, position);
+    return position + LENGTH_BYTES + bytes.getInt(0);
+  }
+
+  /**
+   * Open an archive, and create it if it does not exist, mapping it in segments of 1 GiB.
+   *
+   * @param path the path of the data file
+   * @return the open archive
+   * @throws IOException if the files cannot be opened
+   */
+  public static GameArchive open(Path path) throws IOException {
+    return open(path, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * Open an archive, and create it if it does not exist, mapping it in segments of a given size.
+   * An archive must always be opened with the same segment size, and a game bigger than a
+   * segment cannot be stored.
+   *
+   * @param path        the path of the data file
+   * @param segmentSize the number of bytes mapped at once, a positive multiple of 8
+   * @return the open archive
+   * @throws IOException if the files cannot be opened
+   * @throws IllegalArgumentException if the segment size is invalid
+   */
+  public static GameArchive open(Path path, int segmentSize)
+      throws IOException, IllegalArgumentException {
+    if (segmentSize <= 0 || segmentSize % OFFSET_BYTES != 0) {
+      throw new IllegalArgumentException("Invalid segment size, "
+          + "it should be a positive multiple of 8");
+    }
+    FileChannel data = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      FileChannel index = FileChannel.open(path.resolveSibling(path.getFileName() + ".idx"),
+          StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      return new GameArchive(data, index, segmentSize);
+    } catch (IOException e) {
+      data.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Return the number of games in the archive.
+   *
+   * @return the number of games, one more than the id of the last game
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Add a game at the end of the archive. The game is not changed.
+   *
+   * @param game the game to add
+   * @return the id of the game
+   * @throws IOException if the game cannot be written
+   * @throws IllegalArgumentException if the game does not fit in a segment
+   * @throws IllegalStateException if the archive is closed
+   */
+  public synchronized long append(MarbleSolitaireModelImpl game)
+      throws IOException, IllegalArgumentException, IllegalStateException {
+    checkOpen();
+    int length = GameCodec.encodedSize(game);
+    int recordLength = LENGTH_BYTES + length;
+    if (recordLength > segmentSize) {
+      throw new IllegalArgumentException("Invalid game, it does not fit in a segment");
+    }
+    if (record.capacity() < recordLength) {
+      record = ByteBuffer.allocate(Math.max(recordLength, 2 * record.capacity()));
+    }
+    record.clear();
+    record.putInt(length);
+    GameCodec.encode(game, record);
+    record.flip();
+
+    long position = dataEnd;
+    if (position % segmentSize + recordLength > segmentSize) {
+      position += segmentSize - position % segmentSize;
+    }
+    writeFully(data, record, position);
+    dataEnd = position + recordLength;
+
+    long id = size;
+    offset.clear();
+    offset.putLong(position).flip();
+    writeFully(index, offset, id * OFFSET_BYTES);
+    size = id + 1;
+    return id;
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new EOFException("The archive ends inside a record");
+      }
+      position += read;
+    }
+  }
+
+  /**
+   * Open a game of the archive. This maps the segments that hold it if they are not mapped yet,
+   * and reads nothing else.
+   *
+   * @param id the id of the game
+   * @return a new model of the game, with its moves to undo and redo
+   * @throws IOException if the game cannot be read
+   * @throws IllegalArgumentException if no game has the id
+   * @throws IllegalStateException if the archive is closed
+   */
+  public MarbleSolitaireModelImpl read(long id)
+      throws IOException, IllegalArgumentException, IllegalStateException {
+    checkOpen();
+    if (id < 0 || id >= size) {
+      throw new IllegalArgumentException("Invalid game id, no game has the id " + id);
+    }
+    long indexPosition = id * OFFSET_BYTES;
+    long position = segment(index, indexPosition, OFFSET_BYTES, false)
+        .getLong((int) (indexPosition % segmentSize));
+    int start = (int) (position % segmentSize);
+    ByteBuffer view = segment(data, position, LENGTH_BYTES, true).duplicate();
+    int length = view.getInt(start);
+    if (start + LENGTH_BYTES + length > view.limit()) {
+      view = segment(data, position + LENGTH_BYTES, length, true).duplicate();
+    }
+    view.limit(start + LENGTH_BYTES + length).position(start + LENGTH_BYTES);
+    return GameCodec.decode(view);
+  }
+
+  private void checkOpen() throws IllegalStateException {
+    if (closed) {
+      throw new IllegalStateException("The archive is closed");
+    }
+  }
+
+  /**
+   * Return the mapped segment of a file that holds a given number of bytes at a given position,
+   * mapping it again if the file has grown past the mapped part since it was mapped.
+   */
+  private MappedByteBuffer segment(FileChannel channel, long position, int length,
+      boolean isData) throws IOException {
+    synchronized (mappingLock) {
+      MappedByteBuffer[] segments = isData ? dataSegments : indexSegments;
+      int number = (int) (position / segmentSize);
+      if (number >= segments.length) {
+        segments = Arrays.copyOf(segments, number + 1);
+        if (isData) {
+          dataSegments = segments;
+        } else {
+          indexSegments = segments;
+        }
+      }
+      MappedByteBuffer segment = segments[number];
+      long segmentStart = (long) number * segmentSize;
+      if (segment == null || segment.capacity() < position - segmentStart + length) {
+        long mapped = Math.min(segmentSize, channel.size() - segmentStart);
+        segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, mapped);
+        segments[number] = segment;
+      }
+      return segment;
+    }
+  }
+
+  /**
+   * Write everything appended so far to the storage device.
+   *
+   * @throws IOException if the files cannot be written
+   * @throws IllegalStateException if the archive is closed
+   */
+  public synchronized void flush() throws IOException, IllegalStateException {
+    checkOpen();
+    data.force(false);
+    index.force(false);
+  }
+
+  /**
+   * Close the files of the archive. Games can no longer be appended or read: later calls throw
+   * an {@link IllegalStateException}. The mappings themselves are released once they are no
+   * longer reachable.
+   *
+   * @throws IOException if the files cannot be closed
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    closed = true;
+    try {
+      data.close();
+    } finally {
+      index.close();
+    }
+  }
+}
@@ -0,0 +1,291 @@
+package solitaire;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * This class writes games of marble solitaire to bytes and reads them back, without going
+ * through strings. A game is written as, in order:
+ * <ul>
+ *   <li>the version of the format, one byte;</li>
+ *   <li>the arm thickness;</li>
+ *   <li>a flags byte, whose lowest bit is set if the empty cell the game started with is known,
+ *   followed by its row and column if it is, or else by the 8-byte hash of the starting
+ *   position;</li>
+ *   <li>the number of legal moves in the current position;</li>
+ *   <li>the number of moves in the log, the number of them that are made (the others can be
+ *   made again), and each move as (row * width + column) * 4 + direction;</li>
+ *   <li>the board, one bit per valid cell numbered as described in {@link BoardGeometry}, in
+ *   8-byte words.</li>
+ * </ul>
+ * Numbers are unsigned varints of 7 bits per byte, and words are little-endian whatever the
+ * order of the buffer. Reading a game restores the board directly instead of replaying the moves
+ * on a model. The bytes may come from anywhere, so it checks that the moves lead from the starting
+ * position to the board and can be made again, and counts the legal moves of the board instead
+ * of trusting the number written, which takes time proportional to the number of words and moves
+ * and to the number of marbles.
+ */
+public final class GameCodec {
+  static final int VERSION = 1;
+  private static final int START_KNOWN = 1;
+
+  private GameCodec() {
+  }
+
+  /**
+   * Return the number of bytes {@link #encode} writes for a game.
+   *
+   * @param model the game
+   * @return the size of the encoded game in bytes
+   */
+  public static int encodedSize(MarbleSolitaireModelImpl model) {
+    int width = model.getBoardSize();
+    int[] log = model.moveLog();
+    int size = 1 + varintSize((width - 1) / 2) + 1;
+    if (model.startRow() >= 0) {
+      size += varintSize(model.startRow()) + varintSize(model.startCol());
+    } else {
+      size += Long.BYTES;
+    }
+    size += varintSize(model.legalMoveCount()) + varintSize(log.length)
+        + varintSize(model.movesMade());
+    for (int move : log) {
+      size += varintSize(cellMove(move, width));
+    }
+    return size + Long.BYTES * model.packedBoard().length;
+  }
+
+  /**
+   * Write a game at the position of a buffer, and advance the position past it. The game is not
+   * changed.
+   *
+   * @param model  the game to write
+   * @param buffer the buffer to write into, with at least {@link #encodedSize} bytes remaining
+   * @throws java.nio.BufferOverflowException if the buffer is too small
+   */
+  public static void encode(MarbleSolitaireModelImpl model, ByteBuffer buffer) {
+    int width = model.getBoardSize();
+    buffer.put((byte) VERSION);
+    putVarint(buffer, (width - 1) / 2);
+    if (model.startRow() >= 0) {
+      buffer.put((byte) START_KNOWN);
+      putVarint(buffer, model.startRow());
+      putVarint(buffer, model.startCol());
+    } else {
+      buffer.put((byte) 0);
+      putWords(buffer, new long[] {model.startHash()});
+    }
+    putVarint(buffer, model.legalMoveCount());
+    int[] log = model.moveLog();
+    putVarint(buffer, log.length);
+    putVarint(buffer, model.movesMade());
+    for (int move : log) {
+      putVarint(buffer, cellMove(move, width));
+    }
+    putWords(buffer, model.packedBoard());
+  }
+
+  /**
+   * Read a game from the position of a buffer, and advance the position past it.
+   *
+   * @param buffer the buffer to read from
+   * @return the game, with the same board, score, hash and moves to undo and redo as the game
+   *         that was written
+   * @throws IllegalArgumentException if the bytes are not a game written by this version, or
+   *                                  describe a game that could not have been played
+   * @throws BufferUnderflowException if the buffer ends before the game does, which is found
+   *                                  before anything is allocated for the moves and the board
+   */
+  public static MarbleSolitaireModelImpl decode(ByteBuffer buffer)
+      throws IllegalArgumentException {
+    int version = buffer.get();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Invalid encoded game, unknown version " + version);
+    }
+    int armThickness = getVarint(buffer);
+    if (armThickness <= 0 || armThickness % 2 == 0) {
+      throw new IllegalArgumentException("Invalid encoded game, bad arm thickness");
+    }
+    BoardGeometry geometry = BoardGeometry.of(armThickness);
+    int width = geometry.boardWidth;
+    int startRow = -1;
+    int startCol = -1;
+    long startHash = 0;
+    if ((buffer.get() & START_KNOWN) != 0) {
+      startRow = getVarint(buffer);
+      startCol = getVarint(buffer);
+      if (!geometry.isValid(startRow, startCol)) {
+        throw new IllegalArgumentException("Invalid encoded game, bad empty cell");
+      }
+    } else {
+      long[] hash = new long[1];
+      getWords(buffer, hash);
+      startHash = hash[0];
+    }
+    int legalMoves = getVarint(buffer);
+    int logLimit = getVarint(buffer);
+    int logSize = getVarint(buffer);
+    if (logSize > logLimit || logLimit > geometry.cellCount) {
+      throw new IllegalArgumentException("Invalid encoded game, bad move count");
+    }
+    //every move takes at least one byte, so nothing is allocated for bytes that are not there
+    if (buffer.remaining() < logLimit + (long) Long.BYTES * geometry.wordCount()) {
+      throw new BufferUnderflowException();
+    }
+    int[] log = new int[logLimit];
+    for (int i = 0; i < logLimit; i++) {
+      long cellMove = getVarlong(buffer);
+      long cell = cellMove >>> 2;
+      int direction = (int) (cellMove & 3);
+      int fromRow = (int) (cell / width);
+      int fromCol = (int) (cell % width);
+      int toRow = fromRow + 2 * Moves.rowStep(direction);
+      int toCol = fromCol + 2 * Moves.colStep(direction);
+      if (cell >= (long) width * width || !geometry.isValid(fromRow, fromCol)
+          || !geometry.isValid(toRow, toCol)) {
+        throw new IllegalArgumentException("Invalid encoded game, bad move");
+      }
+      log[i] = Moves.encode(fromRow, fromCol, direction);
+    }
+    long[] board = new long[geometry.wordCount()];
+    getWords(buffer, board);
+    long lastWord = -1L >>> (board.length * Long.SIZE - geometry.cellCount);
+    if ((board[board.length - 1] & ~lastWord) != 0) {
+      throw new IllegalArgumentException("Invalid encoded game, marbles outside the board");
+    }
+    checkLog(geometry, board, startRow, startCol, log, logSize);
+    MarbleSolitaireModelImpl model = new MarbleSolitaireModelImpl(geometry, board, startRow,
+        startCol, startHash, legalMoves, log, logSize);
+    if (model.legalMoves(new int[0]) != legalMoves) {
+      throw new IllegalArgumentException("Invalid encoded game, wrong number of legal moves");
+    }
+    return model;
+  }
+
+  /**
+   * Check that the moves made can be taken back from a board, back to a full board with only the
+   * starting cell empty if it is known, and that the moves taken back can be made again.
+   */
+  private static void checkLog(BoardGeometry geometry, long[] board, int startRow, int startCol,
+      int[] log, int logSize) throws IllegalArgumentException {
+    long[] cells = board.clone();
+    for (int i = logSize - 1; i >= 0; i--) {
+      jump(geometry, cells, log[i], true);
+    }
+    if (startRow >= 0) {
+      long[] start = geometry.fullBoard();
+      flip(start, geometry.cellIndex(startRow, startCol));
+      if (!Arrays.equals(start, cells)) {
+        throw new IllegalArgumentException("Invalid encoded game, the moves do not lead to the "
+            + "board");
+      }
+    }
+    System.arraycopy(board, 0, cells, 0, cells.length);
+    for (int i = logSize; i < log.length; i++) {
+      jump(geometry, cells, log[i], false);
+    }
+  }
+
+  /**
+   * Make a move on a packed board, or take it back, if the cells allow it.
+   */
+  private static void jump(BoardGeometry geometry, long[] cells, int move, boolean undo) {
+    int direction = Moves.direction(move);
+    int from = geometry.cellIndex(Moves.fromRow(move), Moves.fromCol(move));
+    int over = geometry.cellIndex(Moves.fromRow(move) + Moves.rowStep(direction),
+        Moves.fromCol(move) + Moves.colStep(direction));
+    int to = geometry.cellIndex(Moves.toRow(move), Moves.toCol(move));
+    //a move needs marbles in the from and jumped cells and an empty to cell, taking it back the
+    //opposite
+    if (hasMarble(cells, from) == undo || hasMarble(cells, over) == undo
+        || hasMarble(cells, to) != undo) {
+      throw new IllegalArgumentException("Invalid encoded game, the moves do not lead to the "
+          + "board");
+    }
+    flip(cells, from);
+    flip(cells, over);
+    flip(cells, to);
+  }
+
+  private static boolean hasMarble(long[] cells, int index) {
+    return (cells[index >>> 6] >>> index & 1L) != 0;
+  }
+
+  private static void flip(long[] cells, int index) {
+    cells[index >>> 6] ^= 1L << index;
+  }
+
+  /**
+   * Encode a move by the cell it is made from and its direction, smaller than the encoding of
+   * {@link Moves} so that it takes fewer varint bytes.
+   */
+  private static long cellMove(int move, int width) {
+    return ((long) Moves.fromRow(move) * width + Moves.fromCol(move)) * 4 + Moves.direction(move);
+  }
+
+  private static int varintSize(long value) {
+    int size = 1;
+    while ((value >>>= 7) != 0) {
+      size++;
+    }
+    return size;
+  }
+
+  private static void putVarint(ByteBuffer buffer, long value) {
+    while ((value & ~0x7FL) != 0) {
+      buffer.put((byte) (value & 0x7F | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  private static long getVarlong(ByteBuffer buffer) {
+    long value = 0;
+    for (int shift = 0; shift < Long.SIZE; shift += 7) {
+      byte b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Invalid encoded game, varint too long");
+  }
+
+  private static int getVarint(ByteBuffer buffer) {
+    long value = getVarlong(buffer);
+    if (value > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid encoded game, number too large");
+    }
+    return (int) value;
+  }
+
+  /**
+   * Write words in bulk, little-endian, without changing the order of the buffer.
+   */
+  private static void putWords(ByteBuffer buffer, long[] words) {
+    ByteOrder order = buffer.order();
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    try {
+      buffer.asLongBuffer().put(words);
+      buffer.position(buffer.position() + Long.BYTES * words.length);
+    } finally {
+      buffer.order(order);
+    }
+  }
+
+  /**
+   * Read words in bulk, little-endian, without changing the order of the buffer.
+   */
+  private static void getWords(ByteBuffer buffer, long[] words) {
+    ByteOrder order = buffer.order();
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    try {
+      buffer.asLongBuffer().get(words);
+      buffer.position(buffer.position() + Long.BYTES * words.length);
+    } finally {
+      buffer.order(order);
+    }
+  }
+}
@@ -0,0 +1,250 @@
+package solitaire;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * This class hosts many games of marble solitaire at once, each one known by an id. Games are
+ * looked up without locking, and every game has its own queue of work, so work on one game never
+ * waits for work on another. The work on a game runs on a virtual thread, one task at a time and
+ * in the order it was submitted, so the models themselves need no synchronization. The registry
+ * counts the work it does and how often work found its game busy, see {@link #getStats()}. A
+ * registry should be closed when it is no longer needed. Work submitted after it is closed is
+ * rejected, and work submitted while it closes completes exceptionally with an
+ * {@link IllegalStateException} if it could not run.
+ */
+public class GameSessionRegistry implements AutoCloseable {
+  private final ConcurrentHashMap<Long, Session> sessions = new ConcurrentHashMap<>();
+  private final AtomicLong nextId = new AtomicLong();
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  private final long startNanos = System.nanoTime();
+  private final LongAdder created = new LongAdder();
+  private final LongAdder evicted = new LongAdder();
+  private final LongAdder tasks = new LongAdder();
+  private final LongAdder contendedTasks = new LongAdder();
+  private final LongAdder moves = new LongAdder();
+  private final LongAdder rejectedMoves = new LongAdder();
+  private volatile boolean closed;
+
+  /**
+   * One hosted game and the work waiting for it. At most one virtual thread at a time drains the
+   * queue, the one that set running.
+   */
+  private static final class Session {
+    private final MarbleSolitaireModel game;
+    private final ConcurrentLinkedQueue<Task<?>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private Session(MarbleSolitaireModel game) {
+      this.game = game;
+    }
+  }
+
+  /**
+   * One piece of work waiting for a game, and the future of its result.
+   */
+  private static final class Task<T> implements Runnable {
+    private final MarbleSolitaireModel game;
+    private final Function<? super MarbleSolitaireModel, ? extends T> action;
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+
+    private Task(MarbleSolitaireModel game,
+        Function<? super MarbleSolitaireModel, ? extends T> action) {
+      this.game = game;
+      this.action = action;
+    }
+
+    @Override
+    public void run() {
+      try {
+        future.complete(action.apply(game));
+      } catch (RuntimeException | Error e) {
+        future.completeExceptionally(e);
+      }
+    }
+  }
+
+  /**
+   * Start hosting a new game on the regular board with the empty cell at the center.
+   *
+   * @return the id of the new game
+   */
+  public long create() {
+    return create(new MarbleSolitaireModelImpl());
+  }
+
+  /**
+   * Start hosting a new game with a given arm thickness and the empty cell at the center.
+   *
+   * @param armThickness the arm thickness of the board
+   * @return the id of the new game
+   * @throws IllegalArgumentException if the arm thickness is invalid
+   */
+  public long create(int armThickness) throws IllegalArgumentException {
+    return create(new MarbleSolitaireModelImpl(armThickness));
+  }
+
+  /**
+   * Start hosting a given game. The caller must not use the game directly afterwards, only
+   * through the registry.
+   *
+   * @param game the game to host
+   * @return the id of the game
+   * @throws IllegalArgumentException if the game is null
+   */
+  public long create(MarbleSolitaireModel game) throws IllegalArgumentException {
+    if (game == null) {
+      throw new IllegalArgumentException("Invalid game, it should not be null");
+    }
+    long id = nextId.incrementAndGet();
+    sessions.put(id, new Session(game));
+    created.increment();
+    return id;
+  }
+
+  /**
+   * Stop hosting a game. Work that was already submitted for it still runs.
+   *
+   * @param id the id of the game
+   * @return true if the game was hosted, false otherwise
+   */
+  public boolean evict(long id) {
+    if (sessions.remove(id) == null) {
+      return false;
+    }
+    evicted.increment();
+    return true;
+  }
+
+  /**
+   * Determine if a game is hosted.
+   *
+   * @param id the id of the game
+   * @return true if the game is hosted, false otherwise
+   */
+  public boolean contains(long id) {
+    return sessions.containsKey(id);
+  }
+
+  /**
+   * Return the number of games currently hosted.
+   *
+   * @return the number of games
+   */
+  public int size() {
+    return sessions.size();
+  }
+
+  /**
+   * Try to make a move in a game, after all the work submitted before it for the same game. See
+   * {@link MarbleSolitaireModel#tryMove(int, int, int, int)}.
+   *
+   * @param id      the id of the game
+   * @param fromRow the row number of the position to be moved from (starts at 0)
+   * @param fromCol the column number of the position to be moved from (starts at 0)
+   * @param toRow   the row number of the position to be moved to (starts at 0)
+   * @param toCol   the column number of the position to be moved to (starts at 0)
+   * @return a future of {@link MoveResult#OK} if the move was made, or the reason it was rejected
+   * @throws IllegalArgumentException if no game has the id
+   * @throws IllegalStateException if the registry is closed
+   */
+  public CompletableFuture<MoveResult> move(long id, int fromRow, int fromCol, int toRow,
+      int toCol) throws IllegalArgumentException, IllegalStateException {
+    return submit(id, game -> {
+      MoveResult result = game.tryMove(fromRow, fromCol, toRow, toCol);
+      if (result == MoveResult.OK) {
+        moves.increment();
+      } else {
+        rejectedMoves.increment();
+      }
+      return result;
+    });
+  }
+
+  /**
+   * Run some work on a game, after all the work submitted before it for the same game and while
+   * no other work uses the game. The work must not keep the game to use it later.
+   *
+   * @param id     the id of the game
+   * @param action the work to run on the game
+   * @param <T>    the type of the result of the work
+   * @return a future of the result of the work, completed exceptionally if the work throws, or
+   *         with an {@link IllegalStateException} if the registry closed before the work could
+   *         run
+   * @throws IllegalArgumentException if no game has the id
+   * @throws IllegalStateException if the registry is closed
+   */
+  public <T> CompletableFuture<T> submit(long id,
+      Function<? super MarbleSolitaireModel, ? extends T> action)
+      throws IllegalArgumentException, IllegalStateException {
+    if (closed) {
+      throw new IllegalStateException("The registry is closed");
+    }
+    Session session = sessions.get(id);
+    if (session == null) {
+      throw new IllegalArgumentException("Invalid game id, no game has the id " + id);
+    }
+    Task<T> task = new Task<>(session.game, action);
+    session.queue.add(task);
+    if (session.running.compareAndSet(false, true)) {
+      try {
+        executor.execute(() -> drain(session));
+      } catch (RejectedExecutionException e) {
+        //the registry closed since the check above, fail the work no thread will run; running is
+        //released first, so work queued after the queue is emptied is failed by its submitter
+        session.running.set(false);
+        Task<?> waiting;
+        while ((waiting = session.queue.poll()) != null) {
+          waiting.future.completeExceptionally(new IllegalStateException("The registry is closed"));
+        }
+      }
+    } else {
+      contendedTasks.increment();
+    }
+    return task.future;
+  }
+
+  /**
+   * Run the work waiting for a game until there is none left. Work submitted while the queue is
+   * being released is picked up again here, or by a new thread if another submitter got there
+   * first.
+   */
+  private void drain(Session session) {
+    do {
+      Task<?> task;
+      while ((task = session.queue.poll()) != null) {
+        tasks.increment();
+        task.run();
+      }
+      session.running.set(false);
+    } while (!session.queue.isEmpty() && session.running.compareAndSet(false, true));
+  }
+
+  /**
+   * Return a snapshot of the counters of the registry since it was constructed.
+   *
+   * @return the counters of the registry
+   */
+  public SessionStats getStats() {
+    return new SessionStats(sessions.size(), created.sum(), evicted.sum(), tasks.sum(),
+        contendedTasks.sum(), moves.sum(), rejectedMoves.sum(), System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Wait for the submitted work to finish and stop the virtual threads. No work can be submitted
+   * afterwards.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    executor.close();
+  }
+}
@@ -0,0 +1,87 @@
+package solitaire;
+
+/**
+ * This class represents the outcome of replaying one recorded game: whether every move was
+ * legal, which move was not and why, and the score and whether the game was over where the
+ * replay stopped.
+ */
+public final class GameVerdict {
+  private final long game;
+  private final int failedMove;
+  private final MoveResult reason;
+  private final int score;
+  private final boolean gameOver;
+
+  GameVerdict(long game, int failedMove, MoveResult reason, int score, boolean gameOver) {
+    this.game = game;
+    this.failedMove = failedMove;
+    this.reason = reason;
+    this.score = score;
+    this.gameOver = gameOver;
+  }
+
+  /**
+   * Return the number of the game in the log, starting at 0.
+   *
+   * @return the number of the game
+   */
+  public long getGame() {
+    return game;
+  }
+
+  /**
+   * Determine if every move of the game was legal.
+   *
+   * @return true if the game is valid, false otherwise
+   */
+  public boolean isValid() {
+    return reason == MoveResult.OK;
+  }
+
+  /**
+   * Return the number of the first illegal move of the game, starting at 0.
+   *
+   * @return the number of the move, or -1 if the game is valid
+   */
+  public int getFailedMove() {
+    return failedMove;
+  }
+
+  /**
+   * Return why the first illegal move of the game was rejected.
+   *
+   * @return the reason, or {@link MoveResult#OK} if the game is valid
+   */
+  public MoveResult getReason() {
+    return reason;
+  }
+
+  /**
+   * Return the number of marbles left after the last legal move.
+   *
+   * @return the score where the replay stopped
+   */
+  public int getScore() {
+    return score;
+  }
+
+  /**
+   * Determine if no more moves could be made after the last legal move.
+   *
+   * @return true if the game was over where the replay stopped, false otherwise
+   */
+  public boolean isGameOver() {
+    return gameOver;
+  }
+
+  /**
+   * Return the verdict as one line of comma-separated values: the game, the reason, the failed
+   * move, the score and whether the game was over.
+   *
+   * @return the verdict as a line of text, without the line break
+   */
+  @Override
+  public String toString() {
+    return game + "," + reason + "," + failedMove + "," + score + "," + gameOver;
+  }
+}
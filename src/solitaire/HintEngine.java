@@ -0,0 +1,115 @@
+package solitaire;
+
+/**
+ * This class suggests the next move of a game of marble solitaire: a move that keeps the
+ * position solvable if there is one, and otherwise a move that leaves as few marbles as possible
+ * at the end. Every position it evaluates is remembered, by its canonical form, in a bounded cache
+ * shared by all callers, so rotations and reflections of a position are evaluated once and the
+ * positions players reach most often are answered from the cache. Like
+ * {@link MarbleSolitaireSolver}, only boards with arm thickness 1 and 3 are supported. A hint
+ * engine can be used by many threads at once.
+ */
+public class HintEngine {
+  private static final int DEFAULT_CAPACITY = 1 << 20;
+
+  private final PositionCache cache;
+
+  /**
+   * Construct a hint engine that remembers about a million positions.
+   */
+  public HintEngine() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Construct a hint engine that remembers about a given number of positions. Each position
+   * takes about 100 bytes.
+   *
+   * @param capacity the number of positions to remember
+   * @throws IllegalArgumentException if the capacity is not positive
+   */
+  public HintEngine(int capacity) throws IllegalArgumentException {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Invalid capacity, it should be positive");
+    }
+    this.cache = new PositionCache(capacity);
+  }
+
+  /**
+   * Suggest the next move for the current position of a model. The model is not changed.
+   *
+   * @param model the model to suggest a move for
+   * @return the move, encoded as described in {@link Moves}, or -1 if the game is over
+   * @throws IllegalArgumentException if the board has more than 64 valid cells
+   */
+  public int hint(MarbleSolitaireModel model) throws IllegalArgumentException {
+    SolverBoard board = SolverBoard.of(model);
+    long position = board.positionOf(model);
+    int best = Integer.MAX_VALUE;
+    int bestMove = -1;
+    for (int jump = 0; jump < board.jumpMasks.length; jump++) {
+      if ((position & board.jumpMasks[jump]) == board.jumpNeeds[jump]) {
+        int score = bestScore(board, position ^ board.jumpMasks[jump]);
+        if (score < best) {
+          best = score;
+          bestMove = board.jumpMoves[jump];
+          if (best == 1) {
+            break;
+          }
+        }
+      }
+    }
+    return bestMove;
+  }
+
+  /**
+   * Return the fewest marbles that can be left at the end of the game, from the current
+   * position of a model. The model is not changed.
+   *
+   * @param model the model to evaluate
+   * @return the lowest final score that can be reached, 1 if the position is solvable
+   * @throws IllegalArgumentException if the board has more than 64 valid cells
+   */
+  public int bestScore(MarbleSolitaireModel model) throws IllegalArgumentException {
+    SolverBoard board = SolverBoard.of(model);
+    return bestScore(board, board.positionOf(model));
+  }
+
+  /**
+   * Determine if the current position of a model can be reduced to a single marble.
+   *
+   * @param model the model to evaluate
+   * @return true if the position is solvable, false otherwise
+   * @throws IllegalArgumentException if the board has more than 64 valid cells
+   */
+  public boolean isSolvable(MarbleSolitaireModel model) throws IllegalArgumentException {
+    return bestScore(model) == 1;
+  }
+
+  /**
+   * Search for the lowest final score reachable from a position, stopping as soon as a single
+   * marble can be reached since nothing beats it.
+   */
+  private int bestScore(SolverBoard board, long position) {
+    int marbles = Long.bitCount(position);
+    if (marbles <= 1) {
+      return marbles;
+    }
+    //the boards share the cache, so the key also tells which board the position is on
+    long key = board.canonical(position) << 1 | (board.armThickness == 1 ? 1 : 0);
+    int cached = cache.get(key);
+    if (cached >= 0) {
+      return cached;
+    }
+    int best = marbles;
+    long[] needs = board.jumpNeeds;
+    long[] masks = board.jumpMasks;
+    for (int jump = 0; jump < masks.length && best > 1; jump++) {
+      if ((position & masks[jump]) == needs[jump]) {
+        best = Math.min(best, bestScore(board, position ^ masks[jump]));
+      }
+    }
+    cache.put(key, best);
+    return best;
+  }
+}
@@ -0,0 +1,350 @@
+package solitaire;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This class measures how a game of marble solitaire is used. It wraps another model and records
+ * into a {@link ModelMetrics} how many times each operation of {@link ModelOperation} runs, how
+ * long it takes and why moves are rejected, and it emits JDK Flight Recorder events for the same
+ * operations and rejections. The cheap reads, the score, the cells, the board size and the hash,
+ * are passed through untouched. Instrumentation is opt-in: a model that is not wrapped pays
+ * nothing, and the events cost nothing beyond the check that they are disabled unless a
+ * recording enables them. A wrapped model is as safe to share between threads as the model it
+ * wraps.
+ */
+public class InstrumentedMarbleSolitaireModel implements MarbleSolitaireModel {
+  private final MarbleSolitaireModel game;
+  private final ModelMetrics metrics;
+
+  /**
+   * An event for one call of an operation of a model.
+   */
+  @Name("solitaire.ModelOperation")
+  @Label("Model Operation")
+  @Category("Marble Solitaire")
+  @Description("A call of an operation of a marble solitaire model")
+  private static final class OperationEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Board Size")
+    int boardSize;
+
+    @Label("Score")
+    int score;
+  }
+
+  /**
+   * An event for a move that broke the rules.
+   */
+  @Name("solitaire.MoveRejected")
+  @Label("Move Rejected")
+  @Category("Marble Solitaire")
+  @Description("A move of a marble solitaire model that was rejected")
+  private static final class RejectedEvent extends Event {
+    @Label("From Row")
+    int fromRow;
+
+    @Label("From Column")
+    int fromCol;
+
+    @Label("To Row")
+    int toRow;
+
+    @Label("To Column")
+    int toCol;
+
+    @Label("Reason")
+    String reason;
+  }
+
+  /**
+   * Construct an instrumented game that plays a given game and records into given metrics. The
+   * given game must not be used directly afterwards, only through this one, or its calls will
+   * not be measured.
+   *
+   * @param game    the game to play
+   * @param metrics where to record the measurements, may be shared with other games
+   * @throws IllegalArgumentException if the game or the metrics are null
+   */
+  public InstrumentedMarbleSolitaireModel(MarbleSolitaireModel game, ModelMetrics metrics)
+      throws IllegalArgumentException {
+    if (game == null) {
+      throw new IllegalArgumentException("Invalid game, it should not be null");
+    }
+    if (metrics == null) {
+      throw new IllegalArgumentException("Invalid metrics, they should not be null");
+    }
+    this.game = game;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Return the metrics this game records into.
+   *
+   * @return the metrics
+   */
+  public ModelMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Record a call of an operation that started at a given time, and commit its event if a
+   * recording wants it.
+   */
+  private void end(ModelOperation operation, long start, OperationEvent event) {
+    metrics.record(operation, System.nanoTime() - start);
+    if (event.shouldCommit()) {
+      event.operation = operation.name();
+      event.boardSize = game.getBoardSize();
+      event.score = game.getScore();
+      event.commit();
+    }
+  }
+
+  /**
+   * Record a rejected move, and commit its event if a recording wants it.
+   */
+  private void reject(MoveResult reason, int fromRow, int fromCol, int toRow, int toCol) {
+    metrics.reject(reason);
+    RejectedEvent event = new RejectedEvent();
+    if (event.shouldCommit()) {
+      event.fromRow = fromRow;
+      event.fromCol = fromCol;
+      event.toRow = toRow;
+      event.toCol = toCol;
+      event.reason = reason.name();
+      event.commit();
+    }
+  }
+
+  /**
+   * Move a single marble from a given position to another given position, and record how long
+   * it took and, if the move was rejected, why.
+   *
+   * @param fromRow the row number of the position to be moved from (starts at 0)
+   * @param fromCol the column number of the position to be moved from (starts at 0)
+   * @param toRow   the row number of the position to be moved to (starts at 0)
+   * @param toCol   the column number of the position to be moved to (starts at 0)
+   * @throws IllegalArgumentException if the move is not possible
+   */
+  @Override
+  public void move(int fromRow, int fromCol, int toRow, int toCol) throws IllegalArgumentException {
+    OperationEvent event = new OperationEvent();
+    event.begin();
+    long start = System.nanoTime();
+    //the model checks moves exactly as tryMove does, which also tells why a move is rejected
+    MoveResult result = game.tryMove(fromRow, fromCol, toRow, toCol);
+    end(ModelOperation.MOVE, start, event);
+    if (result != MoveResult.OK) {
+      reject(result, fromRow, fromCol, toRow, toCol);
+      throw new IllegalArgumentException(result.getMessage());
+    }
+  }
+
+  /**
+   * Try to move a single marble from a given position to another given position, and record
+   * how long it took and, if the move was rejected, why.
+   *
+   * @param fromRow the row number of the position to be moved from (starts at 0)
+   * @param fromCol the column number of the position to be moved from (starts at 0)
+   * @param toRow   the row number of the position to be moved to (starts at 0)
+   * @param toCol   the column number of the position to be moved to (starts at 0)
+   * @return {@link MoveResult#OK} if the move was made, or the reason it was rejected
+   */
+  @Override
+  public MoveResult tryMove(int fromRow, int fromCol, int toRow, int toCol) {
+    OperationEvent event = new OperationEvent();
+    event.begin();
+    long start = System.nanoTime();
+    MoveResult result = game.tryMove(fromRow, fromCol, toRow, toCol);
+    end(ModelOperation.TRY_MOVE, start, event);
+    if (result != MoveResult.OK) {
+      reject(result, fromRow, fromCol, toRow, toCol);
+    }
+    return result;
+  }
+
+  /**
+   * Take back the last move that was made and not taken back yet, and record how long it took.
+   *
+   * @return true if a move was taken back, false if there was no move to take back
+   */
+  @Override
+  public boolean undo() {
+    OperationEvent event = new OperationEvent();
+    event.begin();
+    long start = System.nanoTime();
+    boolean undone = game.undo();
+    end(ModelOperation.UNDO, start, event);
+    return undone;
+  }
+
+  /**
+   * Make again the last move that was taken back, and record how long it took.
+   *
+   * @return true if a move was made again, false if there was no move to make again
+   */
+  @Override
+  public boolean redo() {
+    OperationEvent event = new OperationEvent();
+    event.begin();
+    long start = System.nanoTime();
+    boolean redone = game.redo();
+    end(ModelOperation.REDO, start, event);
+    return redone;
+  }
+
+  /**
+   * Determine if the game is over, and record how long it took.
+   *
+   * @return true if the game is over, false otherwise
+   */
+  @Override
+  public boolean isGameOver() {
+    OperationEvent event = new OperationEvent();
+    event.begin();
+    long start = System.nanoTime();
+    boolean gameOver = game.isGameOver();
+    end(ModelOperation.IS_GAME_OVER, start, event);
+    return gameOver;
+  }
+
+  /**
+   * Return the number of moves that can be made from the current state of the board, and
+   * record how long it took.
+   *
+   * @return the number of legal moves
+   */
+  @Override
+  public int legalMoveCount() {
+    OperationEvent event = new OperationEvent();
+    event.begin();
+    long start = System.nanoTime();
+    int count = game.legalMoveCount();
+    end(ModelOperation.LEGAL_MOVE_COUNT, start, event);
+    return count;
+  }
+
+  /**
+   * Write the moves that can be made from the current state of the board into a given array,
+   * and record how long it took.
+   *
+   * @param moves the array to write the encoded moves into, starting at index 0
+   * @return the number of legal moves, which is {@link #legalMoveCount()}
+   */
+  @Override
+  public int legalMoves(int[] moves) {
+    OperationEvent event = new OperationEvent();
+    event.begin();
+    long start = System.nanoTime();
+    int count = game.legalMoves(moves);
+    end(ModelOperation.LEGAL_MOVES, start, event);
+    return count;
+  }
+
+  /**
+   * Return a string that represents the current state of the board, and record how long it
+   * took.
+   *
+   * @return the game state as a string
+   */
+  @Override
+  public String getGameState() {
+    OperationEvent event = new OperationEvent();
+    event.begin();
+    long start = System.nanoTime();
+    String state = game.getGameState();
+    end(ModelOperation.GET_GAME_STATE, start, event);
+    return state;
+  }
+
+  /**
+   * Append the game state to a given destination, and record how long it took, even if the
+   * destination could not be written.
+   *
+   * @param destination where to append the game state
+   * @throws IOException if the destination cannot be written
+   */
+  @Override
+  public void renderTo(Appendable destination) throws IOException {
+    OperationEvent event = new OperationEvent();
+    event.begin();
+    long start = System.nanoTime();
+    try {
+      game.renderTo(destination);
+    } finally {
+      end(ModelOperation.RENDER_TO, start, event);
+    }
+  }
+
+  /**
+   * Write the game state into a given buffer, one byte per character, and record how long it
+   * took, even if the buffer had too little room.
+   *
+   * @param buffer the buffer to write into
+   * @throws BufferOverflowException if the buffer has less room than the game state needs, in
+   *                                 which case nothing is written
+   */
+  @Override
+  public void renderTo(ByteBuffer buffer) throws BufferOverflowException {
+    OperationEvent event = new OperationEvent();
+    event.begin();
+    long start = System.nanoTime();
+    try {
+      game.renderTo(buffer);
+    } finally {
+      end(ModelOperation.RENDER_TO, start, event);
+    }
+  }
+
+  /**
+   * Return the number of rows (and columns) of the square board. This is not recorded.
+   *
+   * @return the width of the board
+   */
+  @Override
+  public int getBoardSize() {
+    return game.getBoardSize();
+  }
+
+  /**
+   * Return what is in the cell at a given position of the board. This is not recorded.
+   *
+   * @param row the row number of the position (starts at 0)
+   * @param col the column number of the position (starts at 0)
+   * @return {@link Elements#MARBLE}, {@link Elements#EMPTY} or {@link Elements#INVALID}
+   * @throws IllegalArgumentException if the position is outside the board
+   */
+  @Override
+  public Elements getSlotAt(int row, int col) throws IllegalArgumentException {
+    return game.getSlotAt(row, col);
+  }
+
+  /**
+   * Return the number of marbles currently on the board. This is not recorded.
+   *
+   * @return the number of marbles currently on the board
+   */
+  @Override
+  public int getScore() {
+    return game.getScore();
+  }
+
+  /**
+   * Return a 64-bit hash of the current position. This is not recorded.
+   *
+   * @return the hash of the current position
+   */
+  @Override
+  public long positionHash() {
+    return game.positionHash();
+  }
+}
@@ -0,0 +1,104 @@
+package solitaire;
+
+/**
+ * This class walks over the legal moves of a model one at a time. The moves are collected when
+ * the cursor is reset, so making a move does not change what the cursor walks over until it is
+ * reset again. One cursor can be reset and reused for any number of models; it only allocates
+ * when a model has more legal moves than any model it has seen before.
+ */
+public final class LegalMoveCursor {
+  private int[] moves;
+  private int count;
+  private int position;
+  private int current;
+
+  /**
+   * Construct a cursor with no moves. Call {@link #reset(MarbleSolitaireModel)} before use.
+   */
+  public LegalMoveCursor() {
+    this.moves = new int[16];
+  }
+
+  /**
+   * Collect the legal moves of a model and move the cursor before the first of them.
+   *
+   * @param model the model whose legal moves to walk over
+   * @return this cursor
+   */
+  public LegalMoveCursor reset(MarbleSolitaireModel model) {
+    int needed = model.legalMoveCount();
+    if (needed > moves.length) {
+      moves = new int[Math.max(needed, 2 * moves.length)];
+    }
+    this.count = model.legalMoves(moves);
+    this.position = 0;
+    return this;
+  }
+
+  /**
+   * Advance to the next legal move.
+   *
+   * @return true if the cursor is on a move, false if there are no more moves
+   */
+  public boolean next() {
+    if (position >= count) {
+      return false;
+    }
+    current = moves[position++];
+    return true;
+  }
+
+  /**
+   * Return the number of legal moves collected by the last reset.
+   *
+   * @return the number of moves the cursor walks over
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Return the encoded move the cursor is on, see {@link Moves}.
+   *
+   * @return the current encoded move
+   */
+  public int move() {
+    return current;
+  }
+
+  /**
+   * Return the row number of the position the current move is made from.
+   *
+   * @return the row number of the from position
+   */
+  public int fromRow() {
+    return Moves.fromRow(current);
+  }
+
+  /**
+   * Return the column number of the position the current move is made from.
+   *
+   * @return the column number of the from position
+   */
+  public int fromCol() {
+    return Moves.fromCol(current);
+  }
+
+  /**
+   * Return the row number of the position the current move lands on.
+   *
+   * @return the row number of the to position
+   */
+  public int toRow() {
+    return Moves.toRow(current);
+  }
+
+  /**
+   * Return the column number of the position the current move lands on.
+   *
+   * @return the column number of the to position
+   */
+  public int toCol() {
+    return Moves.toCol(current);
+  }
+}
@@ -0,0 +1,107 @@
+package solitaire;
+
+/**
+ * This class is a set of longs stored in one open-addressing array, so adding and looking up a
+ * position never boxes it. The value 0 is reserved to mark free slots and cannot be stored; it is
+ * never a position that still has marbles on it.
+ */
+final class LongHashSet {
+  private long[] slots;
+  private int size;
+
+  /**
+   * Construct an empty set with room for a given number of elements before it grows.
+   *
+   * @param expectedSize the number of elements expected
+   */
+  LongHashSet(int expectedSize) {
+    this.slots = new long[Integer.highestOneBit(Math.max(16, 2 * expectedSize - 1)) << 1];
+  }
+
+  /**
+   * Determine if the set contains a value.
+   *
+   * @param value a non-zero value
+   * @return true if the value was added before, false otherwise
+   */
+  boolean contains(long value) {
+    int mask = slots.length - 1;
+    for (int slot = hash(value) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+      if (slots[slot] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Add a value to the set.
+   *
+   * @param value a non-zero value
+   * @return true if the value was added, false if it was already in the set
+   */
+  boolean add(long value) {
+    int mask = slots.length - 1;
+    int slot = hash(value) & mask;
+    for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+      if (slots[slot] == value) {
+        return false;
+      }
+    }
+    slots[slot] = value;
+    if (++size > slots.length / 2) {
+      grow();
+    }
+    return true;
+  }
+
+  /**
+   * Return the number of values in the set.
+   *
+   * @return the number of values in the set
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Return the values of the set, in no particular order.
+   *
+   * @return a new array holding every value once
+   */
+  long[] toArray() {
+    long[] values = new long[size];
+    int count = 0;
+    for (long value : slots) {
+      if (value != 0) {
+        values[count++] = value;
+      }
+    }
+    return values;
+  }
+
+  private void grow() {
+    long[] old = slots;
+    slots = new long[old.length * 2];
+    int mask = slots.length - 1;
+    for (long value : old) {
+      if (value != 0) {
+        int slot = hash(value) & mask;
+        while (slots[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        slots[slot] = value;
+      }
+    }
+  }
+
+  /**
+   * Spread the bits of a value, so positions that differ in a few cells land far apart.
+   */
+  static int hash(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    return (int) value;
+  }
+}
@@ -0,0 +1,93 @@
+package solitaire;
+
+/**
+ * This class recognizes positions of marble solitaire that can no longer be reduced to a single
+ * marble, from nothing more than how many marbles stand on each of the nine classes of cells
+ * whose row and column numbers have the same remainders modulo 3. Those nine counts decide two
+ * classic obstructions, both of which hold on any cross-shaped board.
+ *
+ * <p>Position classes: every jump touches one cell of each of the three diagonals (r + c) modulo
+ * 3, so it changes the parity of the number of marbles on all three at once, and the same holds
+ * for the diagonals (r - c) modulo 3. Which of those parities are equal therefore never changes,
+ * and a single marble can only be left on a cell whose own parities match the position.
+ *
+ * <p>Pagoda functions: give weight 1 to the cells whose row is in two consecutive classes modulo
+ * 3 and whose column is in two consecutive classes modulo 3, and weight 0 to the others. Whenever
+ * a jump lands on a cell of weight 1, the cell it jumps from or the cell it jumps over also has
+ * weight 1, so the total weight of the marbles never increases. A single marble on a cell of
+ * weight 1 can only be reached while some marble has weight 1.
+ *
+ * <p>Both tests only ever prove a position lost, they never prove it solvable.
+ */
+final class LostPositions {
+  private LostPositions() {
+  }
+
+  /**
+   * Return the class of a cell, from its row and column numbers modulo 3.
+   *
+   * @param row the row number of the cell
+   * @param col the column number of the cell
+   * @return a number from 0 to 8
+   */
+  static int residue(int row, int col) {
+    return 3 * (row % 3) + col % 3;
+  }
+
+  /**
+   * Determine if a position can be shown to never end with a single marble.
+   *
+   * @param counts   the number of marbles on the cells of each class of {@link #residue}
+   * @param geometry the shape of the board
+   * @return true if no cell of the board can hold the last marble, false if it is not known
+   */
+  static boolean isLost(int[] counts, BoardGeometry geometry) {
+    int sums = 0;
+    int differences = 0;
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 3; j++) {
+        if ((counts[3 * i + j] & 1) != 0) {
+          sums ^= 1 << (i + j) % 3;
+          differences ^= 1 << (i - j + 3) % 3;
+        }
+      }
+    }
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 3; j++) {
+        if (geometry.residueCounts[3 * i + j] > 0
+            && sameClass(sums, 1 << (i + j) % 3)
+            && sameClass(differences, 1 << (i - j + 3) % 3)
+            && pagodasAllow(counts, i, j)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Determine if two sets of diagonal parities are in the same class. A jump flips all three.
+   */
+  private static boolean sameClass(int parities, int otherParities) {
+    return parities == otherParities || parities == (otherParities ^ 7);
+  }
+
+  /**
+   * Determine if every pagoda function that gives weight 1 to the cells of a class still has
+   * some weight on the board.
+   */
+  private static boolean pagodasAllow(int[] counts, int row, int col) {
+    for (int firstRow = row + 2; firstRow <= row + 3; firstRow++) {
+      for (int firstCol = col + 2; firstCol <= col + 3; firstCol++) {
+        int weight = counts[3 * (firstRow % 3) + firstCol % 3]
+            + counts[3 * (firstRow % 3) + (firstCol + 1) % 3]
+            + counts[3 * ((firstRow + 1) % 3) + firstCol % 3]
+            + counts[3 * ((firstRow + 1) % 3) + (firstCol + 1) % 3];
+        if (weight == 0) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+}
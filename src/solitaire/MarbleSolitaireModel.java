@@ -1,5 +1,9 @@
 package solitaire;
 
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
 /**
  * This interface represents the operations offered by the marble solitaire model. One object of the
  * model represents one game of marble solitaire.
@@ -18,6 +22,35 @@ public interface MarbleSolitaireModel {
    */
   void move(int fromRow, int fromCol, int toRow, int toCol) throws IllegalArgumentException;
 
+  /**
+   * Try to move a single marble from a given position to another given position. This makes the
+   * same checks as {@link #move(int, int, int, int)}, but reports an illegal move through the
+   * result instead of throwing an exception, so rejecting a move allocates nothing.
+   *
+   * @param fromRow the row number of the position to be moved from (starts at 0)
+   * @param fromCol the column number of the position to be moved from (starts at 0)
+   * @param toRow   the row number of the position to be moved to (starts at 0)
+   * @param toCol   the column number of the position to be moved to (starts at 0)
+   * @return {@link MoveResult#OK} if the move was made, or the reason it was rejected
+   */
+  MoveResult tryMove(int fromRow, int fromCol, int toRow, int toCol);
+
+  /**
+   * Take back the last move that was made and not taken back yet, restoring the board and the
+   * score as they were before it.
+   *
+   * @return true if a move was taken back, false if there was no move to take back
+   */
+  boolean undo();
+
+  /**
+   * Make again the last move that was taken back. Making any other move in between discards the
+   * moves that could be made again.
+   *
+   * @return true if a move was made again, false if there was no move to make again
+   */
+  boolean redo();
+
   /**
    * Determine and return if the game is over or not. A game is over if no more moves can be made.
    *
@@ -25,6 +58,25 @@ public interface MarbleSolitaireModel {
    */
   boolean isGameOver();
 
+  /**
+   * Return the number of moves that can be made from the current state of the board. The game is
+   * over exactly when this is 0.
+   *
+   * @return the number of legal moves
+   */
+  int legalMoveCount();
+
+  /**
+   * Write the moves that can be made from the current state of the board into a given array,
+   * encoded as described in {@link Moves}. Every move written is accepted by
+   * {@link #move(int, int, int, int)}. If the array is too short, only as many moves as fit are
+   * written, but all of them are counted.
+   *
+   * @param moves the array to write the encoded moves into, starting at index 0
+   * @return the number of legal moves, which is {@link #legalMoveCount()}
+   */
+  int legalMoves(int[] moves);
+
   /**
    * Return a string that represents the current state of the board. The string should have one line
    * per row of the game board. Each slot on the game board is a single character ("O", "_" or " "
@@ -35,10 +87,56 @@ public interface MarbleSolitaireModel {
    */
   String getGameState();
 
+  /**
+   * Append the game state returned by {@link #getGameState()} to a given destination, one
+   * character at a time when the model has not made the string already.
+   *
+   * @param destination where to append the game state
+   * @throws IOException if the destination cannot be written
+   */
+  void renderTo(Appendable destination) throws IOException;
+
+  /**
+   * Write the game state returned by {@link #getGameState()} into a given buffer, one byte per
+   * character, from the position of the buffer, and move the position past it. The game state
+   * takes 2 * size * size - 1 bytes, where size is {@link #getBoardSize()}.
+   *
+   * @param buffer the buffer to write into
+   * @throws BufferOverflowException if the buffer has less room than the game state needs, in
+   *                                 which case nothing is written
+   */
+  void renderTo(ByteBuffer buffer) throws BufferOverflowException;
+
+  /**
+   * Return the number of rows (and columns) of the square board, including the invalid corners.
+   *
+   * @return the width of the board
+   */
+  int getBoardSize();
+
+  /**
+   * Return what is in the cell at a given position of the board.
+   *
+   * @param row the row number of the position (starts at 0)
+   * @param col the column number of the position (starts at 0)
+   * @return {@link Elements#MARBLE}, {@link Elements#EMPTY} or {@link Elements#INVALID}
+   * @throws IllegalArgumentException if the position is outside the board
+   */
+  Elements getSlotAt(int row, int col) throws IllegalArgumentException;
+
   /**
    * Return the number of marbles currently on the board.
    *
    * @return the number of marbles currently on the board
    */
   int getScore();
+
+  /**
+   * Return a 64-bit hash of the current position, the Zobrist hash of the cells that hold a
+   * marble. Models of the same arm thickness with the same marbles return the same hash, however
+   * they were constructed and whatever moves led there.
+   *
+   * @return the hash of the current position
+   */
+  long positionHash();
 }
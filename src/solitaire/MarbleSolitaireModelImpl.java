@@ -1,17 +1,42 @@
 package solitaire;
 
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 /**
  * This class represents the operations offered by the marble solitaire model. One object of the
  * model represents one game of marble solitaire.
  */
 public class MarbleSolitaireModelImpl implements MarbleSolitaireModel {
-  private final int armThickness;
+  private int armThickness;
   private int boardWidth;
   private int emptyRow;
   private int emptyCol;
-  private String[][] board;
+  private BoardGeometry geometry;
+  //one bit per valid cell, numbered by the geometry, set when the cell holds a marble
+  private long[] board;
+  //the board as the shared rules read it
+  private final BoardRules.Cells cells = this::hasMarble;
   private int score;
   private int emptyCells;
+  private int legalMoves;
+  //the number of marbles in each class of LostPositions.residue, or null until first needed
+  private int[] residues;
+  //the hash of the starting position, and the XOR of the keys of every cell changed since
+  private long startHash;
+  //written after startHash, so a thread that sees it set also sees the hash
+  private volatile boolean startHashed;
+  private long hashChanges;
+  //the number of times the board has changed, and the last game state made
+  private long changes;
+  private RenderedState rendered;
+  //the moves made so far, followed by the moves that were taken back and can be made again
+  private int[] log;
+  private int logSize;
+  private int logLimit;
 
   /**
    * Construct a new game of Marble Solitaire using the default arm thickness of 3 and the empty
@@ -19,7 +44,7 @@ public class MarbleSolitaireModelImpl implements MarbleSolitaireModel {
    */
   public MarbleSolitaireModelImpl() {
     this.armThickness = 3;
-    setUpBoard(armThickness, armThickness, armThickness);
+    setUpBoard(BoardGeometry.of(armThickness), armThickness, armThickness);
   }
 
   /**
@@ -35,7 +60,7 @@ public class MarbleSolitaireModelImpl implements MarbleSolitaireModel {
           + "it should be a positive odd number");
     }
     this.armThickness = armThickness;
-    setUpBoard(armThickness, armThickness, armThickness);
+    setUpBoard(BoardGeometry.of(armThickness), armThickness, armThickness);
   }
 
   /**
@@ -49,20 +74,11 @@ public class MarbleSolitaireModelImpl implements MarbleSolitaireModel {
    */
   public MarbleSolitaireModelImpl(int emptyRow, int emptyColumn) {
     this.armThickness = 3;
-    if (emptyRow < 0 || emptyColumn < 0
-        || emptyRow > 2 * armThickness || emptyColumn > 2 * armThickness //out of the board
-        || (emptyRow < armThickness - (armThickness - 1) / 2
-        && emptyColumn < armThickness - (armThickness - 1) / 2) //upper left invalid square
-        || (emptyRow < armThickness - (armThickness - 1) / 2
-        && emptyColumn > armThickness + (armThickness - 1) / 2) //upper right invalid square
-        || (emptyRow > armThickness + (armThickness - 1) / 2
-        && emptyColumn < armThickness - (armThickness - 1) / 2) //lower left invalid square
-        || (emptyRow > armThickness + (armThickness - 1) / 2
-        && emptyColumn > armThickness + (armThickness - 1) / 2)) { //lower right invalid square
+    BoardGeometry geometry = BoardGeometry.of(armThickness);
+    if (!geometry.isValid(emptyRow, emptyColumn)) {
       throw new IllegalArgumentException("Invalid empty cell position");
     }
-
-    setUpBoard(armThickness, emptyRow, emptyColumn);
+    setUpBoard(geometry, emptyRow, emptyColumn);
   }
 
   /**
@@ -82,71 +98,256 @@ public class MarbleSolitaireModelImpl implements MarbleSolitaireModel {
           + "it should be a positive odd number");
     }
     this.armThickness = armThickness;
-    if (emptyRow < 0 || emptyColumn < 0
-        || emptyRow > 2 * armThickness || emptyColumn > 2 * armThickness //out of the board
-        || (emptyRow < armThickness - (armThickness - 1) / 2
-        && emptyColumn < armThickness - (armThickness - 1) / 2) //upper left invalid square
-        || (emptyRow < armThickness - (armThickness - 1) / 2
-        && emptyColumn > armThickness + (armThickness - 1) / 2) //upper right invalid square
-        || (emptyRow > armThickness + (armThickness - 1) / 2
-        && emptyColumn < armThickness - (armThickness - 1) / 2) //lower left invalid square
-        || (emptyRow > armThickness + (armThickness - 1) / 2
-        && emptyColumn > armThickness + (armThickness - 1) / 2)) { //lower right invalid square
+    BoardGeometry geometry = BoardGeometry.of(armThickness);
+    if (!geometry.isValid(emptyRow, emptyColumn)) {
       throw new IllegalArgumentException("Invalid empty cell position");
     }
+    setUpBoard(geometry, emptyRow, emptyColumn);
+  }
+
+  /**
+   * Construct a game from its parts, as taken apart by {@link BoardSnapshot} and
+   * {@link GameCodec}. The score and the hash are worked out from the board and the moves, the
+   * board is not replayed.
+   *
+   * @param geometry   the shape of the board
+   * @param board      the cells of the current position, one bit per valid cell, which the game
+   *                   keeps
+   * @param startRow   the row number of the empty cell the game started with, or -1 if unknown
+   * @param startCol   the column number of the empty cell the game started with, or -1 if unknown
+   * @param startHash  the hash of the starting position, only used if the empty cell is unknown
+   * @param legalMoves the number of legal moves in the current position
+   * @param log        the moves made, followed by the moves that were taken back, which the game
+   *                   keeps
+   * @param logSize    the number of moves made
+   */
+  MarbleSolitaireModelImpl(BoardGeometry geometry, long[] board, int startRow, int startCol,
+      long startHash, int legalMoves, int[] log, int logSize) {
+    this.armThickness = geometry.armThickness;
+    this.geometry = geometry;
+    this.boardWidth = geometry.boardWidth;
+    this.emptyRow = startRow;
+    this.emptyCol = startCol;
+    this.board = board;
+    int marbles = 0;
+    for (long word : board) {
+      marbles += Long.bitCount(word);
+    }
+    this.score = marbles;
+    this.emptyCells = geometry.cellCount - marbles;
+    this.legalMoves = legalMoves;
+    //the hash of a known starting position is computed right away when it is cheap, and
+    //otherwise when it is first asked for
+    this.startHash = startHash;
+    this.startHashed = startRow < 0;
+    if (startRow >= 0 && geometry.isTabulated()) {
+      hashStart();
+    }
+    for (int i = 0; i < logSize; i++) {
+      int move = log[i];
+      this.hashChanges ^= BoardRules.jumpKey(boardWidth, Moves.fromRow(move), Moves.fromCol(move),
+          Moves.toRow(move), Moves.toCol(move));
+    }
+    this.log = log.length < 16 ? Arrays.copyOf(log, 16) : log;
+    this.logSize = logSize;
+    this.logLimit = log.length;
+    //the classes of the marbles are counted when isProvablyLost is first called
+    this.residues = null;
+  }
+
+  /**
+   * Return the cells of the current position, one bit per valid cell numbered as described in
+   * {@link BoardGeometry}. This is not a copy, it must not be changed.
+   *
+   * @return the packed board
+   */
+  long[] packedBoard() {
+    return this.board;
+  }
+
+  /**
+   * Return the row number of the empty cell the game started with.
+   *
+   * @return the row number, or -1 if the game continues from a position with an unknown start
+   */
+  int startRow() {
+    return this.emptyRow;
+  }
+
+  /**
+   * Return the column number of the empty cell the game started with.
+   *
+   * @return the column number, or -1 if the game continues from a position with an unknown start
+   */
+  int startCol() {
+    return this.emptyCol;
+  }
 
-    setUpBoard(armThickness, emptyRow, emptyColumn);
+  /**
+   * Return the hash of the position the game started from.
+   *
+   * @return the hash of the starting position
+   */
+  long startHash() {
+    return positionHash() ^ this.hashChanges;
   }
 
+  /**
+   * Return the moves made so far, followed by the moves that were taken back and can be made
+   * again.
+   *
+   * @return a copy of the move log, see {@link #movesMade()}
+   */
+  int[] moveLog() {
+    return Arrays.copyOf(this.log, this.logLimit);
+  }
+
+  /**
+   * Return the number of moves at the start of {@link #moveLog()} that are made, the others were
+   * taken back.
+   *
+   * @return the number of moves made
+   */
+  int movesMade() {
+    return this.logSize;
+  }
 
   /**
-   * A helper function that consumes the arm thickness and the location of the empty cell,
-   * and set up the rest of the board.
+   * A helper function that consumes the geometry of the board and the location of the empty
+   * cell, and set up the rest of the board.
    * It also sets the score and the number of empty cells.
-   * @param armThickness the arm thickness of the board
+   * Only the valid cells are stored, one bit each, so this takes time and memory proportional
+   * to the number of valid cells divided by 64, and is a copy of the full board of a shared
+   * geometry for boards of the usual sizes.
+   * @param geometry the shape of the board
    * @param emptyRow the row number of the empty cell
    * @param emptyCol the column number of the empty cell
    *
    */
-  private void setUpBoard(int armThickness, int emptyRow, int emptyCol) {
-    this.boardWidth = 2 * armThickness + 1;
-    this.emptyRow = armThickness;
-    this.emptyCol = armThickness;
-    this.board = new String[boardWidth][boardWidth];
-    this.score =
-        (int) (4 * (Math.pow(armThickness, 2) - (Math.pow((double) (armThickness - 1) / 2, 2))));
+  private void setUpBoard(BoardGeometry geometry, int emptyRow, int emptyCol) {
+    this.geometry = geometry;
+    this.boardWidth = geometry.boardWidth;
+    this.emptyRow = emptyRow;
+    this.emptyCol = emptyCol;
+    this.score = geometry.cellCount - 1;
     this.emptyCells = 1;
+    //a game that is reset keeps its arrays when they are the right size
+    if (this.log == null) {
+      this.log = new int[16];
+    }
+    this.logSize = 0;
+    this.logLimit = 0;
 
-    //prepare the board
-    //fill it with marbles "O" first
-    for (int i = 0; i < boardWidth; i++) {
-      for (int j = 0; j < boardWidth; j++) {
-        board[i][j] = Elements.MARBLE.getDisplayName();
-      }
+    //prepare the board: fill every valid cell with a marble, then empty the empty cell
+    if (this.board != null && this.board.length == geometry.wordCount()) {
+      geometry.fillBoard(this.board);
+    } else {
+      this.board = geometry.fullBoard();
     }
-    //then set the empty cell to "_"
-    board[emptyRow][emptyCol] = Elements.EMPTY.getDisplayName();
+    clear(geometry.cellIndex(emptyRow, emptyCol));
 
-    int invalidSquareWidth = (armThickness - 1) / 2;
-    //set the invalid cells to " "
-    for (int i = 0; i < boardWidth; i++) {
-      for (int j = 0; j < boardWidth; j++) {
-        if (i < armThickness - invalidSquareWidth && j < armThickness - invalidSquareWidth) {
-          board[i][j] = Elements.INVALID.getDisplayName();
-        }
-        if (i < armThickness - invalidSquareWidth && j > armThickness + invalidSquareWidth) {
-          board[i][j] = Elements.INVALID.getDisplayName();
-        }
-        if (i > armThickness + invalidSquareWidth && j < armThickness - invalidSquareWidth) {
-          board[i][j] = Elements.INVALID.getDisplayName();
-        }
-        if (i > armThickness + invalidSquareWidth && j > armThickness + invalidSquareWidth) {
-          board[i][j] = Elements.INVALID.getDisplayName();
-        }
-      }
+    //only the moves into the empty cell are legal, move() keeps the count up to date afterwards
+    this.legalMoves = geometry.movesInto(emptyRow, emptyCol);
+    if (this.residues == null) {
+      this.residues = new int[9];
     }
+    System.arraycopy(geometry.residueCounts, 0, this.residues, 0, 9);
+    this.residues[LostPositions.residue(emptyRow, emptyCol)]--;
+    //the hash of the starting position takes constant time on a board with shared tables, and
+    //time proportional to the number of cells otherwise, so it is then computed when first needed
+    this.startHashed = false;
+    this.hashChanges = 0;
+    if (geometry.isTabulated()) {
+      hashStart();
+    }
+    this.changes++;
   }
 
+  /**
+   * Start a new game in this object, as if it had just been constructed with the given arm
+   * thickness and empty cell. The move log is reused, and so is the board if it has the same
+   * size, so resetting a game of the same size allocates nothing. If the arguments are invalid, the
+   * game is left as it was.
+   *
+   * @param armThickness the arm thickness of the board
+   * @param emptyRow     the row number of the empty cell
+   * @param emptyColumn  the column number of the empty cell
+   * @throws IllegalArgumentException if the arm thickness is invalid
+   * @throws IllegalArgumentException if the empty cell position is invalid
+   */
+  public void reset(int armThickness, int emptyRow, int emptyColumn)
+      throws IllegalArgumentException {
+    if (armThickness <= 0 || armThickness % 2 == 0) {
+      throw new IllegalArgumentException("Invalid arm thickness, "
+          + "it should be a positive odd number");
+    }
+    BoardGeometry geometry = BoardGeometry.of(armThickness);
+    if (!geometry.isValid(emptyRow, emptyColumn)) {
+      throw new IllegalArgumentException("Invalid empty cell position");
+    }
+    this.armThickness = armThickness;
+    setUpBoard(geometry, emptyRow, emptyColumn);
+  }
+
+  private boolean hasMarble(int index) {
+    return (board[index >>> 6] >>> index & 1L) != 0;
+  }
+
+  private void set(int index) {
+    board[index >>> 6] |= 1L << index;
+  }
+
+  private void clear(int index) {
+    board[index >>> 6] &= ~(1L << index);
+  }
+
+  /**
+   * Make a move that is known to be legal, or take it back, and keep the score, the legal-move
+   * count and the hash up to date.
+   *
+   * @param undo false to move the marble from the from position to the to position, true to move
+   *             it back and put the jumped over marble back
+   */
+  private void jump(int fromRow, int fromCol, int toRow, int toCol, boolean undo) {
+    int overRow = (fromRow + toRow) / 2;
+    int overCol = (fromCol + toCol) / 2;
+    int from = geometry.cellIndex(fromRow, fromCol);
+    int over = geometry.cellIndex(overRow, overCol);
+    int to = geometry.cellIndex(toRow, toCol);
+    this.legalMoves -= BoardRules.legalMovesAround(geometry, cells, fromRow, fromCol, toRow, toCol);
+    if (undo) {
+      set(from);
+      set(over);
+      clear(to);
+    } else {
+      clear(from);
+      clear(over);
+      set(to);
+    }
+    this.score += undo ? 1 : -1;
+    this.emptyCells += undo ? -1 : 1;
+    this.legalMoves += BoardRules.legalMovesAround(geometry, cells, fromRow, fromCol, toRow, toCol);
+    this.hashChanges ^= BoardRules.jumpKey(boardWidth, fromRow, fromCol, toRow, toCol);
+    this.changes++;
+    if (residues != null) {
+      int change = undo ? 1 : -1;
+      residues[LostPositions.residue(fromRow, fromCol)] += change;
+      residues[LostPositions.residue(overRow, overCol)] += change;
+      residues[LostPositions.residue(toRow, toCol)] -= change;
+    }
+  }
+
+  /**
+   * Remember a move that was just made, so it can be taken back. This discards the moves that
+   * could be made again.
+   */
+  private void record(int move) {
+    if (logSize == log.length) {
+      log = Arrays.copyOf(log, 2 * log.length);
+    }
+    log[logSize++] = move;
+    logLimit = logSize;
+  }
 
   /**
    * Move a single marble from a given position to another given position. A move is valid only if
@@ -161,137 +362,159 @@ public class MarbleSolitaireModelImpl implements MarbleSolitaireModel {
    */
   @Override
   public void move(int fromRow, int fromCol, int toRow, int toCol) throws IllegalArgumentException {
-
-    //check if the from and to position are inside the bound, and valid
-    if (fromRow < 0 || fromCol < 0
-        || fromRow >= boardWidth
-        || fromCol >= boardWidth
-    ) {
-      throw new IllegalArgumentException("Invalid move, the from position is out of the board");
-    }
-    if (toRow < 0 || toCol < 0
-        || toRow >= boardWidth
-        || toCol >= boardWidth
-    ) {
-      throw new IllegalArgumentException("Invalid move, the to position is out of the board");
-    }
-    if (board[fromRow][fromCol].equals(Elements.INVALID.getDisplayName())) {
-      throw new IllegalArgumentException("Invalid move, the from position is invalid, "
-          + "no marbles could exist there ");
-    }
-    if (board[toRow][toCol].equals(Elements.INVALID.getDisplayName())) {
-      throw new IllegalArgumentException("Invalid move, the to position is invalid, "
-          + "no marbles could go there ");
+    MoveResult result = tryMove(fromRow, fromCol, toRow, toCol);
+    if (result != MoveResult.OK) {
+      throw new IllegalArgumentException(result.getMessage());
     }
+  }
 
-    //check if the to position has a marble
-    if (board[toRow][toCol].equals(Elements.MARBLE.getDisplayName())) {
-      throw new IllegalArgumentException("Invalid move, the to position is not empty");
+  /**
+   * Try to move a single marble from a given position to another given position. This makes the
+   * same checks as {@link #move(int, int, int, int)}, but reports an illegal move through the
+   * result instead of throwing an exception, so rejecting a move allocates nothing.
+   *
+   * @param fromRow the row number of the position to be moved from (starts at 0)
+   * @param fromCol the column number of the position to be moved from (starts at 0)
+   * @param toRow   the row number of the position to be moved to (starts at 0)
+   * @param toCol   the column number of the position to be moved to (starts at 0)
+   * @return {@link MoveResult#OK} if the move was made, or the reason it was rejected
+   */
+  @Override
+  public MoveResult tryMove(int fromRow, int fromCol, int toRow, int toCol) {
+    MoveResult result = BoardRules.check(geometry, cells, fromRow, fromCol, toRow, toCol);
+    if (result != MoveResult.OK) {
+      return result;
     }
-    //check if the from position is empty
-    if (board[fromRow][fromCol].equals(Elements.EMPTY.getDisplayName())) {
-      throw new IllegalArgumentException("Invalid move, the from position is empty");
+
+    //now we are ready to move the marble, the marble that is jumped over is removed
+    jump(fromRow, fromCol, toRow, toCol, false);
+    record(Moves.encode(fromRow, fromCol, toRow, toCol));
+    return MoveResult.OK;
+  }
+
+  /**
+   * Take back the last move that was made and not taken back yet. This restores the board, the
+   * score and everything derived from them in constant time, without allocating.
+   *
+   * @return true if a move was taken back, false if there was no move to take back
+   */
+  @Override
+  public boolean undo() {
+    if (logSize == 0) {
+      return false;
     }
+    int move = log[--logSize];
+    jump(Moves.fromRow(move), Moves.fromCol(move), Moves.toRow(move), Moves.toCol(move), true);
+    return true;
+  }
 
-    //check if the move is 2 positions away from the start position
-    //either horizontally or vertically
-    if (Math.abs(fromRow - toRow) != 2) {
-      if (Math.abs(fromCol - toCol) != 2) {
-        throw new IllegalArgumentException("Invalid move, "
-            + "the to position should be 2 positions away from the from position");
-      }
+  /**
+   * Make again the last move that was taken back. Making any other move in between discards the
+   * moves that could be made again.
+   *
+   * @return true if a move was made again, false if there was no move to make again
+   */
+  @Override
+  public boolean redo() {
+    if (logSize == logLimit) {
+      return false;
     }
-    if (Math.abs(fromRow - toRow) == 2) {
-      if (fromCol != toCol) {
-        throw new IllegalArgumentException("Invalid move, "
-            + "we can only move either vertically or horizontally");
-      }
+    int move = log[logSize++];
+    jump(Moves.fromRow(move), Moves.fromCol(move), Moves.toRow(move), Moves.toCol(move), false);
+    return true;
+  }
+
+  /**
+   * Determine and return if the game is over or not. A game is over if no more moves can be made.
+   *
+   * @return true if the game is over, false otherwise
+   */
+  @Override
+  public boolean isGameOver() {
+    return this.legalMoves == 0;
+  }
 
+  /**
+   * Determine if the current position can no longer be reduced to a single marble, using the
+   * position classes and the pagoda functions described in {@link LostPositions}. The counts
+   * these rely on are kept up to date by every move, so this takes constant time. A position
+   * for which this returns false may still be lost; one for which it returns true always is.
+   *
+   * @return true if the game is proven unable to end with a single marble, false otherwise
+   */
+  public boolean isProvablyLost() {
+    if (this.score <= 1) {
+      return false;
     }
-    if (Math.abs(fromCol - toCol) == 2) {
-      if (fromRow != toRow) {
-        throw new IllegalArgumentException("Invalid move, "
-            + "we can only move either vertically or horizontally");
-      }
+    if (this.legalMoves == 0) {
+      return true;
     }
-
-    //check if there is a marble between the from and to positions
-    if (fromRow == toRow) {
-      if (fromCol < toCol) { //move down 2 positions
-        if (!board[fromRow][fromCol + 1].equals(Elements.MARBLE.getDisplayName())) {
-          throw new IllegalArgumentException("Invalid move, "
-              + "there should be a marble between the from and to positions");
-        }
-      } else { // move up 2 positions
-        if (!board[fromRow][fromCol - 1].equals(Elements.MARBLE.getDisplayName())) {
-          throw new IllegalArgumentException("Invalid move, "
-              + "there should be a marble between the from and to positions");
-        }
-      }
-    } else {
-      if (fromRow < toRow) { //move right 2 positions
-        if (!board[fromRow + 1][fromCol].equals(Elements.MARBLE.getDisplayName())) {
-          throw new IllegalArgumentException("Invalid move, "
-              + "there should be a marble between the from and to positions");
-        }
-      } else { //move right 2 positions
-        if (!board[fromRow - 1][fromCol].equals(Elements.MARBLE.getDisplayName())) {
-          throw new IllegalArgumentException("Invalid move, "
-              + "there should be a marble between the from and to positions");
+    if (this.residues == null) {
+      //the game was built from a position, count its marbles once
+      int[] counts = new int[9];
+      for (int w = 0; w < board.length; w++) {
+        for (long marbles = board[w]; marbles != 0; marbles &= marbles - 1) {
+          int cell = w << 6 | Long.numberOfTrailingZeros(marbles);
+          counts[LostPositions.residue(geometry.rowOf(cell), geometry.colOf(cell))]++;
         }
       }
+      this.residues = counts;
     }
+    return LostPositions.isLost(this.residues, geometry);
+  }
 
-    //now we are ready to move the marble
-    board[fromRow][fromCol] = Elements.EMPTY.getDisplayName();
-    board[toRow][toCol] = Elements.MARBLE.getDisplayName();
-    //the marble that is jumped over is removed
-    board[(fromRow + toRow) / 2][(fromCol + toCol) / 2] = Elements.EMPTY.getDisplayName();
-    this.score--;
-    this.emptyCells++;
-
-
+  /**
+   * Return the number of moves that can be made from the current state of the board. The count is
+   * kept up to date by every move, so this takes constant time.
+   *
+   * @return the number of legal moves
+   */
+  @Override
+  public int legalMoveCount() {
+    return this.legalMoves;
   }
 
   /**
-   * Determine and return if the game is over or not. A game is over if no more moves can be made.
+   * Write the moves that can be made from the current state of the board into a given array,
+   * encoded as described in {@link Moves}. Every move written is accepted by
+   * {@link #move(int, int, int, int)}. If the array is too short, only as many moves as fit are
+   * written, but all of them are counted.
    *
-   * @return true if the game is over, false otherwise
+   * @param moves the array to write the encoded moves into, starting at index 0
+   * @return the number of legal moves, which is {@link #legalMoveCount()}
    */
   @Override
-  public boolean isGameOver() {
-    //check if there is any possible move
-    for (int i = 0; i < boardWidth; i++) {
-      for (int j = 0; j < boardWidth; j++) {
-        if (board[i][j].equals(Elements.MARBLE.getDisplayName())) {
-          if (i + 2 < boardWidth) {
-            if (board[i + 2][j].equals(Elements.EMPTY.getDisplayName())
-                && board[i + 1][j].equals(Elements.MARBLE.getDisplayName())) {
-              return false;
-            }
-          }
-          if (i - 2 >= 0) {
-            if (board[i - 2][j].equals(Elements.EMPTY.getDisplayName())
-                && board[i - 1][j].equals(Elements.MARBLE.getDisplayName())) {
-              return false;
-            }
-          }
-          if (j + 2 < boardWidth) {
-            if (board[i][j + 2].equals(Elements.EMPTY.getDisplayName())
-                && board[i][j + 1].equals(Elements.MARBLE.getDisplayName())) {
-              return false;
-            }
-          }
-          if (j - 2 >= 0) {
-            if (board[i][j - 2].equals(Elements.EMPTY.getDisplayName())
-                && board[i][j - 1].equals(Elements.MARBLE.getDisplayName())) {
-              return false;
+  public int legalMoves(int[] moves) {
+    if (geometry.isTabulated()) {
+      return tabulatedLegalMoves(moves);
+    }
+    return BoardRules.legalMoves(geometry, cells, moves);
+  }
+
+  /**
+   * Find the legal moves with the jump tables of the geometry, visiting only the cells that hold
+   * a marble, in the same order as the scan of the whole board.
+   */
+  private int tabulatedLegalMoves(int[] moves) {
+    int[] jumpOver = geometry.jumpOver;
+    int[] jumpTo = geometry.jumpTo;
+    int count = 0;
+    for (int w = 0; w < board.length; w++) {
+      for (long marbles = board[w]; marbles != 0; marbles &= marbles - 1) {
+        int cell = w << 6 | Long.numberOfTrailingZeros(marbles);
+        for (int direction = Moves.UP; direction <= Moves.RIGHT; direction++) {
+          int to = jumpTo[4 * cell + direction];
+          if (to >= 0 && hasMarble(jumpOver[4 * cell + direction]) && !hasMarble(to)) {
+            if (count < moves.length) {
+              moves[count] = Moves.encode(geometry.cellRows[cell], geometry.cellCols[cell],
+                  direction);
             }
+            count++;
           }
         }
       }
     }
-    return true;
+    return count;
   }
 
   /**
@@ -299,25 +522,91 @@ public class MarbleSolitaireModelImpl implements MarbleSolitaireModel {
    * per row of the game board. Each slot on the game board is a single character ("O", "_" or " "
    * [space] for a marble, empty and invalid position respectively). Slots in a row should be
    * separated by a space. Each row has no space before the first slot and after the last slot.
+   * The string is kept until the board changes, so asking again for an unchanged board returns
+   * the same string without building it.
    *
    * @return the game state as a string
    */
   @Override
   public String getGameState() {
-    //create a String to represent the game state
-    StringBuilder gameState = new StringBuilder();
-    for (int i = 0; i < boardWidth; i++) {
-      for (int j = 0; j < boardWidth; j++) {
-        gameState.append(board[i][j]);
-        if (j != boardWidth - 1) {
-          gameState.append(' ');
-        }
-      }
-      if (i != boardWidth - 1) {
-        gameState.append("\n");
-      }
+    long changes = this.changes;
+    RenderedState rendered = this.rendered;
+    if (rendered != null && rendered.changes == changes) {
+      return rendered.state;
+    }
+    byte[] characters = new byte[geometry.gameStateLength()];
+    BoardRules.render(geometry, cells, ByteBuffer.wrap(characters));
+    String state = new String(characters, StandardCharsets.US_ASCII);
+    //a function given to ConcurrentMarbleSolitaireModel.read may render while another thread
+    //moves; the state is tagged with the count it was started at, so a torn one is never kept
+    //for a later board
+    if (this.changes == changes) {
+      this.rendered = new RenderedState(state, changes);
     }
-    return gameState.toString();
+    return state;
+  }
+
+  /**
+   * Append the game state returned by {@link #getGameState()} to a given destination. A string
+   * kept for the unchanged board is appended whole, otherwise the board is appended one character
+   * at a time without building a string.
+   *
+   * @param destination where to append the game state
+   * @throws IOException if the destination cannot be written
+   */
+  @Override
+  public void renderTo(Appendable destination) throws IOException {
+    RenderedState rendered = this.rendered;
+    if (rendered != null && rendered.changes == this.changes) {
+      destination.append(rendered.state);
+      return;
+    }
+    BoardRules.render(geometry, cells, destination);
+  }
+
+  /**
+   * Write the game state returned by {@link #getGameState()} into a given buffer, one byte per
+   * character, straight from the board without building a string.
+   *
+   * @param buffer the buffer to write into
+   * @throws BufferOverflowException if the buffer has less room than the game state needs, in
+   *                                 which case nothing is written
+   */
+  @Override
+  public void renderTo(ByteBuffer buffer) throws BufferOverflowException {
+    if (buffer.remaining() < geometry.gameStateLength()) {
+      throw new BufferOverflowException();
+    }
+    BoardRules.render(geometry, cells, buffer);
+  }
+
+  /**
+   * Return the number of rows (and columns) of the square board, including the invalid corners.
+   *
+   * @return the width of the board
+   */
+  @Override
+  public int getBoardSize() {
+    return this.boardWidth;
+  }
+
+  /**
+   * Return what is in the cell at a given position of the board.
+   *
+   * @param row the row number of the position (starts at 0)
+   * @param col the column number of the position (starts at 0)
+   * @return {@link Elements#MARBLE}, {@link Elements#EMPTY} or {@link Elements#INVALID}
+   * @throws IllegalArgumentException if the position is outside the board
+   */
+  @Override
+  public Elements getSlotAt(int row, int col) throws IllegalArgumentException {
+    if (row < 0 || col < 0 || row >= boardWidth || col >= boardWidth) {
+      throw new IllegalArgumentException("Invalid position, it is out of the board");
+    }
+    if (!geometry.isValid(row, col)) {
+      return Elements.INVALID;
+    }
+    return hasMarble(geometry.cellIndex(row, col)) ? Elements.MARBLE : Elements.EMPTY;
   }
 
   /**
@@ -329,4 +618,27 @@ public class MarbleSolitaireModelImpl implements MarbleSolitaireModel {
   public int getScore() {
     return this.score;
   }
+
+  /**
+   * Return a 64-bit hash of the current position, the Zobrist hash of the cells that hold a
+   * marble. Moves update it in constant time. The starting position is hashed when the game
+   * starts on a board with shared tables, and by the first call on larger boards.
+   *
+   * @return the hash of the current position
+   */
+  @Override
+  public long positionHash() {
+    if (!startHashed) {
+      hashStart();
+    }
+    return startHash ^ hashChanges;
+  }
+
+  /**
+   * Hash the starting position. Threads that race here compute the same hash.
+   */
+  private void hashStart() {
+    startHash = geometry.allCellsHash() ^ Zobrist.key(boardWidth, emptyRow, emptyCol);
+    startHashed = true;
+  }
 }
@@ -0,0 +1,87 @@
+package solitaire;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * This class keeps finished games of marble solitaire so that new games can reuse them instead of
+ * being allocated. A game taken from the pool is {@link MarbleSolitaireModelImpl#reset reset} to
+ * the requested board, which allocates nothing when the board has the size of the one it last
+ * held; a new game is only constructed when the pool is empty. The pool holds at most a fixed
+ * number of games, and games given back to a full pool are left to the garbage collector. A pool
+ * can be used by many threads at once, and never blocks.
+ */
+public class MarbleSolitaireModelPool {
+  private final ArrayBlockingQueue<MarbleSolitaireModelImpl> games;
+
+  /**
+   * Construct an empty pool that keeps at most a given number of games.
+   *
+   * @param capacity the largest number of games to keep
+   * @throws IllegalArgumentException if the capacity is not positive
+   */
+  public MarbleSolitaireModelPool(int capacity) throws IllegalArgumentException {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Invalid capacity, it should be positive");
+    }
+    this.games = new ArrayBlockingQueue<>(capacity);
+  }
+
+  /**
+   * Return a new game on the regular board with the empty cell at the center.
+   *
+   * @return the game, reused from the pool if it had one
+   */
+  public MarbleSolitaireModelImpl acquire() {
+    return acquire(3, 3, 3);
+  }
+
+  /**
+   * Return a new game with a given arm thickness and empty cell.
+   *
+   * @param armThickness the arm thickness of the board
+   * @param emptyRow     the row number of the empty cell
+   * @param emptyColumn  the column number of the empty cell
+   * @return the game, reused from the pool if it had one
+   * @throws IllegalArgumentException if the arm thickness is invalid
+   * @throws IllegalArgumentException if the empty cell position is invalid
+   */
+  public MarbleSolitaireModelImpl acquire(int armThickness, int emptyRow, int emptyColumn)
+      throws IllegalArgumentException {
+    MarbleSolitaireModelImpl game = games.poll();
+    if (game == null) {
+      return new MarbleSolitaireModelImpl(armThickness, emptyRow, emptyColumn);
+    }
+    try {
+      game.reset(armThickness, emptyRow, emptyColumn);
+    } catch (IllegalArgumentException e) {
+      //the game was left as it was, keep it for the next caller
+      games.offer(game);
+      throw e;
+    }
+    return game;
+  }
+
+  /**
+   * Give back a game that is no longer used, so that it can be reused. The game must not be used
+   * by the caller afterwards.
+   *
+   * @param game the game to give back
+   * @return true if the pool kept the game, false if it was full
+   * @throws IllegalArgumentException if the game is null
+   */
+  public boolean release(MarbleSolitaireModelImpl game) throws IllegalArgumentException {
+    if (game == null) {
+      throw new IllegalArgumentException("Invalid game, it should not be null");
+    }
+    return games.offer(game);
+  }
+
+  /**
+   * Return the number of games waiting in the pool.
+   *
+   * @return the number of pooled games
+   */
+  public int size() {
+    return games.size();
+  }
+}
@@ -0,0 +1,71 @@
+package solitaire;
+
+/**
+ * This class solves marble solitaire positions: it decides whether the marbles on the board can
+ * be reduced to a single marble, and finds the moves that do it. It runs a depth-first search over
+ * the positions reachable from the model, and remembers every position it proved unsolvable in a
+ * transposition table keyed on the canonical form of the position, so rotations and reflections
+ * of a position are searched once. Only boards with at most 64 valid cells can be solved, which
+ * are the boards with arm thickness 1 and 3. A solver is not safe to share between threads.
+ */
+public class MarbleSolitaireSolver {
+  private SolverBoard board;
+  private LongHashSet unsolvable;
+  private int[] path;
+  private long nodes;
+
+  /**
+   * Solve the current position of a model. The model is not changed.
+   *
+   * @param model the model whose position to solve
+   * @return whether the position is solvable, the moves that solve it, and search statistics
+   * @throws IllegalArgumentException if the board has more than 64 valid cells
+   */
+  public SolverResult solve(MarbleSolitaireModel model) throws IllegalArgumentException {
+    this.board = SolverBoard.of(model);
+    this.unsolvable = new LongHashSet(1 << 16);
+    this.path = new int[board.cellCount];
+    this.nodes = 0;
+    long position = board.positionOf(model);
+
+    long start = System.nanoTime();
+    boolean solvable = search(position, 0);
+    long elapsed = System.nanoTime() - start;
+
+    int[] moves = new int[solvable ? Long.bitCount(position) - 1 : 0];
+    System.arraycopy(path, 0, moves, 0, moves.length);
+    SolverResult result = new SolverResult(solvable, moves, nodes, elapsed);
+    this.unsolvable = null;
+    return result;
+  }
+
+  /**
+   * Search for a way to reduce a position to a single marble, recording the moves in the path.
+   *
+   * @param position the position to search from
+   * @param depth    the number of moves made so far
+   * @return true if the position is solvable
+   */
+  private boolean search(long position, int depth) {
+    nodes++;
+    if (Long.bitCount(position) == 1) {
+      return true;
+    }
+    long key = board.canonical(position);
+    if (unsolvable.contains(key)) {
+      return false;
+    }
+    long[] needs = board.jumpNeeds;
+    long[] masks = board.jumpMasks;
+    for (int jump = 0; jump < masks.length; jump++) {
+      if ((position & masks[jump]) == needs[jump]) {
+        path[depth] = board.jumpMoves[jump];
+        if (search(position ^ masks[jump], depth + 1)) {
+          return true;
+        }
+      }
+    }
+    unsolvable.add(key);
+    return false;
+  }
+}
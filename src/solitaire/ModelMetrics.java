@@ -0,0 +1,179 @@
+package solitaire;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class collects what {@link InstrumentedMarbleSolitaireModel} measures: how many times each
+ * operation ran, how long it took, and how many moves were rejected for each reason. Latencies
+ * are kept in histograms whose buckets double in width, so bucket i counts the calls that took
+ * from 2^(i-1) to 2^i - 1 nanoseconds, and bucket 0 those that took no measurable time. One
+ * metrics object can collect from many models and many threads at once; recording never locks.
+ */
+public final class ModelMetrics {
+  private static final int BUCKETS = 64;
+  private static final ModelOperation[] OPERATIONS = ModelOperation.values();
+  private static final MoveResult[] RESULTS = MoveResult.values();
+
+  private final LongAdder[] counts = new LongAdder[OPERATIONS.length];
+  private final LongAdder[] totalNanos = new LongAdder[OPERATIONS.length];
+  private final LongAdder[][] latencies = new LongAdder[OPERATIONS.length][BUCKETS];
+  private final LongAdder[] rejections = new LongAdder[RESULTS.length];
+
+  /**
+   * Construct metrics in which nothing has been recorded yet.
+   */
+  public ModelMetrics() {
+    for (int op = 0; op < OPERATIONS.length; op++) {
+      counts[op] = new LongAdder();
+      totalNanos[op] = new LongAdder();
+      for (int bucket = 0; bucket < BUCKETS; bucket++) {
+        latencies[op][bucket] = new LongAdder();
+      }
+    }
+    for (int result = 0; result < RESULTS.length; result++) {
+      rejections[result] = new LongAdder();
+    }
+  }
+
+  /**
+   * Record one call of an operation.
+   *
+   * @param operation the operation that ran
+   * @param nanos     how long it took
+   */
+  void record(ModelOperation operation, long nanos) {
+    int op = operation.ordinal();
+    counts[op].increment();
+    if (nanos > 0) {
+      totalNanos[op].add(nanos);
+      latencies[op][BUCKETS - Long.numberOfLeadingZeros(nanos)].increment();
+    } else {
+      latencies[op][0].increment();
+    }
+  }
+
+  /**
+   * Record one rejected move.
+   *
+   * @param reason why the move was rejected
+   */
+  void reject(MoveResult reason) {
+    rejections[reason.ordinal()].increment();
+  }
+
+  /**
+   * Return how many times an operation ran.
+   *
+   * @param operation the operation
+   * @return the number of calls
+   */
+  public long getCount(ModelOperation operation) {
+    return counts[operation.ordinal()].sum();
+  }
+
+  /**
+   * Return how long all the calls of an operation took together.
+   *
+   * @param operation the operation
+   * @return the total duration in nanoseconds
+   */
+  public long getTotalNanos(ModelOperation operation) {
+    return totalNanos[operation.ordinal()].sum();
+  }
+
+  /**
+   * Return how long a call of an operation took on average.
+   *
+   * @param operation the operation
+   * @return the mean duration in nanoseconds, 0 if the operation never ran
+   */
+  public double getMeanNanos(ModelOperation operation) {
+    long count = getCount(operation);
+    return count == 0 ? 0 : (double) getTotalNanos(operation) / count;
+  }
+
+  /**
+   * Return the latency histogram of an operation.
+   *
+   * @param operation the operation
+   * @return an array whose element at index i is the number of calls that took from 2^(i-1) to
+   *         2^i - 1 nanoseconds, or no measurable time for index 0
+   */
+  public long[] getLatencyHistogram(ModelOperation operation) {
+    long[] histogram = new long[BUCKETS];
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      histogram[bucket] = latencies[operation.ordinal()][bucket].sum();
+    }
+    return histogram;
+  }
+
+  /**
+   * Return an upper bound of a percentile of the latency of an operation, to within a factor of
+   * two.
+   *
+   * @param operation the operation
+   * @param fraction  the fraction of calls that should be at least as fast, from 0 to 1
+   * @return the upper end of the histogram bucket holding the percentile, in nanoseconds, or 0
+   *         if the operation never ran
+   * @throws IllegalArgumentException if the fraction is not between 0 and 1
+   */
+  public long getLatencyPercentile(ModelOperation operation, double fraction)
+      throws IllegalArgumentException {
+    if (!(fraction >= 0 && fraction <= 1)) {
+      throw new IllegalArgumentException("Invalid fraction, it should be between 0 and 1");
+    }
+    long[] histogram = getLatencyHistogram(operation);
+    long total = 0;
+    for (long count : histogram) {
+      total += count;
+    }
+    long rank = (long) Math.ceil(fraction * total);
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      seen += histogram[bucket];
+      if (seen >= rank && seen > 0) {
+        return bucket == 0 ? 0 : (1L << bucket) - 1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Return how many moves were rejected for a given reason.
+   *
+   * @param reason the reason, {@link MoveResult#OK} counts nothing
+   * @return the number of moves rejected for that reason
+   */
+  public long getRejections(MoveResult reason) {
+    return rejections[reason.ordinal()].sum();
+  }
+
+  /**
+   * Return how many moves were rejected for any reason.
+   *
+   * @return the number of rejected moves
+   */
+  public long getRejections() {
+    long total = 0;
+    for (LongAdder rejection : rejections) {
+      total += rejection.sum();
+    }
+    return total;
+  }
+
+  /**
+   * Forget everything recorded so far. Calls recorded while this runs may be partly kept.
+   */
+  public void reset() {
+    for (int op = 0; op < OPERATIONS.length; op++) {
+      counts[op].reset();
+      totalNanos[op].reset();
+      for (LongAdder bucket : latencies[op]) {
+        bucket.reset();
+      }
+    }
+    for (LongAdder rejection : rejections) {
+      rejection.reset();
+    }
+  }
+}
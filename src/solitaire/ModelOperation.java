@@ -0,0 +1,17 @@
+package solitaire;
+
+/**
+ * Enumerated type representing the operations of a model that
+ * {@link InstrumentedMarbleSolitaireModel} counts and times.
+ */
+public enum ModelOperation {
+  MOVE,
+  TRY_MOVE,
+  UNDO,
+  REDO,
+  IS_GAME_OVER,
+  LEGAL_MOVE_COUNT,
+  LEGAL_MOVES,
+  GET_GAME_STATE,
+  RENDER_TO
+}
@@ -0,0 +1,377 @@
+package solitaire;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * This class replays recorded games of marble solitaire and reports, for every game, whether
+ * all its moves follow the rules of {@link MarbleSolitaireModelImpl#move(int, int, int, int)}.
+ * A move log is text with one game per line: the arm thickness, the row and the column of the
+ * empty cell, and then four numbers per move, the from row, from column, to row and to column,
+ * all separated by spaces, tabs or commas. Blank lines and anything after a '#' are ignored.
+ * The log may come from anywhere, so a game on a board with an arm thickness above
+ * {@value #MAX_ARM_THICKNESS} is rejected before any memory is set aside for it.
+ *
+ * <p>The log is read in chunks and parsed straight from the bytes into batches of games, which
+ * worker threads replay on models they reuse from game to game. Only a few batches are in flight
+ * at once, so the memory used does not depend on the size of the log. Verdicts are reported in
+ * the order of the games in the log. A validator should be closed when it is no longer needed.
+ */
+public class MoveLogValidator implements AutoCloseable {
+  /**
+   * The largest arm thickness of a game in a log. Every worker keeps a model of the board, so
+   * this bounds the memory one line of a log can make each worker use.
+   */
+  public static final int MAX_ARM_THICKNESS = 255;
+  private static final int DEFAULT_BATCH_SIZE = 1024;
+  private static final int BATCH_INTS = 1 << 20;
+  private static final int READ_BUFFER_SIZE = 1 << 16;
+
+  private final ExecutorService pool;
+  private final int batchSize;
+  private final int maxBatchesInFlight;
+  //every worker keeps the model of its last game, and takes its moves back or resets it to reuse it
+  private final ThreadLocal<MarbleSolitaireModelImpl> models = new ThreadLocal<>();
+
+  /**
+   * Construct a validator that replays games on a given number of worker threads.
+   *
+   * @param parallelism the number of worker threads
+   * @throws IllegalArgumentException if the parallelism is not positive
+   */
+  public MoveLogValidator(int parallelism) throws IllegalArgumentException {
+    this(parallelism, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Construct a validator that replays games on a given number of worker threads, handing them
+   * out in batches of a given number of games.
+   *
+   * @param parallelism the number of worker threads
+   * @param batchSize   the largest number of games in a batch
+   * @throws IllegalArgumentException if the parallelism or the batch size is not positive
+   */
+  public MoveLogValidator(int parallelism, int batchSize) throws IllegalArgumentException {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Invalid parallelism, it should be positive");
+    }
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("Invalid batch size, it should be positive");
+    }
+    this.pool = Executors.newFixedThreadPool(parallelism);
+    this.batchSize = batchSize;
+    this.maxBatchesInFlight = 2 * parallelism;
+  }
+
+  /**
+   * A run of consecutive games of the log, each stored as its arm thickness, its empty cell, its
+   * number of moves and four numbers per move.
+   */
+  private static final class Batch {
+    private final long firstGame;
+    private int[] data = new int[256];
+    private int size;
+    private int games;
+
+    private Batch(long firstGame) {
+      this.firstGame = firstGame;
+    }
+
+    private void add(int[] line, int length) {
+      if (size + length + 1 > data.length) {
+        data = Arrays.copyOf(data, Math.max(size + length + 1, 2 * data.length));
+      }
+      System.arraycopy(line, 0, data, size, 3);
+      data[size + 3] = (length - 3) / 4;
+      System.arraycopy(line, 3, data, size + 4, length - 3);
+      size += length + 1;
+      games++;
+    }
+  }
+
+  /**
+   * Replay every game of a log file and write one verdict per line to another file, as
+   * described in {@link GameVerdict#toString()}.
+   *
+   * @param log      the path of the move log
+   * @param verdicts the path of the file to write the verdicts to, replaced if it exists
+   * @return the number of games replayed
+   * @throws IOException if a file cannot be read or written
+   * @throws IllegalArgumentException if a line of the log is not a game
+   */
+  public long validate(Path log, Path verdicts) throws IOException, IllegalArgumentException {
+    try (FileChannel in = FileChannel.open(log);
+         BufferedWriter out = Files.newBufferedWriter(verdicts, StandardCharsets.US_ASCII)) {
+      return validate(in, verdict -> {
+        try {
+          out.write(verdict.toString());
+          out.newLine();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Replay every game read from a channel, and report the verdict of each game, in the order of
+   * the log, on the calling thread.
+   *
+   * @param log      the channel to read the move log from, until its end
+   * @param verdicts what to do with the verdict of each game
+   * @return the number of games replayed
+   * @throws IOException if the log cannot be read
+   * @throws IllegalArgumentException if a line of the log is not a game
+   */
+  public long validate(ReadableByteChannel log, Consumer<? super GameVerdict> verdicts)
+      throws IOException, IllegalArgumentException {
+    Parser parser = new Parser(verdicts);
+    try {
+      ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+      while (log.read(buffer) >= 0) {
+        parser.parse(buffer.array(), buffer.position());
+        buffer.clear();
+      }
+      parser.finish();
+      return parser.games;
+    } finally {
+      parser.cancel();
+    }
+  }
+
+  /**
+   * Reads the bytes of a log, one chunk at a time, into batches of games, and hands the batches
+   * to the workers.
+   */
+  private final class Parser {
+    private final Consumer<? super GameVerdict> verdicts;
+    private final ArrayDeque<Future<GameVerdict[]>> inFlight = new ArrayDeque<>();
+    private Batch batch = new Batch(0);
+    private long games;
+    private long lineNumber = 1;
+    private int[] line = new int[64];
+    private int lineSize;
+    //the most numbers the current line may hold, known once its arm thickness is read
+    private int lineLimit = Integer.MAX_VALUE;
+    private long value;
+    private boolean inNumber;
+    private boolean negative;
+    private boolean inComment;
+
+    private Parser(Consumer<? super GameVerdict> verdicts) {
+      this.verdicts = verdicts;
+    }
+
+    private void parse(byte[] bytes, int length) throws IOException {
+      for (int i = 0; i < length; i++) {
+        byte b = bytes[i];
+        if (b == '\n') {
+          endNumber();
+          endLine();
+          inComment = false;
+        } else if (inComment) {
+          continue;
+        } else if (b >= '0' && b <= '9') {
+          value = 10 * value + (b - '0');
+          if (value > Integer.MAX_VALUE) {
+            throw error("number too large");
+          }
+          inNumber = true;
+        } else if (b == '-' && !inNumber && !negative) {
+          negative = true;
+        } else if (b == ' ' || b == '\t' || b == ',' || b == '\r') {
+          endNumber();
+        } else if (b == '#') {
+          endNumber();
+          inComment = true;
+        } else {
+          throw error("unexpected character '" + (char) (b & 0xFF) + "'");
+        }
+      }
+    }
+
+    private void endNumber() {
+      if (!inNumber) {
+        if (negative) {
+          throw error("a '-' is not followed by a number");
+        }
+        return;
+      }
+      if (lineSize == lineLimit) {
+        throw error("more moves than the board has cells");
+      }
+      if (lineSize == line.length) {
+        line = Arrays.copyOf(line, 2 * line.length);
+      }
+      line[lineSize++] = (int) (negative ? -value : value);
+      value = 0;
+      inNumber = false;
+      negative = false;
+      if (lineSize == 3) {
+        checkStart();
+      }
+    }
+
+    /**
+     * Check that the game of the current line starts from a valid board.
+     */
+    private void checkStart() {
+      int armThickness = line[0];
+      if (armThickness <= 0 || armThickness % 2 == 0) {
+        throw error("invalid arm thickness");
+      }
+      if (armThickness > MAX_ARM_THICKNESS) {
+        throw error("invalid arm thickness, it should be at most " + MAX_ARM_THICKNESS);
+      }
+      BoardGeometry geometry;
+      try {
+        geometry = BoardGeometry.of(armThickness);
+      } catch (IllegalArgumentException e) {
+        throw error(e.getMessage());
+      }
+      if (!geometry.isValid(line[1], line[2])) {
+        throw error("invalid empty cell position");
+      }
+      //counted in long, so that the limit cannot overflow whatever the size of the board
+      lineLimit = (int) Math.min(3 + 4L * (geometry.cellCount - 1), Integer.MAX_VALUE);
+    }
+
+    private void endLine() throws IOException {
+      if (lineSize > 0) {
+        if (lineSize < 3 || (lineSize - 3) % 4 != 0) {
+          throw error("a game is the arm thickness, the empty cell and four numbers per move");
+        }
+        batch.add(line, lineSize);
+        games++;
+        if (batch.games == batchSize || batch.size >= BATCH_INTS) {
+          submit();
+        }
+      }
+      lineNumber++;
+      lineSize = 0;
+      lineLimit = Integer.MAX_VALUE;
+    }
+
+    private IllegalArgumentException error(String message) {
+      return new IllegalArgumentException("Invalid move log, line " + lineNumber + ": " + message);
+    }
+
+    /**
+     * Hand the current batch to the workers, after reporting the oldest batches if too many are
+     * in flight.
+     */
+    private void submit() throws IOException {
+      while (inFlight.size() >= maxBatchesInFlight) {
+        report(inFlight.poll());
+      }
+      Batch full = batch;
+      inFlight.add(pool.submit(() -> replay(full)));
+      batch = new Batch(games);
+    }
+
+    private void report(Future<GameVerdict[]> future) throws IOException {
+      GameVerdict[] results;
+      try {
+        results = future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while replaying games");
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw new IllegalStateException(e.getCause());
+      }
+      for (GameVerdict verdict : results) {
+        verdicts.accept(verdict);
+      }
+    }
+
+    private void finish() throws IOException {
+      inComment = false;
+      endNumber();
+      endLine();
+      if (batch.games > 0) {
+        submit();
+      }
+      while (!inFlight.isEmpty()) {
+        report(inFlight.poll());
+      }
+    }
+
+    private void cancel() {
+      for (Future<GameVerdict[]> future : inFlight) {
+        future.cancel(true);
+      }
+      inFlight.clear();
+    }
+  }
+
+  /**
+   * Replay the games of a batch on the model of the current worker.
+   */
+  private GameVerdict[] replay(Batch batch) {
+    GameVerdict[] results = new GameVerdict[batch.games];
+    int[] data = batch.data;
+    MarbleSolitaireModelImpl model = models.get();
+    int p = 0;
+    for (int game = 0; game < batch.games; game++) {
+      int armThickness = data[p];
+      int emptyRow = data[p + 1];
+      int emptyCol = data[p + 2];
+      int moveCount = data[p + 3];
+      p += 4;
+      if (model == null) {
+        model = new MarbleSolitaireModelImpl(armThickness, emptyRow, emptyCol);
+      } else if (model.getBoardSize() != 2 * armThickness + 1
+          || model.startRow() != emptyRow || model.startCol() != emptyCol) {
+        model.reset(armThickness, emptyRow, emptyCol);
+      }
+      int failedMove = -1;
+      MoveResult reason = MoveResult.OK;
+      for (int move = 0; move < moveCount; move++) {
+        int q = p + 4 * move;
+        MoveResult result = model.tryMove(data[q], data[q + 1], data[q + 2], data[q + 3]);
+        if (result != MoveResult.OK) {
+          failedMove = move;
+          reason = result;
+          break;
+        }
+      }
+      p += 4 * moveCount;
+      results[game] = new GameVerdict(batch.firstGame + game, failedMove, reason,
+          model.getScore(), model.isGameOver());
+      //take every move back, so the model is at its start for the next game
+      while (model.undo()) {
+        continue;
+      }
+    }
+    models.set(model);
+    return results;
+  }
+
+  /**
+   * Stop the worker threads. Logs can no longer be validated.
+   */
+  @Override
+  public void close() {
+    pool.shutdown();
+  }
+}
@@ -0,0 +1,33 @@
+package solitaire;
+
+/**
+ * Enumerated type representing the outcome of an attempted move. A move is either made, or it is
+ * rejected for exactly one reason, checked in the order the constants are declared.
+ */
+public enum MoveResult {
+  OK(""),
+  FROM_OUT_OF_BOUNDS("Invalid move, the from position is out of the board"),
+  TO_OUT_OF_BOUNDS("Invalid move, the to position is out of the board"),
+  FROM_INVALID("Invalid move, the from position is invalid, no marbles could exist there "),
+  TO_INVALID("Invalid move, the to position is invalid, no marbles could go there "),
+  TO_OCCUPIED("Invalid move, the to position is not empty"),
+  FROM_EMPTY("Invalid move, the from position is empty"),
+  NOT_DISTANCE_TWO("Invalid move, "
+      + "the to position should be 2 positions away from the from position"),
+  DIAGONAL("Invalid move, we can only move either vertically or horizontally"),
+  NO_MARBLE_JUMPED("Invalid move, there should be a marble between the from and to positions");
+  private final String message;
+
+  MoveResult(String message) {
+    this.message = message;
+  }
+
+  /**
+   * Retrieves the message that explains why the move was rejected.
+   *
+   * @return the message of the rejection, or an empty string if the move was made
+   */
+  public String getMessage() {
+    return message;
+  }
+}
@@ -0,0 +1,132 @@
+package solitaire;
+
+/**
+ * This class encodes moves as primitive ints, so that legal moves can be listed and stored
+ * without allocating an object per move. A move is the position it is made from and one of four
+ * directions; the marble always jumps over the neighbouring cell in that direction and lands two
+ * cells away. Rows and columns must be below 32768, which holds on every board the models accept.
+ */
+public final class Moves {
+  public static final int UP = 0;
+  public static final int DOWN = 1;
+  public static final int LEFT = 2;
+  public static final int RIGHT = 3;
+
+  private static final int[] ROW_STEPS = {-1, 1, 0, 0};
+  private static final int[] COL_STEPS = {0, 0, -1, 1};
+
+  private Moves() {
+  }
+
+  /**
+   * Encode a move from a given position in a given direction.
+   *
+   * @param fromRow   the row number of the position to be moved from (starts at 0)
+   * @param fromCol   the column number of the position to be moved from (starts at 0)
+   * @param direction one of {@link #UP}, {@link #DOWN}, {@link #LEFT} and {@link #RIGHT}
+   * @return the encoded move
+   */
+  public static int encode(int fromRow, int fromCol, int direction) {
+    return fromRow << 17 | fromCol << 2 | direction;
+  }
+
+  /**
+   * Encode a move between two positions that are two cells apart in a row or a column.
+   *
+   * @param fromRow the row number of the position to be moved from (starts at 0)
+   * @param fromCol the column number of the position to be moved from (starts at 0)
+   * @param toRow   the row number of the position to be moved to (starts at 0)
+   * @param toCol   the column number of the position to be moved to (starts at 0)
+   * @return the encoded move
+   */
+  public static int encode(int fromRow, int fromCol, int toRow, int toCol) {
+    if (toRow < fromRow) {
+      return encode(fromRow, fromCol, UP);
+    }
+    if (toRow > fromRow) {
+      return encode(fromRow, fromCol, DOWN);
+    }
+    return encode(fromRow, fromCol, toCol < fromCol ? LEFT : RIGHT);
+  }
+
+  /**
+   * Return the row number of the position an encoded move is made from.
+   *
+   * @param move the encoded move
+   * @return the row number of the from position
+   */
+  public static int fromRow(int move) {
+    return move >>> 17;
+  }
+
+  /**
+   * Return the column number of the position an encoded move is made from.
+   *
+   * @param move the encoded move
+   * @return the column number of the from position
+   */
+  public static int fromCol(int move) {
+    return move >>> 2 & 0x7FFF;
+  }
+
+  /**
+   * Return the direction of an encoded move.
+   *
+   * @param move the encoded move
+   * @return one of {@link #UP}, {@link #DOWN}, {@link #LEFT} and {@link #RIGHT}
+   */
+  public static int direction(int move) {
+    return move & 3;
+  }
+
+  /**
+   * Return the row number of the position an encoded move lands on.
+   *
+   * @param move the encoded move
+   * @return the row number of the to position
+   */
+  public static int toRow(int move) {
+    return fromRow(move) + 2 * rowStep(direction(move));
+  }
+
+  /**
+   * Return the column number of the position an encoded move lands on.
+   *
+   * @param move the encoded move
+   * @return the column number of the to position
+   */
+  public static int toCol(int move) {
+    return fromCol(move) + 2 * colStep(direction(move));
+  }
+
+  /**
+   * Return how much the row number changes for each step in a direction.
+   *
+   * @param direction one of {@link #UP}, {@link #DOWN}, {@link #LEFT} and {@link #RIGHT}
+   * @return -1, 0 or 1
+   */
+  public static int rowStep(int direction) {
+    return ROW_STEPS[direction];
+  }
+
+  /**
+   * Return how much the column number changes for each step in a direction.
+   *
+   * @param direction one of {@link #UP}, {@link #DOWN}, {@link #LEFT} and {@link #RIGHT}
+   * @return -1, 0 or 1
+   */
+  public static int colStep(int direction) {
+    return COL_STEPS[direction];
+  }
+
+  /**
+   * Make an encoded move on a model, reporting a rejection instead of throwing.
+   *
+   * @param model the model to make the move on
+   * @param move  the encoded move
+   * @return {@link MoveResult#OK} if the move was made, or the reason it was rejected
+   */
+  public static MoveResult apply(MarbleSolitaireModel model, int move) {
+    return model.tryMove(fromRow(move), fromCol(move), toRow(move), toCol(move));
+  }
+}
@@ -0,0 +1,393 @@
+package solitaire;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.function.BiPredicate;
+
+/**
+ * This class tells others about every change of the board of a game of marble solitaire, so that
+ * they can keep their own copy of the board up to date without reading the whole board after
+ * every move. It wraps another model, and every move, undo and redo that changes the board is
+ * described by a {@link BoardChange}: the three cells of the move, the new score and whether the
+ * game is over. Changes are given to {@link BoardChangeListener}s on the thread that made them,
+ * and published to {@link Flow.Subscriber}s through a {@link SubmissionPublisher}, which
+ * delivers them asynchronously in order. Nothing is built or published while no one listens.
+ *
+ * <p>Nothing that listens can hold up or undo a change. A listener that throws is reported to the
+ * uncaught exception handler of the thread that made the change, and the other listeners and the
+ * subscribers are still told about it. The player never waits for a subscriber: a subscriber that
+ * falls a full buffer behind misses changes, so its copy of the board can no longer be kept up to
+ * date, and it is given an {@link IllegalStateException} through
+ * {@link Flow.Subscriber#onError(Throwable)} instead of any later change.
+ *
+ * <p>Only the moves made through this game are known to it: moves made on the wrapped game
+ * before it was wrapped cannot be taken back through this one. This game is not safe to share
+ * between threads, but a {@link ConcurrentMarbleSolitaireModel} wrapping it is, and its changes
+ * are then reported in the order they were made. Listeners can be added and removed from any
+ * thread.
+ */
+public class ObservableMarbleSolitaireModel implements MarbleSolitaireModel,
+    Flow.Publisher<BoardChange>, AutoCloseable {
+  //a change a subscriber has no room for is dropped, and the subscriber fails on its next signal
+  private static final BiPredicate<Flow.Subscriber<? super BoardChange>, BoardChange> DROP =
+      (subscriber, change) -> {
+        ((GuardedSubscriber) subscriber).missed = true;
+        return false;
+      };
+
+  private final MarbleSolitaireModel game;
+  private final List<BoardChangeListener> listeners = new CopyOnWriteArrayList<>();
+  private final SubmissionPublisher<BoardChange> publisher;
+  //the moves made through this game, the first made of them are on the board
+  private int[] moves = new int[16];
+  private int made;
+  private int available;
+
+  /**
+   * Construct an observable game that plays a given game, and publishes its changes with a given
+   * executor. The given game must not be used directly afterwards, only through this one.
+   *
+   * @param game     the game to play
+   * @param executor the executor that delivers the changes to subscribers
+   * @throws IllegalArgumentException if the game or the executor is null
+   */
+  public ObservableMarbleSolitaireModel(MarbleSolitaireModel game, Executor executor)
+      throws IllegalArgumentException {
+    if (game == null) {
+      throw new IllegalArgumentException("Invalid game, it should not be null");
+    }
+    if (executor == null) {
+      throw new IllegalArgumentException("Invalid executor, it should not be null");
+    }
+    this.game = game;
+    this.publisher = new SubmissionPublisher<>(executor, Flow.defaultBufferSize());
+  }
+
+  /**
+   * Construct an observable game that plays a given game, and publishes its changes with the
+   * common pool. The given game must not be used directly afterwards, only through this one.
+   *
+   * @param game the game to play
+   * @throws IllegalArgumentException if the game is null
+   */
+  public ObservableMarbleSolitaireModel(MarbleSolitaireModel game)
+      throws IllegalArgumentException {
+    this(game, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Add a listener to be told about every later change of the board.
+   *
+   * @param listener the listener to add
+   * @throws IllegalArgumentException if the listener is null
+   */
+  public void addBoardChangeListener(BoardChangeListener listener)
+      throws IllegalArgumentException {
+    if (listener == null) {
+      throw new IllegalArgumentException("Invalid listener, it should not be null");
+    }
+    listeners.add(listener);
+  }
+
+  /**
+   * Stop telling a listener about changes of the board.
+   *
+   * @param listener the listener to remove
+   * @return true if the listener was removed, false if it was not listening
+   */
+  public boolean removeBoardChangeListener(BoardChangeListener listener) {
+    return listeners.remove(listener);
+  }
+
+  /**
+   * Publish every later change of the board to a subscriber. The subscriber is completed when
+   * this game is closed, or given an error if it fell so far behind that it missed a change.
+   *
+   * @param subscriber the subscriber
+   * @throws NullPointerException if the subscriber is null
+   */
+  @Override
+  public void subscribe(Flow.Subscriber<? super BoardChange> subscriber) {
+    publisher.subscribe(new GuardedSubscriber(Objects.requireNonNull(subscriber)));
+  }
+
+  /**
+   * A subscriber that passes every signal on to another one until a change meant for it is
+   * dropped, and then cancels its subscription and passes on an error instead. All its signals
+   * come from the publisher one at a time, only the drop is marked from the player's thread.
+   */
+  private static final class GuardedSubscriber implements Flow.Subscriber<BoardChange> {
+    private final Flow.Subscriber<? super BoardChange> subscriber;
+    private Flow.Subscription subscription;
+    private volatile boolean missed;
+    private boolean done;
+
+    private GuardedSubscriber(Flow.Subscriber<? super BoardChange> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscriber.onSubscribe(subscription);
+    }
+
+    @Override
+    public void onNext(BoardChange change) {
+      if (missed) {
+        fail();
+      } else if (!done) {
+        subscriber.onNext(change);
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      if (!done) {
+        done = true;
+        subscriber.onError(throwable);
+      }
+    }
+
+    @Override
+    public void onComplete() {
+      if (missed) {
+        fail();
+      } else if (!done) {
+        done = true;
+        subscriber.onComplete();
+      }
+    }
+
+    private void fail() {
+      if (!done) {
+        done = true;
+        subscription.cancel();
+        subscriber.onError(new IllegalStateException(
+            "The subscriber fell a full buffer behind and missed changes of the board"));
+      }
+    }
+  }
+
+  /**
+   * Tell the listeners and the subscribers that a move was made or taken back, if there are any.
+   */
+  private void changed(int move, boolean undo) {
+    boolean publish = publisher.hasSubscribers() && !publisher.isClosed();
+    if (listeners.isEmpty() && !publish) {
+      return;
+    }
+    BoardChange change = new BoardChange(move, undo, game.getScore(), game.isGameOver());
+    for (BoardChangeListener listener : listeners) {
+      try {
+        listener.boardChanged(change);
+      } catch (RuntimeException e) {
+        //the change is made already, so report the failure and tell the others anyway
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+      }
+    }
+    if (publish) {
+      publisher.offer(change, DROP);
+    }
+  }
+
+  /**
+   * Move a single marble from a given position to another given position, and tell everyone
+   * listening about the change.
+   *
+   * @param fromRow the row number of the position to be moved from (starts at 0)
+   * @param fromCol the column number of the position to be moved from (starts at 0)
+   * @param toRow   the row number of the position to be moved to (starts at 0)
+   * @param toCol   the column number of the position to be moved to (starts at 0)
+   * @throws IllegalArgumentException if the move is not possible
+   */
+  @Override
+  public void move(int fromRow, int fromCol, int toRow, int toCol) throws IllegalArgumentException {
+    MoveResult result = tryMove(fromRow, fromCol, toRow, toCol);
+    if (result != MoveResult.OK) {
+      throw new IllegalArgumentException(result.getMessage());
+    }
+  }
+
+  /**
+   * Try to move a single marble from a given position to another given position, and tell
+   * everyone listening about the change if the move was made.
+   *
+   * @param fromRow the row number of the position to be moved from (starts at 0)
+   * @param fromCol the column number of the position to be moved from (starts at 0)
+   * @param toRow   the row number of the position to be moved to (starts at 0)
+   * @param toCol   the column number of the position to be moved to (starts at 0)
+   * @return {@link MoveResult#OK} if the move was made, or the reason it was rejected
+   */
+  @Override
+  public MoveResult tryMove(int fromRow, int fromCol, int toRow, int toCol) {
+    MoveResult result = game.tryMove(fromRow, fromCol, toRow, toCol);
+    if (result == MoveResult.OK) {
+      if (made == moves.length) {
+        moves = Arrays.copyOf(moves, 2 * moves.length);
+      }
+      int move = Moves.encode(fromRow, fromCol, toRow, toCol);
+      moves[made++] = move;
+      available = made;
+      changed(move, false);
+    }
+    return result;
+  }
+
+  /**
+   * Take back the last move that was made through this game and not taken back yet.
+   *
+   * @return true if a move was taken back, false if there was no move to take back
+   */
+  @Override
+  public boolean undo() {
+    if (made == 0 || !game.undo()) {
+      return false;
+    }
+    made--;
+    changed(moves[made], true);
+    return true;
+  }
+
+  /**
+   * Make again the last move that was taken back through this game, and tell everyone
+   * listening about the change.
+   *
+   * @return true if a move was made again, false if there was no move to make again
+   */
+  @Override
+  public boolean redo() {
+    if (made == available || !game.redo()) {
+      return false;
+    }
+    made++;
+    changed(moves[made - 1], false);
+    return true;
+  }
+
+  /**
+   * Determine and return if the game is over or not.
+   *
+   * @return true if the game is over, false otherwise
+   */
+  @Override
+  public boolean isGameOver() {
+    return game.isGameOver();
+  }
+
+  /**
+   * Return the number of moves that can be made from the current state of the board.
+   *
+   * @return the number of legal moves
+   */
+  @Override
+  public int legalMoveCount() {
+    return game.legalMoveCount();
+  }
+
+  /**
+   * Write the moves that can be made from the current state of the board into a given array.
+   *
+   * @param moves the array to write the encoded moves into, starting at index 0
+   * @return the number of legal moves, which is {@link #legalMoveCount()}
+   */
+  @Override
+  public int legalMoves(int[] moves) {
+    return game.legalMoves(moves);
+  }
+
+  /**
+   * Return a string that represents the current state of the board.
+   *
+   * @return the game state as a string
+   */
+  @Override
+  public String getGameState() {
+    return game.getGameState();
+  }
+
+  /**
+   * Append the game state to a given destination.
+   *
+   * @param destination where to append the game state
+   * @throws IOException if the destination cannot be written
+   */
+  @Override
+  public void renderTo(Appendable destination) throws IOException {
+    game.renderTo(destination);
+  }
+
+  /**
+   * Write the game state into a given buffer, one byte per character.
+   *
+   * @param buffer the buffer to write into
+   * @throws BufferOverflowException if the buffer has less room than the game state needs, in
+   *                                 which case nothing is written
+   */
+  @Override
+  public void renderTo(ByteBuffer buffer) throws BufferOverflowException {
+    game.renderTo(buffer);
+  }
+
+  /**
+   * Return the number of rows (and columns) of the square board.
+   *
+   * @return the width of the board
+   */
+  @Override
+  public int getBoardSize() {
+    return game.getBoardSize();
+  }
+
+  /**
+   * Return what is in the cell at a given position of the board.
+   *
+   * @param row the row number of the position (starts at 0)
+   * @param col the column number of the position (starts at 0)
+   * @return {@link Elements#MARBLE}, {@link Elements#EMPTY} or {@link Elements#INVALID}
+   * @throws IllegalArgumentException if the position is outside the board
+   */
+  @Override
+  public Elements getSlotAt(int row, int col) throws IllegalArgumentException {
+    return game.getSlotAt(row, col);
+  }
+
+  /**
+   * Return the number of marbles currently on the board.
+   *
+   * @return the number of marbles currently on the board
+   */
+  @Override
+  public int getScore() {
+    return game.getScore();
+  }
+
+  /**
+   * Return a 64-bit hash of the current position.
+   *
+   * @return the hash of the current position
+   */
+  @Override
+  public long positionHash() {
+    return game.positionHash();
+  }
+
+  /**
+   * Complete every subscriber once it has been given the changes already published. Listeners
+   * are still told about later changes, but subscribers are not.
+   */
+  @Override
+  public void close() {
+    publisher.close();
+  }
+}
@@ -0,0 +1,281 @@
+package solitaire;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class solves marble solitaire positions on many cores. The first moves of the game tree
+ * are split into fork/join tasks that idle workers steal, and below that depth each task searches
+ * on its own. All workers share one lock-free transposition table keyed on the canonical form of
+ * a position, so a subtree that one worker finished is not searched again by another. Like
+ * {@link MarbleSolitaireSolver}, only boards with arm thickness 1 and 3 can be solved. A solver
+ * can be used by many threads, and should be closed when it is no longer needed.
+ */
+public class ParallelMarbleSolitaireSolver implements AutoCloseable {
+  private static final int SPLIT_DEPTH = 6;
+  private static final int DEFAULT_TABLE_CAPACITY = 1 << 22;
+
+  private final ForkJoinPool pool;
+  private final int tableCapacity;
+
+  /**
+   * Construct a solver that uses a given number of worker threads.
+   *
+   * @param parallelism the number of worker threads
+   * @throws IllegalArgumentException if the parallelism is not positive
+   */
+  public ParallelMarbleSolitaireSolver(int parallelism) throws IllegalArgumentException {
+    this(parallelism, DEFAULT_TABLE_CAPACITY);
+  }
+
+  /**
+   * Construct a solver that uses a given number of worker threads and a transposition table with
+   * a given number of entries. Each entry takes 16 bytes. Positions that do not fit in the table
+   * are searched again, so counting every solution from the opening of the regular board needs a
+   * table of tens of millions of entries to finish quickly.
+   *
+   * @param parallelism   the number of worker threads
+   * @param tableCapacity the number of positions the transposition table can hold
+   * @throws IllegalArgumentException if the parallelism or the capacity is not positive
+   */
+  public ParallelMarbleSolitaireSolver(int parallelism, int tableCapacity)
+      throws IllegalArgumentException {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Invalid parallelism, it should be positive");
+    }
+    if (tableCapacity <= 0) {
+      throw new IllegalArgumentException("Invalid table capacity, it should be positive");
+    }
+    this.pool = new ForkJoinPool(parallelism);
+    this.tableCapacity = tableCapacity;
+  }
+
+  /**
+   * Solve the current position of a model. The model is not changed. If the position is
+   * unsolvable, every worker takes part in proving it.
+   *
+   * @param model the model whose position to solve
+   * @return whether the position is solvable, the moves that solve it, and search statistics
+   * @throws IllegalArgumentException if the board has more than 64 valid cells
+   */
+  public SolverResult solve(MarbleSolitaireModel model) throws IllegalArgumentException {
+    Search search = new Search(SolverBoard.of(model), tableCapacity);
+    long position = search.board.positionOf(model);
+    long start = System.nanoTime();
+    pool.invoke(new SolveTask(search, position, new int[0]));
+    long elapsed = System.nanoTime() - start;
+    int[] moves = search.solution.get();
+    return new SolverResult(moves != null, moves == null ? new int[0] : moves,
+        search.nodes.sum(), elapsed);
+  }
+
+  /**
+   * Count the different sequences of moves that reduce the current position of a model to a
+   * single marble. The model is not changed.
+   *
+   * @param model the model whose position to count solutions for
+   * @return the number of solutions, 0 if the position is unsolvable
+   * @throws IllegalArgumentException if the board has more than 64 valid cells
+   */
+  public long countSolutions(MarbleSolitaireModel model) throws IllegalArgumentException {
+    Search search = new Search(SolverBoard.of(model), tableCapacity);
+    return pool.invoke(new CountTask(search, search.board.positionOf(model), 0));
+  }
+
+  /**
+   * Stop the worker threads of this solver.
+   */
+  @Override
+  public void close() {
+    pool.shutdown();
+  }
+
+  /**
+   * The state shared by all tasks of one search.
+   */
+  private static final class Search {
+    private final SolverBoard board;
+    private final ConcurrentLongTable table;
+    private final AtomicBoolean done = new AtomicBoolean();
+    private final AtomicReference<int[]> solution = new AtomicReference<>();
+    private final LongAdder nodes = new LongAdder();
+
+    private Search(SolverBoard board, int tableCapacity) {
+      this.board = board;
+      this.table = new ConcurrentLongTable(tableCapacity);
+    }
+  }
+
+  /**
+   * A task that searches for a solution below a position. Near the root it forks one task per
+   * move, deeper down it searches depth-first on its own. The first task to find a solution
+   * publishes it and stops every other task.
+   */
+  private static final class SolveTask extends RecursiveTask<Boolean> {
+    private static final long serialVersionUID = 1L;
+    private final transient Search search;
+    private final long position;
+    private final int[] prefix;
+    private long nodes;
+
+    private SolveTask(Search search, long position, int[] prefix) {
+      this.search = search;
+      this.position = position;
+      this.prefix = prefix;
+    }
+
+    @Override
+    protected Boolean compute() {
+      boolean solved;
+      if (prefix.length < SPLIT_DEPTH) {
+        solved = computeForked();
+      } else {
+        int[] path = Arrays.copyOf(prefix, search.board.cellCount);
+        solved = search(position, prefix.length, path);
+        if (solved) {
+          publish(Arrays.copyOf(path, prefix.length + Long.bitCount(position) - 1));
+        }
+      }
+      search.nodes.add(nodes);
+      return solved;
+    }
+
+    private boolean computeForked() {
+      nodes++;
+      if (Long.bitCount(position) == 1) {
+        publish(prefix);
+        return true;
+      }
+      if (search.done.get()) {
+        return false;
+      }
+      long key = search.board.canonical(position);
+      if (search.table.get(key) == 0) {
+        return false;
+      }
+      SolverBoard board = search.board;
+      List<SolveTask> tasks = new ArrayList<>();
+      for (int jump = 0; jump < board.jumpMasks.length; jump++) {
+        if ((position & board.jumpMasks[jump]) == board.jumpNeeds[jump]) {
+          int[] next = Arrays.copyOf(prefix, prefix.length + 1);
+          next[prefix.length] = board.jumpMoves[jump];
+          tasks.add(new SolveTask(search, position ^ board.jumpMasks[jump], next));
+        }
+      }
+      boolean solved = false;
+      for (SolveTask task : invokeAll(tasks)) {
+        solved |= task.join();
+      }
+      if (!solved && !search.done.get()) {
+        search.table.put(key, 0);
+      }
+      return solved;
+    }
+
+    private boolean search(long position, int depth, int[] path) {
+      nodes++;
+      if (Long.bitCount(position) == 1) {
+        return true;
+      }
+      if (search.done.get()) {
+        return false;
+      }
+      long key = search.board.canonical(position);
+      if (search.table.get(key) == 0) {
+        return false;
+      }
+      SolverBoard board = search.board;
+      for (int jump = 0; jump < board.jumpMasks.length; jump++) {
+        if ((position & board.jumpMasks[jump]) == board.jumpNeeds[jump]) {
+          path[depth] = board.jumpMoves[jump];
+          if (search(position ^ board.jumpMasks[jump], depth + 1, path)) {
+            return true;
+          }
+        }
+      }
+      //a search stopped early proves nothing about this position
+      if (!search.done.get()) {
+        search.table.put(key, 0);
+      }
+      return false;
+    }
+
+    private void publish(int[] moves) {
+      if (search.solution.compareAndSet(null, moves)) {
+        search.done.set(true);
+      }
+    }
+  }
+
+  /**
+   * A task that counts the solutions below a position. Near the root it forks one task per move,
+   * deeper down it counts depth-first on its own. Counts are shared through the table, and
+   * positions that are rotations or reflections of each other have the same count.
+   */
+  private static final class CountTask extends RecursiveTask<Long> {
+    private static final long serialVersionUID = 1L;
+    private final transient Search search;
+    private final long position;
+    private final int depth;
+
+    private CountTask(Search search, long position, int depth) {
+      this.search = search;
+      this.position = position;
+      this.depth = depth;
+    }
+
+    @Override
+    protected Long compute() {
+      if (depth >= SPLIT_DEPTH) {
+        return count(position);
+      }
+      if (Long.bitCount(position) == 1) {
+        return 1L;
+      }
+      long key = search.board.canonical(position);
+      long known = search.table.get(key);
+      if (known >= 0) {
+        return known;
+      }
+      SolverBoard board = search.board;
+      List<CountTask> tasks = new ArrayList<>();
+      for (int jump = 0; jump < board.jumpMasks.length; jump++) {
+        if ((position & board.jumpMasks[jump]) == board.jumpNeeds[jump]) {
+          tasks.add(new CountTask(search, position ^ board.jumpMasks[jump], depth + 1));
+        }
+      }
+      long total = 0;
+      for (CountTask task : invokeAll(tasks)) {
+        total += task.join();
+      }
+      search.table.put(key, total);
+      return total;
+    }
+
+    private long count(long position) {
+      if (Long.bitCount(position) == 1) {
+        return 1;
+      }
+      long key = search.board.canonical(position);
+      long known = search.table.get(key);
+      if (known >= 0) {
+        return known;
+      }
+      SolverBoard board = search.board;
+      long total = 0;
+      for (int jump = 0; jump < board.jumpMasks.length; jump++) {
+        if ((position & board.jumpMasks[jump]) == board.jumpNeeds[jump]) {
+          total += count(position ^ board.jumpMasks[jump]);
+        }
+      }
+      search.table.put(key, total);
+      return total;
+    }
+  }
+}
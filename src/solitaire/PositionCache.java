@@ -0,0 +1,91 @@
+package solitaire;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class maps positions to small int values, keeping only the most recently used ones. It is
+ * split into independently locked stripes, each a least-recently-used map of its own share of
+ * the capacity, so threads working on different positions rarely wait for each other.
+ */
+final class PositionCache {
+  private static final int STRIPES = 16;
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  /**
+   * One stripe of the cache: an access-ordered map that drops its eldest entry when full.
+   */
+  private static final class Stripe extends LinkedHashMap<Long, Integer> {
+    private static final long serialVersionUID = 1L;
+    private final int capacity;
+
+    private Stripe(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+      return size() > capacity;
+    }
+  }
+
+  /**
+   * Construct a cache that holds at most about a given number of positions.
+   *
+   * @param capacity the number of positions the cache can hold, at least 1 per stripe
+   */
+  PositionCache(int capacity) {
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe(Math.max(1, capacity / STRIPES));
+    }
+  }
+
+  private Stripe stripe(long key) {
+    return stripes[LongHashSet.hash(key) & (STRIPES - 1)];
+  }
+
+  /**
+   * Return the value of a position, and mark it as recently used.
+   *
+   * @param key the position
+   * @return the value, or -1 if the position is not in the cache
+   */
+  int get(long key) {
+    Stripe stripe = stripe(key);
+    synchronized (stripe) {
+      Integer value = stripe.get(key);
+      return value == null ? -1 : value;
+    }
+  }
+
+  /**
+   * Store the value of a position, dropping the least recently used position of its stripe if
+   * the stripe is full.
+   *
+   * @param key   the position
+   * @param value the value, not negative
+   */
+  void put(long key, int value) {
+    Stripe stripe = stripe(key);
+    synchronized (stripe) {
+      stripe.put(key, value);
+    }
+  }
+
+  /**
+   * Return the number of positions in the cache.
+   *
+   * @return the number of positions
+   */
+  int size() {
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.size();
+      }
+    }
+    return size;
+  }
+}
@@ -0,0 +1,17 @@
+package solitaire;
+
+/**
+ * This class keeps the game state of a model together with how many times the board of the model
+ * had changed when the state was made. The state is current as long as the board has not changed
+ * since. Both are kept in one immutable object, so that a model read by many threads at once
+ * never pairs a state with the count of another board.
+ */
+final class RenderedState {
+  final String state;
+  final long changes;
+
+  RenderedState(String state, long changes) {
+    this.state = state;
+    this.changes = changes;
+  }
+}
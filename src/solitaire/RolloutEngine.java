@@ -0,0 +1,154 @@
+package solitaire;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * This class plays many random games of marble solitaire from a position, to estimate how hard
+ * the position is from the spread of the final scores. Each game picks uniformly among the legal
+ * moves until none is left. The games are split evenly between worker threads, and each worker
+ * plays its share on its own copy of the position with its own {@link SplittableRandom}, so
+ * playing a game allocates nothing. Boards with at most 64 valid cells are played on a single
+ * long with the jump tables of the solvers; larger boards are played on a model, taking every
+ * move back after each game. The same seed with the same parallelism always gives the same
+ * histogram. An engine can be used by many threads, and should be closed when it is no longer
+ * needed.
+ */
+public class RolloutEngine implements AutoCloseable {
+  private final ForkJoinPool pool;
+  private final int parallelism;
+
+  /**
+   * Construct a rollout engine that uses a given number of worker threads.
+   *
+   * @param parallelism the number of worker threads
+   * @throws IllegalArgumentException if the parallelism is not positive
+   */
+  public RolloutEngine(int parallelism) throws IllegalArgumentException {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Invalid parallelism, it should be positive");
+    }
+    this.pool = new ForkJoinPool(parallelism);
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Play random games from the current position of a model, with a random seed. The model is
+   * not changed.
+   *
+   * @param model    the model whose position to play from
+   * @param playouts the number of games to play
+   * @return the histogram of the final scores
+   * @throws IllegalArgumentException if the number of games is negative
+   */
+  public RolloutResult run(MarbleSolitaireModel model, long playouts)
+      throws IllegalArgumentException {
+    return run(model, playouts, new SplittableRandom().nextLong());
+  }
+
+  /**
+   * Play random games from the current position of a model. The model is not changed.
+   *
+   * @param model    the model whose position to play from
+   * @param playouts the number of games to play
+   * @param seed     the seed of the random moves
+   * @return the histogram of the final scores
+   * @throws IllegalArgumentException if the number of games is negative
+   */
+  public RolloutResult run(MarbleSolitaireModel model, long playouts, long seed)
+      throws IllegalArgumentException {
+    if (playouts < 0) {
+      throw new IllegalArgumentException("Invalid number of playouts, it should not be negative");
+    }
+    BoardSnapshot start = BoardSnapshot.of(model);
+    int armThickness = (model.getBoardSize() - 1) / 2;
+    SolverBoard board = armThickness <= 3 ? SolverBoard.of(armThickness) : null;
+    long position = board == null ? 0 : board.positionOf(model);
+    SplittableRandom random = new SplittableRandom(seed);
+    long begin = System.nanoTime();
+    List<ForkJoinTask<long[]>> tasks = new ArrayList<>();
+    for (int worker = 0; worker < parallelism; worker++) {
+      long share = playouts / parallelism + (worker < playouts % parallelism ? 1 : 0);
+      SplittableRandom workerRandom = random.split();
+      if (board != null) {
+        tasks.add(pool.submit(() -> play(board, position, share, workerRandom)));
+      } else {
+        tasks.add(pool.submit(() -> play(start.toModel(), share, workerRandom)));
+      }
+    }
+    long[] histogram = new long[start.getScore() + 1];
+    for (ForkJoinTask<long[]> task : tasks) {
+      long[] counts = task.join();
+      for (int score = 0; score < histogram.length; score++) {
+        histogram[score] += counts[score];
+      }
+    }
+    return new RolloutResult(histogram, playouts, System.nanoTime() - begin);
+  }
+
+  /**
+   * Play a number of random games on a model, taking every move back after each game.
+   *
+   * @return how many games ended with each score
+   */
+  private static long[] play(MarbleSolitaireModelImpl model, long playouts,
+      SplittableRandom random) {
+    long[] histogram = new long[model.getScore() + 1];
+    //every marble can move in at most four directions
+    int[] moves = new int[4 * model.getScore()];
+    for (long i = 0; i < playouts; i++) {
+      int count;
+      while ((count = model.legalMoves(moves)) > 0) {
+        int move = moves[random.nextInt(count)];
+        model.tryMove(Moves.fromRow(move), Moves.fromCol(move), Moves.toRow(move),
+            Moves.toCol(move));
+      }
+      histogram[model.getScore()]++;
+      while (model.undo()) {
+        continue;
+      }
+    }
+    return histogram;
+  }
+
+  /**
+   * Play a number of random games from a position of a board with at most 64 valid cells.
+   *
+   * @return how many games ended with each score
+   */
+  private static long[] play(SolverBoard board, long position, long playouts,
+      SplittableRandom random) {
+    long[] histogram = new long[Long.bitCount(position) + 1];
+    long[] needs = board.jumpNeeds;
+    long[] masks = board.jumpMasks;
+    int[] legal = new int[masks.length];
+    for (long i = 0; i < playouts; i++) {
+      long current = position;
+      while (true) {
+        int count = 0;
+        for (int jump = 0; jump < masks.length; jump++) {
+          if ((current & masks[jump]) == needs[jump]) {
+            legal[count++] = jump;
+          }
+        }
+        if (count == 0) {
+          break;
+        }
+        current ^= masks[legal[random.nextInt(count)]];
+      }
+      histogram[Long.bitCount(current)]++;
+    }
+    return histogram;
+  }
+
+  /**
+   * Stop the worker threads. No more games can be played.
+   */
+  @Override
+  public void close() {
+    pool.shutdown();
+  }
+}
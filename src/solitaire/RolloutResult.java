@@ -0,0 +1,90 @@
+package solitaire;
+
+/**
+ * This class represents the outcome of playing many random games from one position: how many
+ * games ended with each number of marbles left, and how long it took.
+ */
+public final class RolloutResult {
+  private final long[] histogram;
+  private final long playouts;
+  private final long elapsedNanos;
+
+  RolloutResult(long[] histogram, long playouts, long elapsedNanos) {
+    this.histogram = histogram;
+    this.playouts = playouts;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * Return how many games ended with each score.
+   *
+   * @return an array whose element at index i is the number of games that ended with i marbles
+   */
+  public long[] getHistogram() {
+    return histogram.clone();
+  }
+
+  /**
+   * Return how many games ended with a given score.
+   *
+   * @param score the number of marbles left
+   * @return the number of games that ended with that score
+   */
+  public long getCount(int score) {
+    return score < 0 || score >= histogram.length ? 0 : histogram[score];
+  }
+
+  /**
+   * Return the number of games played.
+   *
+   * @return the number of games played
+   */
+  public long getPlayouts() {
+    return playouts;
+  }
+
+  /**
+   * Return the lowest final score of the games played.
+   *
+   * @return the lowest score, or -1 if no game was played
+   */
+  public int getMinScore() {
+    for (int score = 0; score < histogram.length; score++) {
+      if (histogram[score] != 0) {
+        return score;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Return the average final score of the games played.
+   *
+   * @return the mean score, 0 if no game was played
+   */
+  public double getMeanScore() {
+    double total = 0;
+    for (int score = 0; score < histogram.length; score++) {
+      total += (double) score * histogram[score];
+    }
+    return playouts == 0 ? 0 : total / playouts;
+  }
+
+  /**
+   * Return how long the games took to play.
+   *
+   * @return the duration in nanoseconds
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Return how many games were played per second.
+   *
+   * @return the throughput of the rollouts
+   */
+  public double getPlayoutsPerSecond() {
+    return elapsedNanos == 0 ? 0 : playouts * 1e9 / elapsedNanos;
+  }
+}
@@ -0,0 +1,119 @@
+package solitaire;
+
+/**
+ * This class represents a snapshot of the counters of a {@link GameSessionRegistry}: how many
+ * games it hosts, how much work it ran, and how often that work had to queue behind other work
+ * on the same game.
+ */
+public final class SessionStats {
+  private final int games;
+  private final long created;
+  private final long evicted;
+  private final long tasks;
+  private final long contendedTasks;
+  private final long moves;
+  private final long rejectedMoves;
+  private final long elapsedNanos;
+
+  SessionStats(int games, long created, long evicted, long tasks, long contendedTasks,
+      long moves, long rejectedMoves, long elapsedNanos) {
+    this.games = games;
+    this.created = created;
+    this.evicted = evicted;
+    this.tasks = tasks;
+    this.contendedTasks = contendedTasks;
+    this.moves = moves;
+    this.rejectedMoves = rejectedMoves;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * Return the number of games hosted when the snapshot was taken.
+   *
+   * @return the number of games
+   */
+  public int getGames() {
+    return games;
+  }
+
+  /**
+   * Return the number of games created.
+   *
+   * @return the number of games created
+   */
+  public long getCreated() {
+    return created;
+  }
+
+  /**
+   * Return the number of games evicted.
+   *
+   * @return the number of games evicted
+   */
+  public long getEvicted() {
+    return evicted;
+  }
+
+  /**
+   * Return the number of tasks run on games, moves included.
+   *
+   * @return the number of tasks run
+   */
+  public long getTasks() {
+    return tasks;
+  }
+
+  /**
+   * Return the number of tasks that found their game busy with other tasks and had to queue.
+   *
+   * @return the number of contended tasks
+   */
+  public long getContendedTasks() {
+    return contendedTasks;
+  }
+
+  /**
+   * Return the number of moves made.
+   *
+   * @return the number of moves made
+   */
+  public long getMoves() {
+    return moves;
+  }
+
+  /**
+   * Return the number of moves rejected.
+   *
+   * @return the number of moves rejected
+   */
+  public long getRejectedMoves() {
+    return rejectedMoves;
+  }
+
+  /**
+   * Return how long the registry had been running when the snapshot was taken.
+   *
+   * @return the running time in nanoseconds
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Return how many moves, made or rejected, were handled per second.
+   *
+   * @return the move throughput of the registry
+   */
+  public double getMovesPerSecond() {
+    return elapsedNanos == 0 ? 0 : (moves + rejectedMoves) * 1e9 / elapsedNanos;
+  }
+
+  /**
+   * Return the fraction of tasks that had to queue behind other work on their game.
+   *
+   * @return the contended tasks divided by the tasks, 0 if no task ran
+   */
+  public double getContentionRate() {
+    return tasks == 0 ? 0 : (double) contendedTasks / tasks;
+  }
+}
@@ -0,0 +1,214 @@
+package solitaire;
+
+import java.util.Arrays;
+
+/**
+ * This class describes a board for the solvers, where a position is a single long with one bit
+ * per valid cell (a set bit is a marble). Cells are numbered row by row, skipping the invalid
+ * corners. It lists every jump on the board and maps positions through the 8 symmetries of the
+ * cross-shaped board, so equivalent positions can share one canonical form. Only boards with at
+ * most 64 valid cells fit, which are the boards with arm thickness 1 and 3.
+ */
+final class SolverBoard {
+  private static final SolverBoard[] BOARDS = {new SolverBoard(1), new SolverBoard(3)};
+  private static final int SYMMETRIES = 8;
+
+  final int armThickness;
+  final int boardWidth;
+  final int cellCount;
+  //the row and column number of each cell
+  final int[] rows;
+  final int[] cols;
+  //for each jump: the cells that must hold marbles, all three cells it changes, and the move
+  final long[] jumpNeeds;
+  final long[] jumpMasks;
+  final int[] jumpMoves;
+  //for each symmetry and each byte of a position, the bits that byte maps to
+  private final long[][][] symmetryTables;
+  private final int[] indices;
+
+  private SolverBoard(int armThickness) {
+    this.armThickness = armThickness;
+    this.boardWidth = 2 * armThickness + 1;
+    int armStart = (armThickness + 1) / 2;
+    int armEnd = armStart + armThickness - 1;
+
+    //number the valid cells
+    this.indices = new int[boardWidth * boardWidth];
+    int count = 0;
+    for (int i = 0; i < boardWidth; i++) {
+      for (int j = 0; j < boardWidth; j++) {
+        boolean valid = (i >= armStart && i <= armEnd) || (j >= armStart && j <= armEnd);
+        indices[i * boardWidth + j] = valid ? count++ : -1;
+      }
+    }
+    this.cellCount = count;
+    this.rows = new int[cellCount];
+    this.cols = new int[cellCount];
+    for (int i = 0; i < boardWidth; i++) {
+      for (int j = 0; j < boardWidth; j++) {
+        int index = indices[i * boardWidth + j];
+        if (index >= 0) {
+          rows[index] = i;
+          cols[index] = j;
+        }
+      }
+    }
+
+    //list every jump whose three cells are valid
+    long[] needs = new long[4 * cellCount];
+    long[] masks = new long[4 * cellCount];
+    int[] moves = new int[4 * cellCount];
+    int jumps = 0;
+    for (int cell = 0; cell < cellCount; cell++) {
+      for (int direction = Moves.UP; direction <= Moves.RIGHT; direction++) {
+        int over = index(rows[cell] + Moves.rowStep(direction),
+            cols[cell] + Moves.colStep(direction));
+        int to = index(rows[cell] + 2 * Moves.rowStep(direction),
+            cols[cell] + 2 * Moves.colStep(direction));
+        if (over >= 0 && to >= 0) {
+          needs[jumps] = 1L << cell | 1L << over;
+          masks[jumps] = needs[jumps] | 1L << to;
+          moves[jumps] = Moves.encode(rows[cell], cols[cell], direction);
+          jumps++;
+        }
+      }
+    }
+    this.jumpNeeds = Arrays.copyOf(needs, jumps);
+    this.jumpMasks = Arrays.copyOf(masks, jumps);
+    this.jumpMoves = Arrays.copyOf(moves, jumps);
+
+    //tabulate the symmetries one byte at a time
+    int bytes = (cellCount + 7) / 8;
+    this.symmetryTables = new long[SYMMETRIES][bytes][256];
+    for (int symmetry = 0; symmetry < SYMMETRIES; symmetry++) {
+      for (int b = 0; b < bytes; b++) {
+        for (int value = 0; value < 256; value++) {
+          long image = 0;
+          for (int bit = 0; bit < 8; bit++) {
+            int cell = 8 * b + bit;
+            if ((value >>> bit & 1) != 0 && cell < cellCount) {
+              image |= 1L << transformCell(symmetry, cell);
+            }
+          }
+          symmetryTables[symmetry][b][value] = image;
+        }
+      }
+    }
+  }
+
+  /**
+   * Return the board for a given arm thickness.
+   *
+   * @param armThickness the arm thickness of the board
+   * @return the shared board description
+   * @throws IllegalArgumentException if the board has more than 64 valid cells
+   */
+  static SolverBoard of(int armThickness) throws IllegalArgumentException {
+    if (armThickness != 1 && armThickness != 3) {
+      throw new IllegalArgumentException("Invalid board, the solver supports "
+          + "boards of at most 64 cells (arm thickness 1 or 3)");
+    }
+    return BOARDS[armThickness / 2];
+  }
+
+  /**
+   * Return the board that a model is played on.
+   *
+   * @param model the model
+   * @return the shared board description
+   * @throws IllegalArgumentException if the board has more than 64 valid cells
+   */
+  static SolverBoard of(MarbleSolitaireModel model) throws IllegalArgumentException {
+    return of((model.getBoardSize() - 1) / 2);
+  }
+
+  /**
+   * Return the index of the cell at a position, or -1 if there is no valid cell there.
+   */
+  int index(int row, int col) {
+    if (row < 0 || col < 0 || row >= boardWidth || col >= boardWidth) {
+      return -1;
+    }
+    return indices[row * boardWidth + col];
+  }
+
+  /**
+   * Read the current position of a model.
+   *
+   * @param model a model played on this board
+   * @return the position, one bit per marble
+   */
+  long positionOf(MarbleSolitaireModel model) {
+    long position = 0;
+    for (int cell = 0; cell < cellCount; cell++) {
+      if (model.getSlotAt(rows[cell], cols[cell]) == Elements.MARBLE) {
+        position |= 1L << cell;
+      }
+    }
+    return position;
+  }
+
+  /**
+   * Map a position through one of the 8 symmetries of the board.
+   *
+   * @param symmetry the symmetry, from 0 (the identity) to 7
+   * @param position the position
+   * @return the image of the position
+   */
+  long transform(int symmetry, long position) {
+    long[][] tables = symmetryTables[symmetry];
+    long image = 0;
+    for (int b = 0; b < tables.length; b++) {
+      image |= tables[b][(int) (position >>> (8 * b)) & 0xFF];
+    }
+    return image;
+  }
+
+  /**
+   * Return the canonical form of a position: the smallest of its images under the 8 symmetries.
+   * Two positions have the same canonical form exactly when one is a rotation or reflection of
+   * the other.
+   *
+   * @param position the position
+   * @return the canonical form of the position
+   */
+  long canonical(long position) {
+    long smallest = position;
+    for (int symmetry = 1; symmetry < SYMMETRIES; symmetry++) {
+      long image = transform(symmetry, position);
+      if (Long.compareUnsigned(image, smallest) < 0) {
+        smallest = image;
+      }
+    }
+    return smallest;
+  }
+
+  /**
+   * Return the cell a cell is mapped to by one of the 8 symmetries: the four rotations, then the
+   * four reflections.
+   */
+  private int transformCell(int symmetry, int cell) {
+    int row = rows[cell];
+    int col = cols[cell];
+    int last = boardWidth - 1;
+    switch (symmetry) {
+      case 0:
+        return index(row, col);
+      case 1:
+        return index(col, last - row);
+      case 2:
+        return index(last - row, last - col);
+      case 3:
+        return index(last - col, row);
+      case 4:
+        return index(row, last - col);
+      case 5:
+        return index(last - row, col);
+      case 6:
+        return index(col, row);
+      default:
+        return index(last - col, last - row);
+    }
+  }
+}
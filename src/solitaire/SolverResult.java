@@ -0,0 +1,64 @@
+package solitaire;
+
+/**
+ * This class represents the outcome of solving a position: whether the position can be played
+ * down to a single marble, the moves that do it, and how much searching it took.
+ */
+public final class SolverResult {
+  private final boolean solvable;
+  private final int[] moves;
+  private final long nodes;
+  private final long elapsedNanos;
+
+  SolverResult(boolean solvable, int[] moves, long nodes, long elapsedNanos) {
+    this.solvable = solvable;
+    this.moves = moves;
+    this.nodes = nodes;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * Determine if the position can be played down to a single marble.
+   *
+   * @return true if the position is solvable, false if it was proven unsolvable
+   */
+  public boolean isSolvable() {
+    return solvable;
+  }
+
+  /**
+   * Return the moves that solve the position, encoded as described in {@link Moves}.
+   *
+   * @return the moves in the order they are made, empty if the position is unsolvable
+   */
+  public int[] getMoves() {
+    return moves.clone();
+  }
+
+  /**
+   * Return the number of positions the search visited.
+   *
+   * @return the number of positions visited
+   */
+  public long getNodes() {
+    return nodes;
+  }
+
+  /**
+   * Return how long the search took.
+   *
+   * @return the duration of the search in nanoseconds
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Return how many positions the search visited per second.
+   *
+   * @return the throughput of the search
+   */
+  public double getNodesPerSecond() {
+    return elapsedNanos == 0 ? 0 : nodes * 1e9 / elapsedNanos;
+  }
+}
@@ -0,0 +1,29 @@
+package solitaire;
+
+/**
+ * This class provides the Zobrist keys of the cells of a board: a fixed pseudo-random 64-bit key
+ * per cell. The hash of a position is the XOR of the keys of the cells that hold a marble, so a
+ * move updates it by XOR-ing the keys of the three cells it changes. Keys are computed from the
+ * board width and the position of the cell, so every model of the same size agrees on them
+ * without sharing a table.
+ */
+final class Zobrist {
+  private Zobrist() {
+  }
+
+  /**
+   * Return the key of a cell.
+   *
+   * @param boardWidth the width of the board
+   * @param row        the row number of the cell
+   * @param col        the column number of the cell
+   * @return the 64-bit key of the cell
+   */
+  static long key(int boardWidth, int row, int col) {
+    //the SplitMix64 finalizer, applied to a unique number per board width and cell
+    long z = ((long) boardWidth << 40 ^ (long) row << 20 ^ col) * 0x9e3779b97f4a7c15L;
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+}
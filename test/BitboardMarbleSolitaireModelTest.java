@@ -0,0 +1,253 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import solitaire.BitboardMarbleSolitaireModel;
+import solitaire.MarbleSolitaireModel;
+import solitaire.MarbleSolitaireModelImpl;
+import solitaire.Moves;
+
+/**
+ * This class tests the methods of the BitboardMarbleSolitaireModel class, mostly by checking that
+ * it behaves exactly like MarbleSolitaireModelImpl.
+ */
+public class BitboardMarbleSolitaireModelTest {
+
+  private BitboardMarbleSolitaireModel boardRegular;
+  private BitboardMarbleSolitaireModel boardCustomWidth;
+  private BitboardMarbleSolitaireModel superSmallBoard;
+
+  /**
+   * Set up a board with the default size, a board that needs more than one long, and a board
+   * with the smallest arm thickness.
+   */
+  @Before
+  public void setUp() {
+    this.boardRegular = new BitboardMarbleSolitaireModel();
+    this.boardCustomWidth = new BitboardMarbleSolitaireModel(5);
+    this.superSmallBoard = new BitboardMarbleSolitaireModel(1);
+  }
+
+  /**
+   * Test that the constructor will throw an exception when an even arm thickness is passed in.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorEvenArmThickness() {
+    new BitboardMarbleSolitaireModel(4);
+  }
+
+  /**
+   * Test that the constructor will throw an exception when the arm thickness is too large for
+   * the columns to be encoded in a move.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorArmThicknessTooLarge() {
+    new BitboardMarbleSolitaireModel(16385, 16385, 32768);
+  }
+
+  /**
+   * Test that the constructor will throw an exception when the empty cell is placed
+   * in an invalid position(upper left).
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorInvalidEmptyCellUpperLeft() {
+    new BitboardMarbleSolitaireModel(1, 1);
+  }
+
+  /**
+   * Test that the constructor will throw an exception when the empty cell is out of bound.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorThreeParametersInvalidEmptyCellRowTooLarge() {
+    new BitboardMarbleSolitaireModel(3, 7, 3);
+  }
+
+  /**
+   * Test that the constructors build the same boards as MarbleSolitaireModelImpl.
+   */
+  @Test
+  public void testConstructorsMatchImpl() {
+    assertSameGame(new MarbleSolitaireModelImpl(), this.boardRegular);
+    assertSameGame(new MarbleSolitaireModelImpl(5), this.boardCustomWidth);
+    assertSameGame(new MarbleSolitaireModelImpl(1), this.superSmallBoard);
+    assertSameGame(new MarbleSolitaireModelImpl(2, 3), new BitboardMarbleSolitaireModel(2, 3));
+    assertSameGame(new MarbleSolitaireModelImpl(5, 4, 5),
+        new BitboardMarbleSolitaireModel(5, 4, 5));
+    assertSameGame(new MarbleSolitaireModelImpl(9, 0, 7),
+        new BitboardMarbleSolitaireModel(9, 0, 7));
+  }
+
+  /**
+   * Test that a valid move updates the board and the score.
+   */
+  @Test
+  public void testMoveDown() {
+    this.boardRegular.move(1, 3, 3, 3);
+    assertEquals(31, this.boardRegular.getScore());
+    String[] lines = this.boardRegular.getGameState().split("\n");
+    assertEquals('_', lines[1].charAt(6));
+    assertEquals('_', lines[2].charAt(6));
+    assertEquals('O', lines[3].charAt(6));
+  }
+
+  /**
+   * Test that the move method will throw an exception when there is no marble to jump over.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoMarbleToJumpOverDown() {
+    this.boardRegular.move(1, 3, 3, 3);
+    this.boardRegular.move(0, 3, 2, 3);
+  }
+
+  /**
+   * Test the isGameOver method.
+   */
+  @Test
+  public void isGameOver() {
+    assertTrue(this.superSmallBoard.isGameOver());
+    assertFalse(this.boardRegular.isGameOver());
+    assertFalse(this.boardCustomWidth.isGameOver());
+  }
+
+  /**
+   * Test that every move, legal or not, is accepted or rejected with the same message as
+   * MarbleSolitaireModelImpl, and that both models stay identical afterwards.
+   */
+  @Test
+  public void testRandomMovesMatchImpl() {
+    Random random = new Random(42);
+    int[] armThicknesses = {1, 3, 5, 7};
+    for (int armThickness : armThicknesses) {
+      int boardWidth = 2 * armThickness + 1;
+      MarbleSolitaireModel expected = new MarbleSolitaireModelImpl(armThickness);
+      MarbleSolitaireModel actual = new BitboardMarbleSolitaireModel(armThickness);
+      for (int i = 0; i < 20000; i++) {
+        int fromRow = random.nextInt(boardWidth + 2) - 1;
+        int fromCol = random.nextInt(boardWidth + 2) - 1;
+        int toRow = fromRow + random.nextInt(5) - 2;
+        int toCol = fromCol + random.nextInt(5) - 2;
+        String expectedMessage = null;
+        try {
+          expected.move(fromRow, fromCol, toRow, toCol);
+        } catch (IllegalArgumentException e) {
+          expectedMessage = e.getMessage();
+        }
+        try {
+          actual.move(fromRow, fromCol, toRow, toCol);
+          if (expectedMessage != null) {
+            fail("expected the move to be rejected: " + expectedMessage);
+          }
+        } catch (IllegalArgumentException e) {
+          assertEquals(expectedMessage, e.getMessage());
+        }
+        if (expectedMessage == null) {
+          assertSameGame(expected, actual);
+        }
+      }
+      assertSameGame(expected, actual);
+    }
+  }
+
+  /**
+   * Test that tryMove returns the same results as MarbleSolitaireModelImpl.
+   */
+  @Test
+  public void testTryMoveMatchesImpl() {
+    MarbleSolitaireModel expected = new MarbleSolitaireModelImpl();
+    int[][] moves = {{7, 3, 3, 3}, {3, 3, 3, -1}, {1, 1, 3, 3}, {3, 3, 5, 5}, {3, 0, 3, 2},
+        {3, 0, 3, 3}, {1, 2, 3, 3}, {3, 1, 3, 3}, {3, 2, 3, 1}, {3, 0, 3, 2}};
+    for (int[] move : moves) {
+      assertEquals(expected.tryMove(move[0], move[1], move[2], move[3]),
+          this.boardRegular.tryMove(move[0], move[1], move[2], move[3]));
+    }
+    assertSameGame(expected, this.boardRegular);
+  }
+
+  /**
+   * Test that undo and redo keep the model identical to MarbleSolitaireModelImpl.
+   */
+  @Test
+  public void testUndoRedoMatchesImpl() {
+    Random random = new Random(11);
+    MarbleSolitaireModel expected = new MarbleSolitaireModelImpl(5);
+    int[] moves = new int[8];
+    for (int i = 0; i < 2000; i++) {
+      int choice = random.nextInt(4);
+      if (choice == 0) {
+        assertEquals(expected.undo(), this.boardCustomWidth.undo());
+      } else if (choice == 1) {
+        assertEquals(expected.redo(), this.boardCustomWidth.redo());
+      } else if (expected.legalMoves(moves) > 0) {
+        int move = moves[random.nextInt(Math.min(moves.length, expected.legalMoveCount()))];
+        assertEquals(Moves.apply(expected, move), Moves.apply(this.boardCustomWidth, move));
+      }
+      assertSameGame(expected, this.boardCustomWidth);
+    }
+  }
+
+  /**
+   * Test that a board with a very large arm thickness is built without visiting every cell, and
+   * that it starts with the same position hash as MarbleSolitaireModelImpl.
+   */
+  @Test
+  public void testHugeBoardMatchesImpl() {
+    MarbleSolitaireModel expected = new MarbleSolitaireModelImpl(2001, 0, 2001);
+    MarbleSolitaireModel actual = new BitboardMarbleSolitaireModel(2001, 0, 2001);
+    assertEquals(expected.getScore(), actual.getScore());
+    assertEquals(3, actual.legalMoveCount());
+    assertEquals(expected.positionHash(), actual.positionHash());
+    assertEquals(Moves.apply(expected, Moves.encode(2, 2001, Moves.UP)),
+        Moves.apply(actual, Moves.encode(2, 2001, Moves.UP)));
+    assertEquals(expected.legalMoveCount(), actual.legalMoveCount());
+    assertEquals(expected.positionHash(), actual.positionHash());
+  }
+
+  private static void assertSameGame(MarbleSolitaireModel expected, MarbleSolitaireModel actual) {
+    assertEquals(expected.getGameState(), actual.getGameState());
+    assertEquals(expected.getScore(), actual.getScore());
+    assertEquals(expected.isGameOver(), actual.isGameOver());
+    assertEquals(expected.legalMoveCount(), actual.legalMoveCount());
+    assertEquals(expected.positionHash(), actual.positionHash());
+  }
+
+  /**
+   * Test that the game state, and rendering it to a destination or a buffer, match the other
+   * model over a random game, and that the game state is kept while the board does not change.
+   */
+  @Test
+  public void testRenderToMatchesImpl() throws IOException {
+    Random random = new Random(25);
+    int[] moves = new int[1024];
+    MarbleSolitaireModel expected = new MarbleSolitaireModelImpl(5);
+    MarbleSolitaireModel actual = new BitboardMarbleSolitaireModel(5);
+    int size = actual.getBoardSize();
+    ByteBuffer buffer = ByteBuffer.allocate(2 * size * size - 1);
+    while (true) {
+      StringBuilder rendered = new StringBuilder();
+      actual.renderTo(rendered);
+      buffer.clear();
+      actual.renderTo(buffer);
+      String state = actual.getGameState();
+      assertEquals(expected.getGameState(), state);
+      assertEquals(state, rendered.toString());
+      assertEquals(state, new String(buffer.array(), StandardCharsets.US_ASCII));
+      assertSame(state, actual.getGameState());
+      int count = expected.legalMoves(moves);
+      if (count == 0) {
+        break;
+      }
+      int move = moves[random.nextInt(count)];
+      Moves.apply(expected, move);
+      Moves.apply(actual, move);
+    }
+  }
+
+}
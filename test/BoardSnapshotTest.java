@@ -0,0 +1,130 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import solitaire.BitboardMarbleSolitaireModel;
+import solitaire.BoardSnapshot;
+import solitaire.Elements;
+import solitaire.MarbleSolitaireModel;
+import solitaire.MarbleSolitaireModelImpl;
+import solitaire.Moves;
+
+/**
+ * This class tests the methods of the BoardSnapshot class.
+ */
+public class BoardSnapshotTest {
+
+  /**
+   * Test that a snapshot describes the position of the model it was taken from.
+   */
+  @Test
+  public void testOf() {
+    MarbleSolitaireModelImpl model = new MarbleSolitaireModelImpl(3, 2, 3);
+    BoardSnapshot snapshot = BoardSnapshot.of(model);
+    assertEquals(model.getGameState(), snapshot.getGameState());
+    assertEquals(32, snapshot.getScore());
+    assertEquals(model.legalMoveCount(), snapshot.legalMoveCount());
+    assertEquals(model.positionHash(), snapshot.positionHash());
+    assertEquals(Elements.EMPTY, snapshot.getSlotAt(2, 3));
+    assertEquals(Elements.INVALID, snapshot.getSlotAt(0, 0));
+    assertEquals(snapshot, BoardSnapshot.of(new BitboardMarbleSolitaireModel(3, 2, 3)));
+  }
+
+  /**
+   * Test that a move returns a new snapshot and leaves the old one as it was.
+   */
+  @Test
+  public void testMoveIsPersistent() {
+    BoardSnapshot start = BoardSnapshot.of(new MarbleSolitaireModelImpl());
+    String startState = start.getGameState();
+    BoardSnapshot left = start.move(3, 1, 3, 3);
+    BoardSnapshot down = start.move(1, 3, 3, 3);
+    assertEquals(startState, start.getGameState());
+    assertEquals(32, start.getScore());
+    assertEquals(31, left.getScore());
+    assertEquals(Elements.EMPTY, left.getSlotAt(3, 1));
+    assertEquals(Elements.MARBLE, left.getSlotAt(1, 3));
+    assertEquals(Elements.EMPTY, down.getSlotAt(1, 3));
+    assertEquals(Elements.MARBLE, down.getSlotAt(3, 1));
+    assertNotEquals(left, down);
+  }
+
+  /**
+   * Test that an illegal move is rejected with the same message as MarbleSolitaireModelImpl.
+   */
+  @Test
+  public void testIllegalMove() {
+    BoardSnapshot start = BoardSnapshot.of(new MarbleSolitaireModelImpl());
+    int[][] moves = {{7, 3, 3, 3}, {0, 0, 2, 0}, {3, 1, 3, 2}, {1, 2, 3, 3}, {3, 2, 3, 1}};
+    for (int[] move : moves) {
+      try {
+        start.move(move[0], move[1], move[2], move[3]);
+        fail("expected the move to be rejected");
+      } catch (IllegalArgumentException e) {
+        assertEquals(new MarbleSolitaireModelImpl().tryMove(move[0], move[1], move[2], move[3])
+            .getMessage(), e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Test that snapshots of the same position reached in different ways are equal keys.
+   */
+  @Test
+  public void testUsableAsMapKey() {
+    BoardSnapshot first = BoardSnapshot.of(new MarbleSolitaireModelImpl(2, 0))
+        .move(2, 2, 2, 0).move(0, 2, 2, 2);
+    BoardSnapshot second = BoardSnapshot.of(new MarbleSolitaireModelImpl(2, 3))
+        .move(2, 1, 2, 3).move(0, 2, 2, 2);
+    assertEquals(first, second);
+    assertEquals(first.hashCode(), second.hashCode());
+    Map<BoardSnapshot, String> seen = new HashMap<>();
+    seen.put(first, "first");
+    assertEquals("first", seen.get(second));
+  }
+
+  /**
+   * Test that random games on a board big enough to need several levels of nodes play exactly
+   * like MarbleSolitaireModelImpl, and convert back into an equal model.
+   */
+  @Test
+  public void testRandomGamesMatchImpl() {
+    Random random = new Random(13);
+    int[] armThicknesses = {1, 3, 11, 51};
+    int[] moves = new int[256];
+    for (int armThickness : armThicknesses) {
+      MarbleSolitaireModel expected = new MarbleSolitaireModelImpl(armThickness);
+      BoardSnapshot snapshot = BoardSnapshot.of(expected);
+      BoardSnapshot start = snapshot;
+      for (int i = 0; i < 300 && expected.legalMoves(moves) > 0; i++) {
+        int move = moves[random.nextInt(Math.min(moves.length, expected.legalMoveCount()))];
+        Moves.apply(expected, move);
+        snapshot = snapshot.move(Moves.fromRow(move), Moves.fromCol(move), Moves.toRow(move),
+            Moves.toCol(move));
+        assertEquals(expected.getScore(), snapshot.getScore());
+        assertEquals(expected.legalMoveCount(), snapshot.legalMoveCount());
+        assertEquals(expected.positionHash(), snapshot.positionHash());
+      }
+      assertEquals(expected.getGameState(), snapshot.getGameState());
+      assertEquals(BoardSnapshot.of(expected), snapshot);
+      assertEquals(start, BoardSnapshot.of(new MarbleSolitaireModelImpl(armThickness)));
+
+      MarbleSolitaireModelImpl copy = snapshot.toModel();
+      assertEquals(expected.getGameState(), copy.getGameState());
+      assertEquals(expected.legalMoveCount(), copy.legalMoveCount());
+      assertEquals(expected.positionHash(), copy.positionHash());
+      if (copy.legalMoves(moves) > 0) {
+        Moves.apply(copy, moves[0]);
+        Moves.apply(expected, moves[0]);
+        assertEquals(expected.getGameState(), copy.getGameState());
+        assertEquals(expected.positionHash(), copy.positionHash());
+        assertTrue(copy.undo());
+      }
+    }
+  }
+}
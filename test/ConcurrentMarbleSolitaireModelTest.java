@@ -0,0 +1,210 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import solitaire.ConcurrentMarbleSolitaireModel;
+import solitaire.Elements;
+import solitaire.MarbleSolitaireModel;
+import solitaire.MarbleSolitaireModelImpl;
+import solitaire.MoveResult;
+import solitaire.Moves;
+
+/**
+ * This class tests the methods of the ConcurrentMarbleSolitaireModel class.
+ */
+public class ConcurrentMarbleSolitaireModelTest {
+
+  /**
+   * Test that the model plays exactly like the model it wraps.
+   */
+  @Test
+  public void testMatchesImpl() {
+    MarbleSolitaireModel expected = new MarbleSolitaireModelImpl();
+    MarbleSolitaireModel actual = new ConcurrentMarbleSolitaireModel();
+    assertEquals(expected.getGameState(), actual.getGameState());
+    assertEquals(expected.tryMove(1, 3, 3, 3), actual.tryMove(1, 3, 3, 3));
+    assertEquals(expected.tryMove(1, 3, 3, 3), actual.tryMove(1, 3, 3, 3));
+    assertEquals(expected.getGameState(), actual.getGameState());
+    assertEquals(expected.getScore(), actual.getScore());
+    assertEquals(expected.legalMoveCount(), actual.legalMoveCount());
+    assertEquals(expected.positionHash(), actual.positionHash());
+    assertEquals(Elements.EMPTY, actual.getSlotAt(1, 3));
+    assertTrue(actual.undo());
+    assertTrue(actual.redo());
+    assertFalse(actual.redo());
+    assertFalse(actual.isGameOver());
+  }
+
+  /**
+   * Test that the game state is kept until the board changes, and that rendering it writes the
+   * same characters.
+   */
+  @Test
+  public void testGameStateKeptUntilChange() throws IOException {
+    MarbleSolitaireModel model = new ConcurrentMarbleSolitaireModel();
+    String start = model.getGameState();
+    assertSame(start, model.getGameState());
+    model.move(1, 3, 3, 3);
+    String moved = model.getGameState();
+    assertFalse(start.equals(moved));
+    assertTrue(model.undo());
+    assertEquals(start, model.getGameState());
+    StringBuilder rendered = new StringBuilder();
+    model.renderTo(rendered);
+    assertEquals(start, rendered.toString());
+    ByteBuffer buffer = ByteBuffer.allocate(start.length());
+    model.renderTo(buffer);
+    assertEquals(start, new String(buffer.array(), StandardCharsets.US_ASCII));
+    assertTrue(model.redo());
+    assertEquals(moved, model.getGameState());
+  }
+
+  /**
+   * Test that the constructor will throw an exception when the game is null.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorNullGame() {
+    new ConcurrentMarbleSolitaireModel(null);
+  }
+
+  /**
+   * Test that getSlotAt still rejects positions outside the board.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testGetSlotAtOutOfBoard() {
+    new ConcurrentMarbleSolitaireModel().getSlotAt(7, 0);
+  }
+
+  /**
+   * Test that readers always see a board that agrees with the score while another thread keeps
+   * moving and taking moves back.
+   */
+  @Test
+  public void testReadersSeeConsistentPositions() throws InterruptedException {
+    ConcurrentMarbleSolitaireModel model =
+        new ConcurrentMarbleSolitaireModel(new MarbleSolitaireModelImpl(5));
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicInteger inconsistent = new AtomicInteger();
+    Thread[] readers = new Thread[3];
+    for (int i = 0; i < readers.length; i++) {
+      readers[i] = new Thread(() -> {
+        while (!done.get()) {
+          boolean consistent = model.read(game -> {
+            String state = game.getGameState();
+            long marbles = state.chars().filter(c -> c == 'O').count();
+            return marbles == game.getScore();
+          });
+          if (!consistent) {
+            inconsistent.incrementAndGet();
+          }
+        }
+      });
+      readers[i].start();
+    }
+    Random random = new Random(5);
+    int[] moves = new int[64];
+    for (int i = 0; i < 5000; i++) {
+      int count = model.legalMoves(moves);
+      if (count == 0 || random.nextInt(3) == 0) {
+        model.undo();
+      } else {
+        assertEquals(MoveResult.OK,
+            Moves.apply(model, moves[random.nextInt(Math.min(count, moves.length))]));
+      }
+    }
+    done.set(true);
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    assertEquals(0, inconsistent.get());
+  }
+
+  /**
+   * Test that readers racing on the hash of a fresh game, on boards with and without shared
+   * tables, all see the hash of its starting position.
+   */
+  @Test
+  public void testReadersSeeStartingHash() throws InterruptedException {
+    for (int arm : new int[]{3, 65}) {
+      long expected = new MarbleSolitaireModelImpl(arm).positionHash();
+      ConcurrentMarbleSolitaireModel model =
+          new ConcurrentMarbleSolitaireModel(new MarbleSolitaireModelImpl(arm));
+      AtomicInteger wrong = new AtomicInteger();
+      Thread[] readers = new Thread[4];
+      for (int i = 0; i < readers.length; i++) {
+        readers[i] = new Thread(() -> {
+          if (model.positionHash() != expected) {
+            wrong.incrementAndGet();
+          }
+        });
+        readers[i].start();
+      }
+      for (Thread reader : readers) {
+        reader.join();
+      }
+      assertEquals(0, wrong.get());
+    }
+  }
+
+  /**
+   * Test that game states rendered while another thread keeps moving and taking moves back are
+   * always of a board the game went through, and that the state kept at the end is current.
+   */
+  @Test
+  public void testRenderWhileMoving() throws InterruptedException {
+    ConcurrentMarbleSolitaireModel model =
+        new ConcurrentMarbleSolitaireModel(new MarbleSolitaireModelImpl(5));
+    MarbleSolitaireModelImpl mirror = new MarbleSolitaireModelImpl(5);
+    Set<String> boards = ConcurrentHashMap.newKeySet();
+    boards.add(mirror.getGameState());
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicInteger torn = new AtomicInteger();
+    Thread[] readers = new Thread[3];
+    for (int i = 0; i < readers.length; i++) {
+      readers[i] = new Thread(() -> {
+        ByteBuffer buffer = ByteBuffer.allocate(mirror.getGameState().length());
+        while (!done.get()) {
+          buffer.clear();
+          model.renderTo(buffer);
+          if (!boards.contains(model.getGameState())
+              || !boards.contains(new String(buffer.array(), StandardCharsets.US_ASCII))) {
+            torn.incrementAndGet();
+          }
+        }
+      });
+      readers[i].start();
+    }
+    Random random = new Random(25);
+    int[] moves = new int[64];
+    for (int i = 0; i < 5000; i++) {
+      int count = mirror.legalMoves(moves);
+      if (count == 0 || random.nextInt(3) == 0) {
+        if (mirror.undo()) {
+          boards.add(mirror.getGameState());
+          assertTrue(model.undo());
+        }
+      } else {
+        int move = moves[random.nextInt(Math.min(count, moves.length))];
+        Moves.apply(mirror, move);
+        boards.add(mirror.getGameState());
+        assertEquals(MoveResult.OK, Moves.apply(model, move));
+      }
+    }
+    done.set(true);
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    assertEquals(0, torn.get());
+    assertEquals(mirror.getGameState(), model.getGameState());
+  }
+}
@@ -0,0 +1,189 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import solitaire.BitboardMarbleSolitaireModel;
+import solitaire.EndgameDatabase;
+import solitaire.HintEngine;
+import solitaire.MarbleSolitaireModel;
+import solitaire.MarbleSolitaireModelImpl;
+import solitaire.MoveResult;
+import solitaire.Moves;
+
+/**
+ * This class tests the methods of the EndgameDatabase class.
+ */
+public class EndgameDatabaseTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Follow the solver down to 12 marbles, then play random moves down to 8 marbles, or until the
+   * game is over. When asked to, the random moves are only taken if the game stays solvable.
+   */
+  private static void playEndgame(MarbleSolitaireModel model, HintEngine hints,
+      boolean keepSolvable, Random random) {
+    while (model.getScore() > 12) {
+      Moves.apply(model, hints.hint(model));
+    }
+    int[] moves = new int[128];
+    while (model.getScore() > 8) {
+      int count = model.legalMoves(moves);
+      if (count == 0) {
+        return;
+      }
+      int first = random.nextInt(count);
+      for (int i = 0; i < count; i++) {
+        Moves.apply(model, moves[(first + i) % count]);
+        if (!keepSolvable || i == count - 1 || hints.isSolvable(model)) {
+          break;
+        }
+        model.undo();
+      }
+    }
+  }
+
+  /**
+   * Test that the database agrees with the solver on endgames of the regular board, for both
+   * models, and that its moves keep solvable positions solvable down to the last marble.
+   */
+  @Test
+  public void testMatchesSolver() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("endgames");
+    long size = EndgameDatabase.generate(3, 8, path);
+    HintEngine hints = new HintEngine();
+    Random random = new Random(23);
+    try (EndgameDatabase endgames = EndgameDatabase.open(path)) {
+      assertEquals(size, endgames.size());
+      assertEquals(3, endgames.getArmThickness());
+      assertEquals(8, endgames.getMaxMarbles());
+      int solvable = 0;
+      for (int game = 0; game < 100; game++) {
+        MarbleSolitaireModel model = game % 2 == 0 ? new MarbleSolitaireModelImpl()
+            : new BitboardMarbleSolitaireModel();
+        playEndgame(model, hints, game % 4 < 2, random);
+        if (!endgames.covers(model)) {
+          continue;
+        }
+        boolean expected = hints.isSolvable(model);
+        assertEquals(expected, endgames.isSolvable(model));
+        if (expected) {
+          solvable++;
+          while (model.getScore() > 1) {
+            int move = endgames.solvingMove(model);
+            assertEquals(MoveResult.OK, Moves.apply(model, move));
+            assertTrue(endgames.isSolvable(model));
+          }
+        } else {
+          assertEquals(-1, endgames.solvingMove(model));
+        }
+      }
+      assertTrue(solvable > 0);
+    }
+  }
+
+  /**
+   * Test the smallest board, where a single marble on any cell and a marble that can jump over
+   * the center are the only solvable positions, so no game can be won.
+   */
+  @Test
+  public void testSmallestBoard() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("small");
+    assertEquals(3, EndgameDatabase.generate(1, 100, path));
+    try (EndgameDatabase endgames = EndgameDatabase.open(path)) {
+      assertEquals(5, endgames.getMaxMarbles());
+      MarbleSolitaireModelImpl model = new MarbleSolitaireModelImpl(1, 0, 1);
+      assertFalse(endgames.isSolvable(model));
+      assertEquals(-1, endgames.solvingMove(model));
+      model.move(2, 1, 0, 1);
+      assertFalse(endgames.isSolvable(model));
+      assertFalse(endgames.isSolvable(new MarbleSolitaireModelImpl(1)));
+    }
+  }
+
+  /**
+   * Test that a position the database does not cover is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotCovered() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("endgames");
+    EndgameDatabase.generate(3, 4, path);
+    try (EndgameDatabase endgames = EndgameDatabase.open(path)) {
+      assertFalse(endgames.covers(new MarbleSolitaireModelImpl()));
+      assertFalse(endgames.covers(new MarbleSolitaireModelImpl(1)));
+      endgames.isSolvable(new MarbleSolitaireModelImpl());
+    }
+  }
+
+  /**
+   * Test that positions can no longer be looked up once the database is closed.
+   */
+  @Test
+  public void testLookupAfterClose() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("small");
+    EndgameDatabase.generate(1, 100, path);
+    EndgameDatabase endgames = EndgameDatabase.open(path);
+    MarbleSolitaireModelImpl model = new MarbleSolitaireModelImpl(1, 0, 1);
+    assertFalse(endgames.isSolvable(model));
+    endgames.close();
+    try {
+      endgames.isSolvable(model);
+      fail("a closed database should not be read");
+    } catch (IllegalStateException e) {
+      assertEquals("The endgame database is closed", e.getMessage());
+    }
+    try {
+      endgames.solvingMove(model);
+      fail("a closed database should not be read");
+    } catch (IllegalStateException e) {
+      assertEquals("The endgame database is closed", e.getMessage());
+    }
+  }
+
+  /**
+   * Test that a file that is not an endgame database is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testOpenInvalidFile() throws IOException {
+    Path path = folder.newFile("other").toPath();
+    Files.write(path, new byte[64]);
+    EndgameDatabase.open(path);
+  }
+
+  /**
+   * Test that a truncated database is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testOpenTruncatedFile() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("endgames");
+    EndgameDatabase.generate(3, 4, path);
+    byte[] bytes = Files.readAllBytes(path);
+    Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+    EndgameDatabase.open(path);
+  }
+
+  /**
+   * Test that generate rejects boards the solver does not support, and empty endgames.
+   */
+  @Test
+  public void testGenerateInvalid() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("endgames");
+    for (int[] arguments : new int[][] {{5, 4}, {3, 0}}) {
+      try {
+        EndgameDatabase.generate(arguments[0], arguments[1], path);
+        fail("the arguments should be rejected");
+      } catch (IllegalArgumentException e) {
+        assertFalse(Files.exists(path));
+      }
+    }
+  }
+}
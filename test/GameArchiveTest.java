@@ -0,0 +1,159 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import solitaire.GameArchive;
+import solitaire.GameCodec;
+import solitaire.MarbleSolitaireModelImpl;
+import solitaire.Moves;
+
+/**
+ * This class tests the methods of the GameArchive class.
+ */
+public class GameArchiveTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static MarbleSolitaireModelImpl randomGame(Random random) {
+    int[] moves = new int[64];
+    MarbleSolitaireModelImpl game = new MarbleSolitaireModelImpl(random.nextBoolean() ? 3 : 5);
+    int length = random.nextInt(40);
+    for (int i = 0; i < length && game.legalMoves(moves) > 0; i++) {
+      Moves.apply(game, moves[random.nextInt(Math.min(moves.length, game.legalMoveCount()))]);
+    }
+    return game;
+  }
+
+  private static void assertSameGame(MarbleSolitaireModelImpl expected,
+      MarbleSolitaireModelImpl actual) {
+    assertEquals(expected.getGameState(), actual.getGameState());
+    assertEquals(expected.getScore(), actual.getScore());
+    assertEquals(expected.legalMoveCount(), actual.legalMoveCount());
+    assertEquals(expected.positionHash(), actual.positionHash());
+  }
+
+  /**
+   * Test that games are given consecutive ids and read back in any order, across many small
+   * segments, and after the archive is closed and opened again.
+   */
+  @Test
+  public void testAppendAndRead() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("games");
+    Random random = new Random(17);
+    List<MarbleSolitaireModelImpl> games = new ArrayList<>();
+    try (GameArchive archive = GameArchive.open(path, 512)) {
+      for (int i = 0; i < 200; i++) {
+        MarbleSolitaireModelImpl game = randomGame(random);
+        games.add(game);
+        assertEquals(i, archive.append(game));
+        //read while writing, so that segments are mapped before they are full
+        int id = random.nextInt(i + 1);
+        assertSameGame(games.get(id), archive.read(id));
+      }
+      assertEquals(200, archive.size());
+    }
+    try (GameArchive archive = GameArchive.open(path, 512)) {
+      assertEquals(200, archive.size());
+      for (int id = 199; id >= 0; id--) {
+        assertSameGame(games.get(id), archive.read(id));
+      }
+      MarbleSolitaireModelImpl game = randomGame(random);
+      assertEquals(200, archive.append(game));
+      assertSameGame(game, archive.read(200));
+    }
+  }
+
+  /**
+   * Test that a game read from the archive keeps its moves to undo.
+   */
+  @Test
+  public void testUndoAfterRead() throws IOException {
+    try (GameArchive archive = GameArchive.open(folder.getRoot().toPath().resolve("games"))) {
+      MarbleSolitaireModelImpl game = new MarbleSolitaireModelImpl();
+      game.move(1, 3, 3, 3);
+      long id = archive.append(game);
+      MarbleSolitaireModelImpl read = archive.read(id);
+      read.undo();
+      assertSameGame(new MarbleSolitaireModelImpl(), read);
+    }
+  }
+
+  /**
+   * Test that reading an id that was never appended throws an exception.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownId() throws IOException {
+    try (GameArchive archive = GameArchive.open(folder.getRoot().toPath().resolve("games"))) {
+      archive.append(new MarbleSolitaireModelImpl());
+      archive.read(1);
+    }
+  }
+
+  /**
+   * Test that a game bigger than a segment is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testGameBiggerThanSegment() throws IOException {
+    try (GameArchive archive = GameArchive.open(folder.getRoot().toPath().resolve("games"), 64)) {
+      archive.append(new MarbleSolitaireModelImpl(11));
+    }
+  }
+
+  /**
+   * Test that a record and an index entry left half written when the archive was last used are
+   * written over by the next game appended.
+   */
+  @Test
+  public void testTornRecordIsWrittenOver() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("games");
+    Path indexPath = folder.getRoot().toPath().resolve("games.idx");
+    Random random = new Random(19);
+    try (GameArchive archive = GameArchive.open(path)) {
+      archive.append(randomGame(random));
+      archive.append(randomGame(random));
+    }
+    long dataSize = Files.size(path);
+    Files.write(path, new byte[] {0, 0, 0, 9, 1}, StandardOpenOption.APPEND);
+    Files.write(indexPath, new byte[] {0, 0, 0}, StandardOpenOption.APPEND);
+    try (GameArchive archive = GameArchive.open(path)) {
+      assertEquals(2, archive.size());
+      MarbleSolitaireModelImpl game = randomGame(random);
+      assertEquals(2, archive.append(game));
+      assertSameGame(game, archive.read(2));
+      assertEquals(dataSize + Integer.BYTES + GameCodec.encodedSize(game), Files.size(path));
+      assertEquals(3 * Long.BYTES, Files.size(indexPath));
+    }
+  }
+
+  /**
+   * Test that reading a game after the archive is closed throws an exception, even though the
+   * segment that holds it was mapped while the archive was open.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testReadAfterClose() throws IOException {
+    GameArchive archive = GameArchive.open(folder.getRoot().toPath().resolve("games"));
+    long id = archive.append(new MarbleSolitaireModelImpl());
+    archive.read(id);
+    archive.close();
+    archive.read(id);
+  }
+
+  /**
+   * Test that appending a game after the archive is closed throws an exception.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testAppendAfterClose() throws IOException {
+    GameArchive archive = GameArchive.open(folder.getRoot().toPath().resolve("games"));
+    archive.close();
+    archive.append(new MarbleSolitaireModelImpl());
+  }
+}
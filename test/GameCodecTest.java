@@ -0,0 +1,186 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import org.junit.Test;
+import solitaire.BoardSnapshot;
+import solitaire.GameCodec;
+import solitaire.MarbleSolitaireModel;
+import solitaire.MarbleSolitaireModelImpl;
+import solitaire.Moves;
+
+/**
+ * This class tests the methods of the GameCodec class.
+ */
+public class GameCodecTest {
+
+  private static MarbleSolitaireModelImpl roundTrip(MarbleSolitaireModelImpl model,
+      ByteOrder order) {
+    ByteBuffer buffer = ByteBuffer.allocate(GameCodec.encodedSize(model) + 3).order(order);
+    buffer.put((byte) 7);
+    GameCodec.encode(model, buffer);
+    assertEquals(GameCodec.encodedSize(model) + 1, buffer.position());
+    buffer.flip();
+    buffer.get();
+    MarbleSolitaireModelImpl decoded = GameCodec.decode(buffer);
+    assertEquals(0, buffer.remaining());
+    assertEquals(order, buffer.order());
+    return decoded;
+  }
+
+  private static void assertSameGame(MarbleSolitaireModel expected, MarbleSolitaireModel actual) {
+    assertEquals(expected.getGameState(), actual.getGameState());
+    assertEquals(expected.getScore(), actual.getScore());
+    assertEquals(expected.legalMoveCount(), actual.legalMoveCount());
+    assertEquals(expected.positionHash(), actual.positionHash());
+  }
+
+  /**
+   * Test that a new game is written in a few bytes and read back as the same game.
+   */
+  @Test
+  public void testNewGame() {
+    MarbleSolitaireModelImpl model = new MarbleSolitaireModelImpl(3, 2, 3);
+    assertEquals(16, GameCodec.encodedSize(model));
+    MarbleSolitaireModelImpl decoded = roundTrip(model, ByteOrder.BIG_ENDIAN);
+    assertSameGame(model, decoded);
+    assertFalse(decoded.undo());
+  }
+
+  /**
+   * Test that the moves are read back, so that the moves made can be undone and the moves taken
+   * back can be made again, down to the starting position.
+   */
+  @Test
+  public void testMovesAreRestored() {
+    Random random = new Random(3);
+    int[] moves = new int[64];
+    MarbleSolitaireModelImpl model = new MarbleSolitaireModelImpl(5, 0, 5);
+    for (int i = 0; i < 30 && model.legalMoves(moves) > 0; i++) {
+      Moves.apply(model, moves[random.nextInt(Math.min(moves.length, model.legalMoveCount()))]);
+    }
+    model.undo();
+    model.undo();
+    MarbleSolitaireModelImpl decoded = roundTrip(model, ByteOrder.LITTLE_ENDIAN);
+    assertSameGame(model, decoded);
+    assertTrue(decoded.redo());
+    assertTrue(model.redo());
+    assertSameGame(model, decoded);
+    while (decoded.undo()) {
+      assertTrue(model.undo());
+      assertSameGame(model, decoded);
+    }
+    assertSameGame(new MarbleSolitaireModelImpl(5, 0, 5), decoded);
+  }
+
+  /**
+   * Test that a game continued from a snapshot, whose empty starting cell is unknown, is read
+   * back with the same hashes.
+   */
+  @Test
+  public void testGameFromSnapshot() {
+    MarbleSolitaireModelImpl model =
+        BoardSnapshot.of(new MarbleSolitaireModelImpl()).move(1, 3, 3, 3).toModel();
+    model.move(2, 1, 2, 3);
+    MarbleSolitaireModelImpl decoded = roundTrip(model, ByteOrder.BIG_ENDIAN);
+    assertSameGame(model, decoded);
+    assertTrue(decoded.undo());
+    assertTrue(model.undo());
+    assertSameGame(model, decoded);
+  }
+
+  /**
+   * Test that a big board is written in far fewer bytes than its game state.
+   */
+  @Test
+  public void testBigBoardIsCompact() {
+    MarbleSolitaireModelImpl model = new MarbleSolitaireModelImpl(201);
+    model.move(199, 201, 201, 201);
+    assertTrue(GameCodec.encodedSize(model) * 16 < model.getGameState().length());
+    assertSameGame(model, roundTrip(model, ByteOrder.BIG_ENDIAN));
+  }
+
+  /**
+   * Test that bytes of another version are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownVersion() {
+    GameCodec.decode(ByteBuffer.wrap(new byte[] {2, 3, 0}));
+  }
+
+  /**
+   * Test that an invalid arm thickness is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadArmThickness() {
+    GameCodec.decode(ByteBuffer.wrap(new byte[] {1, 4, 0}));
+  }
+
+  /**
+   * Test that a truncated game is rejected.
+   */
+  @Test(expected = BufferUnderflowException.class)
+  public void testTruncated() {
+    MarbleSolitaireModelImpl model = new MarbleSolitaireModelImpl();
+    ByteBuffer buffer = ByteBuffer.allocate(GameCodec.encodedSize(model));
+    GameCodec.encode(model, buffer);
+    buffer.flip().limit(buffer.limit() - 1);
+    GameCodec.decode(buffer);
+  }
+
+  /**
+   * Test that a game whose number of legal moves does not match its board is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongLegalMoveCount() {
+    MarbleSolitaireModelImpl model = new MarbleSolitaireModelImpl(3, 2, 3);
+    ByteBuffer buffer = ByteBuffer.allocate(GameCodec.encodedSize(model));
+    GameCodec.encode(model, buffer);
+    //the version, the arm thickness, the flags and the empty cell come before the count
+    assertEquals(model.legalMoveCount(), buffer.get(5));
+    buffer.put(5, (byte) (model.legalMoveCount() + 1));
+    GameCodec.decode(buffer.flip());
+  }
+
+  /**
+   * Test that a game whose moves do not lead from its starting position to its board is
+   * rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testMovesDoNotLeadToBoard() {
+    MarbleSolitaireModelImpl model = new MarbleSolitaireModelImpl();
+    model.move(1, 3, 3, 3);
+    ByteBuffer buffer = ByteBuffer.allocate(GameCodec.encodedSize(model));
+    GameCodec.encode(model, buffer);
+    //start the game from the cell above the center instead
+    assertEquals(3, buffer.get(3));
+    buffer.put(3, (byte) 2);
+    GameCodec.decode(buffer.flip());
+  }
+
+  /**
+   * Test that a short header that claims a huge board and move log is rejected before anything
+   * is allocated for them.
+   */
+  @Test(expected = BufferUnderflowException.class)
+  public void testHostileHeader() {
+    //version 1, arm thickness 16383, empty cell (16383, 16383), no legal moves, 500000000 moves
+    GameCodec.decode(ByteBuffer.wrap(new byte[] {1, (byte) 0xFF, 0x7F, 1, (byte) 0xFF, 0x7F,
+        (byte) 0xFF, 0x7F, 0, (byte) 0x80, (byte) 0xCA, (byte) 0xB5, (byte) 0xEE, 0x01, 0, 0, 0,
+        0, 0}));
+  }
+
+  /**
+   * Test that a header of a huge board with no moves, but without the board, is rejected before
+   * the board is allocated.
+   */
+  @Test(expected = BufferUnderflowException.class)
+  public void testHostileBoardSize() {
+    GameCodec.decode(ByteBuffer.wrap(new byte[] {1, (byte) 0xFF, 0x7F, 1, (byte) 0xFF, 0x7F,
+        (byte) 0xFF, 0x7F, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}));
+  }
+}
@@ -0,0 +1,146 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import solitaire.GameSessionRegistry;
+import solitaire.MarbleSolitaireModelImpl;
+import solitaire.MoveResult;
+import solitaire.SessionStats;
+
+/**
+ * This class tests the methods of the GameSessionRegistry class.
+ */
+public class GameSessionRegistryTest {
+
+  private GameSessionRegistry registry;
+
+  /**
+   * Set up an empty registry.
+   */
+  @Before
+  public void setUp() {
+    this.registry = new GameSessionRegistry();
+  }
+
+  /**
+   * Close the registry.
+   */
+  @After
+  public void tearDown() {
+    this.registry.close();
+  }
+
+  /**
+   * Test that games are created with different ids, can be found, and can be evicted once.
+   */
+  @Test
+  public void testCreateAndEvict() {
+    long first = this.registry.create();
+    long second = this.registry.create(5);
+    assertTrue(first != second);
+    assertTrue(this.registry.contains(first));
+    assertEquals(2, this.registry.size());
+    assertTrue(this.registry.evict(first));
+    assertFalse(this.registry.evict(first));
+    assertFalse(this.registry.contains(first));
+    SessionStats stats = this.registry.getStats();
+    assertEquals(1, stats.getGames());
+    assertEquals(2, stats.getCreated());
+    assertEquals(1, stats.getEvicted());
+  }
+
+  /**
+   * Test that work cannot be submitted for a game that is not hosted.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testMoveUnknownGame() {
+    this.registry.move(42, 1, 3, 3, 3);
+  }
+
+  /**
+   * Test that work cannot be submitted once the registry is closed, and that the work submitted
+   * before still completed.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testMoveAfterClose() {
+    long id = this.registry.create();
+    CompletableFuture<MoveResult> before = this.registry.move(id, 1, 3, 3, 3);
+    this.registry.close();
+    assertTrue(before.isDone());
+    this.registry.move(id, 4, 3, 2, 3);
+  }
+
+  /**
+   * Test that moves are made in the hosted game and counted.
+   */
+  @Test
+  public void testMove() {
+    long id = this.registry.create(new MarbleSolitaireModelImpl(3));
+    assertEquals(MoveResult.OK, this.registry.move(id, 1, 3, 3, 3).join());
+    assertEquals(MoveResult.TO_OCCUPIED, this.registry.move(id, 1, 3, 3, 3).join());
+    assertEquals(31, (int) this.registry.submit(id, game -> game.getScore()).join());
+    SessionStats stats = this.registry.getStats();
+    assertEquals(1, stats.getMoves());
+    assertEquals(1, stats.getRejectedMoves());
+    assertEquals(3, stats.getTasks());
+  }
+
+  /**
+   * Test that work on the same game never runs at the same time, by racing many tasks that
+   * increment a counter without any synchronization of their own.
+   */
+  @Test
+  public void testTasksOnOneGameAreSerialized() {
+    long id = this.registry.create();
+    int[] counter = new int[1];
+    List<CompletableFuture<Integer>> futures = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      futures.add(this.registry.submit(id, game -> {
+        int value = counter[0];
+        Thread.yield();
+        counter[0] = value + 1;
+        return value;
+      }));
+    }
+    futures.forEach(CompletableFuture::join);
+    assertEquals(2000, counter[0]);
+    SessionStats stats = this.registry.getStats();
+    assertEquals(2000, stats.getTasks());
+    assertTrue(stats.getContentionRate() <= 1);
+  }
+
+  /**
+   * Test that many games played at once each end up in the same state as when played alone.
+   */
+  @Test
+  public void testManyGamesAtOnce() {
+    int games = 500;
+    long[] ids = new long[games];
+    for (int i = 0; i < games; i++) {
+      ids[i] = this.registry.create();
+    }
+    int[][] moves = {{1, 3, 3, 3}, {2, 1, 2, 3}, {0, 2, 2, 2}, {0, 4, 0, 2}};
+    List<CompletableFuture<MoveResult>> futures = new ArrayList<>();
+    for (int[] move : moves) {
+      for (long id : ids) {
+        futures.add(this.registry.move(id, move[0], move[1], move[2], move[3]));
+      }
+    }
+    futures.forEach(future -> assertEquals(MoveResult.OK, future.join()));
+    MarbleSolitaireModelImpl expected = new MarbleSolitaireModelImpl();
+    for (int[] move : moves) {
+      expected.move(move[0], move[1], move[2], move[3]);
+    }
+    for (long id : ids) {
+      assertEquals(expected.getGameState(),
+          this.registry.submit(id, game -> game.getGameState()).join());
+    }
+    assertEquals(games * moves.length, this.registry.getStats().getMoves());
+  }
+}
@@ -0,0 +1,91 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+import solitaire.HintEngine;
+import solitaire.MarbleSolitaireModel;
+import solitaire.MarbleSolitaireModelImpl;
+import solitaire.MoveResult;
+import solitaire.Moves;
+
+/**
+ * This class tests the methods of the HintEngine class.
+ */
+public class HintEngineTest {
+
+  /**
+   * Find the lowest final score of a position by trying every sequence of moves.
+   */
+  private static int bruteForceBestScore(MarbleSolitaireModel model) {
+    int[] moves = new int[64];
+    int count = model.legalMoves(moves);
+    int best = model.getScore();
+    for (int i = 0; i < count && best > 1; i++) {
+      Moves.apply(model, moves[i]);
+      best = Math.min(best, bruteForceBestScore(model));
+      model.undo();
+    }
+    return best;
+  }
+
+  /**
+   * Test that following the hints from the opening of the regular board solves it.
+   */
+  @Test
+  public void testHintsSolveTheOpening() {
+    HintEngine engine = new HintEngine();
+    MarbleSolitaireModel model = new MarbleSolitaireModelImpl();
+    assertTrue(engine.isSolvable(model));
+    while (!model.isGameOver()) {
+      assertEquals(MoveResult.OK, Moves.apply(model, engine.hint(model)));
+    }
+    assertEquals(1, model.getScore());
+    assertEquals(-1, engine.hint(model));
+  }
+
+  /**
+   * Test that the best score and the hint agree with a brute-force search on random positions
+   * late in the game, solvable or not, even with a cache too small to hold them.
+   */
+  @Test
+  public void testBestScoreMatchesBruteForce() {
+    Random random = new Random(31);
+    int[] moves = new int[64];
+    HintEngine engine = new HintEngine(64);
+    for (int game = 0; game < 30; game++) {
+      MarbleSolitaireModel model = new MarbleSolitaireModelImpl();
+      while (model.getScore() > 12 && model.legalMoves(moves) > 0) {
+        Moves.apply(model, moves[random.nextInt(Math.min(moves.length, model.legalMoveCount()))]);
+      }
+      int expected = bruteForceBestScore(model);
+      assertEquals(expected, engine.bestScore(model));
+      int hint = engine.hint(model);
+      if (model.isGameOver()) {
+        assertEquals(-1, hint);
+      } else {
+        Moves.apply(model, hint);
+        assertEquals(expected, bruteForceBestScore(model));
+      }
+    }
+  }
+
+  /**
+   * Test that the smallest board, where no move can be made, has no hint.
+   */
+  @Test
+  public void testSmallestBoard() {
+    HintEngine engine = new HintEngine();
+    MarbleSolitaireModel model = new MarbleSolitaireModelImpl(1);
+    assertEquals(-1, engine.hint(model));
+    assertEquals(4, engine.bestScore(model));
+  }
+
+  /**
+   * Test that boards with more than 64 valid cells are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testBoardTooLarge() {
+    new HintEngine().hint(new MarbleSolitaireModelImpl(5));
+  }
+}
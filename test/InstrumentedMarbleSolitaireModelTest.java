@@ -0,0 +1,199 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import solitaire.InstrumentedMarbleSolitaireModel;
+import solitaire.MarbleSolitaireModel;
+import solitaire.MarbleSolitaireModelImpl;
+import solitaire.ModelMetrics;
+import solitaire.ModelOperation;
+import solitaire.MoveResult;
+
+/**
+ * This class tests the methods of the InstrumentedMarbleSolitaireModel and ModelMetrics classes.
+ */
+public class InstrumentedMarbleSolitaireModelTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Test that the model plays exactly like the model it wraps.
+   */
+  @Test
+  public void testMatchesImpl() {
+    MarbleSolitaireModel expected = new MarbleSolitaireModelImpl();
+    MarbleSolitaireModel actual = new InstrumentedMarbleSolitaireModel(
+        new MarbleSolitaireModelImpl(), new ModelMetrics());
+    assertEquals(expected.getGameState(), actual.getGameState());
+    assertEquals(expected.tryMove(1, 3, 3, 3), actual.tryMove(1, 3, 3, 3));
+    assertEquals(expected.tryMove(1, 3, 3, 3), actual.tryMove(1, 3, 3, 3));
+    assertEquals(expected.getGameState(), actual.getGameState());
+    assertEquals(expected.getScore(), actual.getScore());
+    assertEquals(expected.legalMoveCount(), actual.legalMoveCount());
+    assertEquals(expected.positionHash(), actual.positionHash());
+    assertEquals(expected.getSlotAt(1, 3), actual.getSlotAt(1, 3));
+    assertTrue(actual.undo());
+    assertTrue(actual.redo());
+    assertFalse(actual.redo());
+    assertFalse(actual.isGameOver());
+  }
+
+  /**
+   * Test that every measured call is counted once, with a latency in the histogram.
+   */
+  @Test
+  public void testCounts() throws IOException {
+    ModelMetrics metrics = new ModelMetrics();
+    MarbleSolitaireModel model = new InstrumentedMarbleSolitaireModel(
+        new MarbleSolitaireModelImpl(), metrics);
+    model.move(1, 3, 3, 3);
+    model.tryMove(4, 3, 2, 3);
+    model.undo();
+    model.undo();
+    model.redo();
+    model.isGameOver();
+    model.legalMoveCount();
+    model.legalMoves(new int[4]);
+    model.getGameState();
+    model.getGameState();
+    model.renderTo(new StringBuilder());
+    model.renderTo(ByteBuffer.allocate(97));
+    model.getScore();
+    assertEquals(1, metrics.getCount(ModelOperation.MOVE));
+    assertEquals(1, metrics.getCount(ModelOperation.TRY_MOVE));
+    assertEquals(2, metrics.getCount(ModelOperation.UNDO));
+    assertEquals(1, metrics.getCount(ModelOperation.REDO));
+    assertEquals(1, metrics.getCount(ModelOperation.IS_GAME_OVER));
+    assertEquals(1, metrics.getCount(ModelOperation.LEGAL_MOVE_COUNT));
+    assertEquals(1, metrics.getCount(ModelOperation.LEGAL_MOVES));
+    assertEquals(2, metrics.getCount(ModelOperation.GET_GAME_STATE));
+    assertEquals(2, metrics.getCount(ModelOperation.RENDER_TO));
+    for (ModelOperation operation : ModelOperation.values()) {
+      long total = 0;
+      for (long count : metrics.getLatencyHistogram(operation)) {
+        total += count;
+      }
+      assertEquals(metrics.getCount(operation), total);
+    }
+    assertEquals(0, metrics.getRejections());
+    metrics.reset();
+    assertEquals(0, metrics.getCount(ModelOperation.GET_GAME_STATE));
+    assertEquals(0, metrics.getTotalNanos(ModelOperation.GET_GAME_STATE));
+    assertEquals(0, metrics.getLatencyPercentile(ModelOperation.GET_GAME_STATE, 0.5));
+  }
+
+  /**
+   * Test that rejected moves are counted by reason, and that move still throws.
+   */
+  @Test
+  public void testRejections() {
+    ModelMetrics metrics = new ModelMetrics();
+    MarbleSolitaireModel model = new InstrumentedMarbleSolitaireModel(
+        new MarbleSolitaireModelImpl(), metrics);
+    assertEquals(MoveResult.TO_OCCUPIED, model.tryMove(0, 3, 2, 3));
+    assertEquals(MoveResult.TO_OCCUPIED, model.tryMove(0, 3, 2, 3));
+    assertEquals(MoveResult.DIAGONAL, model.tryMove(1, 2, 3, 3));
+    try {
+      model.move(7, 3, 3, 3);
+      fail("the move should have been rejected");
+    } catch (IllegalArgumentException e) {
+      assertEquals(MoveResult.FROM_OUT_OF_BOUNDS.getMessage(), e.getMessage());
+    }
+    assertEquals(2, metrics.getRejections(MoveResult.TO_OCCUPIED));
+    assertEquals(1, metrics.getRejections(MoveResult.DIAGONAL));
+    assertEquals(1, metrics.getRejections(MoveResult.FROM_OUT_OF_BOUNDS));
+    assertEquals(0, metrics.getRejections(MoveResult.OK));
+    assertEquals(4, metrics.getRejections());
+    assertEquals(1, metrics.getCount(ModelOperation.MOVE));
+    assertEquals(3, metrics.getCount(ModelOperation.TRY_MOVE));
+  }
+
+  /**
+   * Test that percentiles are read from the latency histogram.
+   */
+  @Test
+  public void testPercentile() {
+    ModelMetrics metrics = new ModelMetrics();
+    MarbleSolitaireModel model = new InstrumentedMarbleSolitaireModel(
+        new MarbleSolitaireModelImpl(51, 75, 75), metrics);
+    for (int i = 0; i < 100; i++) {
+      model.isGameOver();
+    }
+    long median = metrics.getLatencyPercentile(ModelOperation.IS_GAME_OVER, 0.5);
+    long max = metrics.getLatencyPercentile(ModelOperation.IS_GAME_OVER, 1);
+    assertTrue(median <= max);
+    assertTrue(max >= metrics.getMeanNanos(ModelOperation.IS_GAME_OVER) / 2);
+    assertTrue(metrics.getTotalNanos(ModelOperation.IS_GAME_OVER) > 0);
+  }
+
+  /**
+   * Test that a percentile outside 0 and 1 is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testPercentileInvalidFraction() {
+    new ModelMetrics().getLatencyPercentile(ModelOperation.MOVE, 1.5);
+  }
+
+  /**
+   * Test that the constructor will throw an exception when the game is null.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorNullGame() {
+    new InstrumentedMarbleSolitaireModel(null, new ModelMetrics());
+  }
+
+  /**
+   * Test that the constructor will throw an exception when the metrics are null.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorNullMetrics() {
+    new InstrumentedMarbleSolitaireModel(new MarbleSolitaireModelImpl(), null);
+  }
+
+  /**
+   * Test that operations and rejected moves are recorded by the flight recorder.
+   */
+  @Test
+  public void testFlightRecorderEvents() throws Exception {
+    MarbleSolitaireModel model = new InstrumentedMarbleSolitaireModel(
+        new MarbleSolitaireModelImpl(), new ModelMetrics());
+    Path file = folder.newFile("model.jfr").toPath();
+    try (Recording recording = new Recording()) {
+      recording.enable("solitaire.ModelOperation").withoutThreshold();
+      recording.enable("solitaire.MoveRejected");
+      recording.start();
+      model.tryMove(1, 3, 3, 3);
+      model.tryMove(1, 3, 3, 3);
+      recording.stop();
+      recording.dump(file);
+    }
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+    int operations = 0;
+    int rejected = 0;
+    for (RecordedEvent event : events) {
+      String name = event.getEventType().getName();
+      if (name.equals("solitaire.ModelOperation")) {
+        assertEquals("TRY_MOVE", event.getString("operation"));
+        assertEquals(7, event.getInt("boardSize"));
+        operations++;
+      } else if (name.equals("solitaire.MoveRejected")) {
+        assertEquals("TO_OCCUPIED", event.getString("reason"));
+        assertEquals(1, event.getInt("fromRow"));
+        rejected++;
+      }
+    }
+    assertEquals(2, operations);
+    assertEquals(1, rejected);
+  }
+}
@@ -0,0 +1,123 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+import solitaire.BitboardMarbleSolitaireModel;
+import solitaire.LegalMoveCursor;
+import solitaire.MarbleSolitaireModel;
+import solitaire.MarbleSolitaireModelImpl;
+import solitaire.MoveResult;
+import solitaire.Moves;
+
+/**
+ * This class tests the encoded moves of the Moves class, the legalMoves method of the models and
+ * the LegalMoveCursor class.
+ */
+public class LegalMoveCursorTest {
+
+  /**
+   * Test that an encoded move can be decoded back, including large rows and columns.
+   */
+  @Test
+  public void testEncodeDecode() {
+    int move = Moves.encode(3, 1, Moves.RIGHT);
+    assertEquals(3, Moves.fromRow(move));
+    assertEquals(1, Moves.fromCol(move));
+    assertEquals(Moves.RIGHT, Moves.direction(move));
+    assertEquals(3, Moves.toRow(move));
+    assertEquals(3, Moves.toCol(move));
+
+    move = Moves.encode(20002, 10000, Moves.UP);
+    assertEquals(20002, Moves.fromRow(move));
+    assertEquals(10000, Moves.fromCol(move));
+    assertEquals(20000, Moves.toRow(move));
+    assertEquals(10000, Moves.toCol(move));
+  }
+
+  /**
+   * Test that the regular board lists the four moves into the center.
+   */
+  @Test
+  public void testLegalMovesAtStart() {
+    int[] moves = new int[8];
+    assertEquals(4, new MarbleSolitaireModelImpl().legalMoves(moves));
+    assertEquals(Moves.encode(1, 3, Moves.DOWN), moves[0]);
+    assertEquals(Moves.encode(3, 1, Moves.RIGHT), moves[1]);
+    assertEquals(Moves.encode(3, 5, Moves.LEFT), moves[2]);
+    assertEquals(Moves.encode(5, 3, Moves.UP), moves[3]);
+  }
+
+  /**
+   * Test that a short array is filled as far as it goes, and every move is still counted.
+   */
+  @Test
+  public void testLegalMovesShortArray() {
+    int[] moves = new int[1];
+    assertEquals(4, new BitboardMarbleSolitaireModel().legalMoves(moves));
+    assertEquals(Moves.encode(1, 3, Moves.DOWN), moves[0]);
+    assertEquals(0, new MarbleSolitaireModelImpl(1).legalMoves(moves));
+  }
+
+  /**
+   * Test that playing random games through a cursor only ever makes accepted moves, and that both
+   * models list the same moves.
+   */
+  @Test
+  public void testCursorPlaysRandomGames() {
+    Random random = new Random(3);
+    LegalMoveCursor cursor = new LegalMoveCursor();
+    LegalMoveCursor otherCursor = new LegalMoveCursor();
+    for (int armThickness = 1; armThickness <= 7; armThickness += 2) {
+      MarbleSolitaireModel model = new MarbleSolitaireModelImpl(armThickness);
+      MarbleSolitaireModel other = new BitboardMarbleSolitaireModel(armThickness);
+      while (cursor.reset(model).size() > 0) {
+        assertEquals(model.legalMoveCount(), cursor.size());
+        otherCursor.reset(other);
+        int chosen = random.nextInt(cursor.size());
+        int move = 0;
+        for (int i = 0; i <= chosen; i++) {
+          assertTrue(cursor.next());
+          assertTrue(otherCursor.next());
+          assertEquals(cursor.move(), otherCursor.move());
+          move = cursor.move();
+        }
+        assertEquals(MoveResult.OK, Moves.apply(model, move));
+        other.move(Moves.fromRow(move), Moves.fromCol(move), Moves.toRow(move),
+            Moves.toCol(move));
+      }
+      assertFalse(cursor.next());
+      assertTrue(model.isGameOver());
+      assertTrue(other.isGameOver());
+    }
+  }
+
+  /**
+   * Test that boards on both sides of the largest shared geometry list the same moves as the
+   * bitboard model, in the same order, and that games of the same size share nothing else.
+   */
+  @Test
+  public void testLegalMovesLargeBoards() {
+    Random random = new Random(5);
+    for (int armThickness = 61; armThickness <= 65; armThickness += 2) {
+      MarbleSolitaireModel model = new MarbleSolitaireModelImpl(armThickness);
+      MarbleSolitaireModel other = new BitboardMarbleSolitaireModel(armThickness);
+      MarbleSolitaireModel untouched = new MarbleSolitaireModelImpl(armThickness);
+      int[] moves = new int[4 * model.getScore()];
+      int[] otherMoves = new int[moves.length];
+      for (int step = 0; step < 300; step++) {
+        int count = model.legalMoves(moves);
+        assertEquals(other.legalMoves(otherMoves), count);
+        for (int i = 0; i < count; i++) {
+          assertEquals(otherMoves[i], moves[i]);
+        }
+        int move = moves[random.nextInt(count)];
+        assertEquals(MoveResult.OK, Moves.apply(model, move));
+        assertEquals(MoveResult.OK, Moves.apply(other, move));
+      }
+      assertEquals(new BitboardMarbleSolitaireModel(armThickness).getGameState(),
+          untouched.getGameState());
+    }
+  }
+}
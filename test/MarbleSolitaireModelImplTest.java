@@ -1,10 +1,24 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
 import org.junit.Before;
 import org.junit.Test;
+import solitaire.BoardSnapshot;
+import solitaire.Elements;
+import solitaire.HintEngine;
+import solitaire.LegalMoveCursor;
 import solitaire.MarbleSolitaireModelImpl;
+import solitaire.MoveResult;
+import solitaire.Moves;
 
 /**
  * This class tests the methods of the MarbleSolitaireModelImpl class.
@@ -173,6 +187,47 @@ public class MarbleSolitaireModelImplTest {
     new MarbleSolitaireModelImpl(4, 3, 3);
   }
 
+  /**
+   * Test that the constructor that takes three parameters will throw an exception when the arm
+   * thickness is too large for the columns to be encoded in a move.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorThreeParametersArmThicknessTooLarge() {
+    new MarbleSolitaireModelImpl(16385, 16385, 32768);
+  }
+
+  /**
+   * Test that reset rejects an arm thickness that is too large, and leaves the game as it was.
+   */
+  @Test
+  public void testResetArmThicknessTooLarge() {
+    try {
+      boardRegular.reset(16385, 16385, 32768);
+      fail("the arm thickness should be rejected");
+    } catch (IllegalArgumentException e) {
+      assertEquals(7, boardRegular.getBoardSize());
+      assertEquals(32, boardRegular.getScore());
+    }
+  }
+
+  /**
+   * Test that a move in the last column of the largest board can be taken back and made again.
+   */
+  @Test
+  public void testLargestArmThickness() {
+    MarbleSolitaireModelImpl model = new MarbleSolitaireModelImpl(16383, 16383, 32766);
+    assertEquals(32767, model.getBoardSize());
+    model.move(16383, 32764, 16383, 32766);
+    assertTrue(model.undo());
+    assertEquals(Elements.MARBLE, model.getSlotAt(16383, 32764));
+    assertEquals(Elements.MARBLE, model.getSlotAt(16383, 32765));
+    assertEquals(Elements.EMPTY, model.getSlotAt(16383, 32766));
+    assertEquals(Elements.MARBLE, model.getSlotAt(16383, 0));
+    assertTrue(model.redo());
+    assertEquals(Elements.EMPTY, model.getSlotAt(16383, 32764));
+    assertEquals(Elements.MARBLE, model.getSlotAt(16383, 32766));
+  }
+
   /**
    * Test that the constructor that takes three parameters will throw
    * an exception when the passed in empty cell coordinates are out
@@ -418,6 +473,43 @@ public class MarbleSolitaireModelImplTest {
   }
 
 
+  /**
+   * Test that tryMove reports every reason a move can be rejected, in the same order move checks
+   * them, and leaves the board unchanged.
+   */
+  @Test
+  public void testTryMoveRejections() {
+    String initialState = this.boardRegular.getGameState();
+    assertEquals(MoveResult.FROM_OUT_OF_BOUNDS, this.boardRegular.tryMove(7, 3, 3, 3));
+    assertEquals(MoveResult.TO_OUT_OF_BOUNDS, this.boardRegular.tryMove(3, 3, 3, -1));
+    assertEquals(MoveResult.FROM_INVALID, this.boardRegular.tryMove(1, 1, 3, 3));
+    assertEquals(MoveResult.TO_INVALID, this.boardRegular.tryMove(3, 3, 5, 5));
+    assertEquals(MoveResult.TO_OCCUPIED, this.boardRegular.tryMove(3, 0, 3, 2));
+    assertEquals(MoveResult.NOT_DISTANCE_TWO, this.boardRegular.tryMove(3, 0, 3, 3));
+    assertEquals(MoveResult.DIAGONAL, this.boardRegular.tryMove(1, 2, 3, 3));
+    assertEquals(initialState, this.boardRegular.getGameState());
+    assertEquals(32, this.boardRegular.getScore());
+
+    assertEquals(MoveResult.OK, this.boardRegular.tryMove(3, 1, 3, 3));
+    assertEquals(MoveResult.FROM_EMPTY, this.boardRegular.tryMove(3, 2, 3, 1));
+    assertEquals(MoveResult.NO_MARBLE_JUMPED, this.boardRegular.tryMove(3, 0, 3, 2));
+    assertEquals(31, this.boardRegular.getScore());
+  }
+
+  /**
+   * Test that move throws the message of the result tryMove would have returned.
+   */
+  @Test
+  public void testMoveMessageMatchesTryMove() {
+    try {
+      this.boardRegular.move(3, 0, 3, 2);
+    } catch (IllegalArgumentException e) {
+      assertEquals(MoveResult.TO_OCCUPIED.getMessage(), e.getMessage());
+      return;
+    }
+    fail("move should have been rejected");
+  }
+
   /**
    * Test a valid move to the right.
    */
@@ -560,6 +652,185 @@ public class MarbleSolitaireModelImplTest {
 
   }
 
+  /**
+   * Test that legalMoveCount counts the moves into the empty cell at the start of the game.
+   */
+  @Test
+  public void testLegalMoveCountAtStart() {
+    assertEquals(4, this.boardRegular.legalMoveCount());
+    assertEquals(4, this.boardCustomWidth.legalMoveCount());
+    assertEquals(4, this.boardCustomEmptyCell.legalMoveCount());
+    assertEquals(4, this.boardCustomEmptyCellAndArmThickness.legalMoveCount());
+    assertEquals(0, this.superSmallBoard.legalMoveCount());
+    assertEquals(2, new MarbleSolitaireModelImpl(0, 2).legalMoveCount());
+  }
+
+  /**
+   * Test that legalMoveCount stays equal to a full recount of the board during random games.
+   */
+  @Test
+  public void testLegalMoveCountMatchesRecount() {
+    Random random = new Random(7);
+    for (int armThickness = 1; armThickness <= 9; armThickness += 2) {
+      MarbleSolitaireModelImpl model = new MarbleSolitaireModelImpl(armThickness);
+      int boardWidth = 2 * armThickness + 1;
+      while (!model.isGameOver()) {
+        int fromRow = random.nextInt(boardWidth);
+        int fromCol = random.nextInt(boardWidth);
+        int toRow = fromRow;
+        int toCol = fromCol;
+        if (random.nextBoolean()) {
+          toRow += random.nextBoolean() ? 2 : -2;
+        } else {
+          toCol += random.nextBoolean() ? 2 : -2;
+        }
+        if (model.tryMove(fromRow, fromCol, toRow, toCol) == MoveResult.OK) {
+          assertEquals(countLegalMoves(model.getGameState()), model.legalMoveCount());
+        }
+      }
+      assertEquals(0, countLegalMoves(model.getGameState()));
+    }
+  }
+
+  /**
+   * Count the legal moves of a board by scanning every line of three cells in its game state.
+   */
+  private static int countLegalMoves(String gameState) {
+    String[] rows = gameState.split("\n");
+    int boardWidth = rows.length;
+    char[][] cells = new char[boardWidth][boardWidth];
+    for (int i = 0; i < boardWidth; i++) {
+      for (int j = 0; j < boardWidth; j++) {
+        cells[i][j] = rows[i].charAt(2 * j);
+      }
+    }
+    int count = 0;
+    for (int i = 0; i < boardWidth; i++) {
+      for (int j = 0; j < boardWidth; j++) {
+        if (j + 2 < boardWidth) {
+          count += legalMovesIn(cells[i][j], cells[i][j + 1], cells[i][j + 2]);
+        }
+        if (i + 2 < boardWidth) {
+          count += legalMovesIn(cells[i][j], cells[i + 1][j], cells[i + 2][j]);
+        }
+      }
+    }
+    return count;
+  }
+
+  private static int legalMovesIn(char first, char middle, char last) {
+    if (middle == 'O' && ((first == 'O' && last == '_') || (first == '_' && last == 'O'))) {
+      return 1;
+    }
+    return 0;
+  }
+
+  /**
+   * Test that the four constructors give the same hash to the same starting position.
+   */
+  @Test
+  public void testPositionHashConstructors() {
+    long hash = this.boardRegular.positionHash();
+    assertEquals(hash, new MarbleSolitaireModelImpl(3).positionHash());
+    assertEquals(hash, new MarbleSolitaireModelImpl(3, 3).positionHash());
+    assertEquals(hash, new MarbleSolitaireModelImpl(3, 3, 3).positionHash());
+    assertEquals(this.boardCustomEmptyCell.positionHash(),
+        new MarbleSolitaireModelImpl(3, 2, 3).positionHash());
+    assertNotEquals(hash, this.boardCustomEmptyCell.positionHash());
+    assertNotEquals(this.boardCustomWidth.positionHash(),
+        this.boardCustomEmptyCellAndArmThickness.positionHash());
+  }
+
+  /**
+   * Test that the hash changes with every move, and that the same position reached by different
+   * moves has the same hash.
+   */
+  @Test
+  public void testPositionHashMoves() {
+    long start = this.boardRegular.positionHash();
+    this.boardRegular.move(3, 1, 3, 3);
+    assertNotEquals(start, this.boardRegular.positionHash());
+
+    //empty (2,1), (1,2) and (0,2) in two ways, from two different starts
+    MarbleSolitaireModelImpl first = new MarbleSolitaireModelImpl(2, 0);
+    first.move(2, 2, 2, 0);
+    first.move(0, 2, 2, 2);
+    MarbleSolitaireModelImpl second = new MarbleSolitaireModelImpl(2, 3);
+    second.move(2, 1, 2, 3);
+    second.move(0, 2, 2, 2);
+    assertEquals(first.getGameState(), second.getGameState());
+    assertEquals(first.positionHash(), second.positionHash());
+  }
+
+  /**
+   * Test that undo and redo do nothing when there is no move to take back or make again.
+   */
+  @Test
+  public void testUndoRedoNothing() {
+    assertFalse(this.boardRegular.undo());
+    assertFalse(this.boardRegular.redo());
+    assertEquals(32, this.boardRegular.getScore());
+  }
+
+  /**
+   * Test that undo restores the board, the score, the legal moves and the hash, and that redo
+   * makes the move again.
+   */
+  @Test
+  public void testUndoRedo() {
+    String start = this.boardRegular.getGameState();
+    long startHash = this.boardRegular.positionHash();
+    this.boardRegular.move(3, 1, 3, 3);
+    String afterMove = this.boardRegular.getGameState();
+    int afterMoveLegalMoves = this.boardRegular.legalMoveCount();
+
+    assertTrue(this.boardRegular.undo());
+    assertEquals(start, this.boardRegular.getGameState());
+    assertEquals(32, this.boardRegular.getScore());
+    assertEquals(4, this.boardRegular.legalMoveCount());
+    assertEquals(startHash, this.boardRegular.positionHash());
+    assertFalse(this.boardRegular.undo());
+
+    assertTrue(this.boardRegular.redo());
+    assertEquals(afterMove, this.boardRegular.getGameState());
+    assertEquals(31, this.boardRegular.getScore());
+    assertEquals(afterMoveLegalMoves, this.boardRegular.legalMoveCount());
+    assertFalse(this.boardRegular.redo());
+  }
+
+  /**
+   * Test that a new move discards the moves that could be made again, and that a whole game can
+   * be taken back and made again.
+   */
+  @Test
+  public void testUndoRedoWholeGame() {
+    String start = this.boardRegular.getGameState();
+    this.boardRegular.move(1, 3, 3, 3);
+    this.boardRegular.undo();
+    this.boardRegular.move(3, 1, 3, 3);
+    assertFalse(this.boardRegular.redo());
+
+    LegalMoveCursor cursor = new LegalMoveCursor();
+    int moves = 1;
+    while (cursor.reset(this.boardRegular).next()) {
+      Moves.apply(this.boardRegular, cursor.move());
+      moves++;
+    }
+    String end = this.boardRegular.getGameState();
+    int endScore = this.boardRegular.getScore();
+    for (int i = 0; i < moves; i++) {
+      assertTrue(this.boardRegular.undo());
+    }
+    assertFalse(this.boardRegular.undo());
+    assertEquals(start, this.boardRegular.getGameState());
+    for (int i = 0; i < moves; i++) {
+      assertTrue(this.boardRegular.redo());
+    }
+    assertEquals(end, this.boardRegular.getGameState());
+    assertEquals(endScore, this.boardRegular.getScore());
+    assertTrue(this.boardRegular.isGameOver());
+  }
+
   /**
    * Test the getGameState method.
    */
@@ -659,4 +930,208 @@ public class MarbleSolitaireModelImplTest {
     //for the supersmall board with arm thickness of 1, it should have 4 marble at the beginning
     assertEquals(this.superSmallBoard.getScore(), 4);
   }
-}
\ No newline at end of file
+
+  /**
+   * Test that a board with a very large arm thickness is built without visiting every cell, and
+   * that it can be played.
+   */
+  @Test
+  public void testHugeBoard() {
+    MarbleSolitaireModelImpl huge = new MarbleSolitaireModelImpl(10001);
+    assertEquals(20003, huge.getBoardSize());
+    assertEquals(300080004, huge.getScore());
+    assertEquals(4, huge.legalMoveCount());
+    assertEquals(Elements.INVALID, huge.getSlotAt(0, 0));
+    assertEquals(Elements.MARBLE, huge.getSlotAt(0, 5001));
+    assertEquals(Elements.EMPTY, huge.getSlotAt(10001, 10001));
+    huge.move(9999, 10001, 10001, 10001);
+    assertEquals(300080003, huge.getScore());
+    assertEquals(6, huge.legalMoveCount());
+    assertEquals(Elements.EMPTY, huge.getSlotAt(9999, 10001));
+    assertEquals(Elements.EMPTY, huge.getSlotAt(10000, 10001));
+    assertEquals(Elements.MARBLE, huge.getSlotAt(10001, 10001));
+    assertTrue(huge.undo());
+    assertEquals(4, huge.legalMoveCount());
+  }
+
+  /**
+   * Test that a reset game plays exactly like a new game, on the same and on other boards.
+   */
+  @Test
+  public void testReset() {
+    MarbleSolitaireModelImpl game = new MarbleSolitaireModelImpl();
+    game.move(1, 3, 3, 3);
+    game.move(4, 3, 2, 3);
+    game.undo();
+    game.reset(3, 2, 3);
+    MarbleSolitaireModelImpl expected = new MarbleSolitaireModelImpl(3, 2, 3);
+    assertEquals(expected.getGameState(), game.getGameState());
+    assertEquals(expected.getScore(), game.getScore());
+    assertEquals(expected.legalMoveCount(), game.legalMoveCount());
+    assertEquals(expected.positionHash(), game.positionHash());
+    assertFalse(game.undo());
+    assertFalse(game.redo());
+    game.move(0, 3, 2, 3);
+    expected.move(0, 3, 2, 3);
+    assertEquals(expected.positionHash(), game.positionHash());
+
+    game.reset(5, 5, 5);
+    expected = new MarbleSolitaireModelImpl(5);
+    assertEquals(expected.getGameState(), game.getGameState());
+    assertEquals(expected.positionHash(), game.positionHash());
+    game.reset(1, 1, 1);
+    assertEquals(new MarbleSolitaireModelImpl(1).getGameState(), game.getGameState());
+    assertTrue(game.isGameOver());
+  }
+
+  /**
+   * Test that reset rejects the arguments the constructor rejects, and leaves the game as it was.
+   */
+  @Test
+  public void testResetInvalid() {
+    MarbleSolitaireModelImpl game = new MarbleSolitaireModelImpl();
+    game.move(1, 3, 3, 3);
+    String state = game.getGameState();
+    try {
+      game.reset(4, 3, 3);
+      fail("an even arm thickness should be rejected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Invalid arm thickness, it should be a positive odd number", e.getMessage());
+    }
+    try {
+      game.reset(3, 0, 0);
+      fail("an invalid empty cell should be rejected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Invalid empty cell position", e.getMessage());
+    }
+    assertEquals(state, game.getGameState());
+    assertTrue(game.undo());
+  }
+
+  /**
+   * Test the positions that are proven lost from the start: the regular board can be solved,
+   * the smallest board has no move, and the centers of the boards of arm thickness 5 and 7 are
+   * in a position class that no single marble is in.
+   */
+  @Test
+  public void testIsProvablyLostAtStart() {
+    assertFalse(this.boardRegular.isProvablyLost());
+    assertFalse(this.boardCustomEmptyCell.isProvablyLost());
+    assertTrue(this.superSmallBoard.isProvablyLost());
+    assertTrue(new MarbleSolitaireModelImpl(5).isProvablyLost());
+    assertTrue(new MarbleSolitaireModelImpl(7).isProvablyLost());
+    assertFalse(new MarbleSolitaireModelImpl(9).isProvablyLost());
+  }
+
+  /**
+   * Test that no position proven lost can be solved, and that the counts kept by the moves agree
+   * with the counts of the same position built from a snapshot.
+   */
+  @Test
+  public void testIsProvablyLostRandomGames() {
+    Random random = new Random(11);
+    HintEngine hints = new HintEngine();
+    int[] moves = new int[200];
+    for (int game = 0; game < 40; game++) {
+      int armThickness = game % 2 == 0 ? 3 : 5;
+      int boardWidth = 2 * armThickness + 1;
+      int emptyRow = armThickness - 1 + random.nextInt(3);
+      int emptyCol = random.nextInt(boardWidth);
+      MarbleSolitaireModelImpl model = new MarbleSolitaireModelImpl(armThickness, emptyRow,
+          emptyCol);
+      while (true) {
+        boolean lost = model.isProvablyLost();
+        assertEquals(lost, BoardSnapshot.of(model).toModel().isProvablyLost());
+        if (lost && armThickness == 3 && model.getScore() <= 12) {
+          assertTrue(hints.bestScore(model) > 1);
+        }
+        int count = model.legalMoves(moves);
+        if (count == 0) {
+          break;
+        }
+        Moves.apply(model, moves[random.nextInt(count)]);
+      }
+      assertEquals(model.getScore() > 1, model.isProvablyLost());
+      while (model.undo()) {
+        assertEquals(BoardSnapshot.of(model).toModel().isProvablyLost(), model.isProvablyLost());
+      }
+    }
+  }
+
+  /**
+   * Test that the game state is kept while the board does not change, and made again after every
+   * move, undo, redo and reset.
+   */
+  @Test
+  public void testGameStateKeptUntilChange() {
+    MarbleSolitaireModelImpl model = new MarbleSolitaireModelImpl();
+    String start = model.getGameState();
+    assertSame(start, model.getGameState());
+    assertNotEquals(MoveResult.OK, model.tryMove(3, 3, 3, 5));
+    assertSame(start, model.getGameState());
+    model.move(1, 3, 3, 3);
+    String moved = model.getGameState();
+    assertEquals(Elements.EMPTY.getDisplayName(), moved.substring(20, 21));
+    assertSame(moved, model.getGameState());
+    assertTrue(model.undo());
+    assertEquals(start, model.getGameState());
+    assertTrue(model.redo());
+    assertEquals(moved, model.getGameState());
+    model.reset(3, 3, 3);
+    assertEquals(start, model.getGameState());
+    model.reset(1, 1, 1);
+    assertEquals(new MarbleSolitaireModelImpl(1).getGameState(), model.getGameState());
+  }
+
+  /**
+   * Test that rendering to a destination or to a buffer writes exactly the game state, whether
+   * the game state was already made or not, over random games on boards of several sizes.
+   */
+  @Test
+  public void testRenderTo() throws IOException {
+    Random random = new Random(25);
+    int[] moves = new int[1024];
+    for (int armThickness = 1; armThickness <= 7; armThickness += 2) {
+      MarbleSolitaireModelImpl model = new MarbleSolitaireModelImpl(armThickness);
+      int length = 2 * model.getBoardSize() * model.getBoardSize() - 1;
+      while (true) {
+        StringBuilder rendered = new StringBuilder("> ");
+        model.renderTo(rendered);
+        ByteBuffer buffer = ByteBuffer.allocate(length + 2);
+        buffer.put((byte) '>');
+        model.renderTo(buffer);
+        assertEquals(length + 1, buffer.position());
+        String state = model.getGameState();
+        assertEquals(length, state.length());
+        assertEquals("> " + state, rendered.toString());
+        assertEquals(">" + state, new String(buffer.array(), 0, length + 1,
+            StandardCharsets.US_ASCII));
+        rendered.setLength(0);
+        model.renderTo(rendered);
+        assertEquals(state, rendered.toString());
+        int count = model.legalMoves(moves);
+        if (count == 0) {
+          break;
+        }
+        Moves.apply(model, moves[random.nextInt(count)]);
+      }
+    }
+  }
+
+  /**
+   * Test that rendering to a buffer that is too small writes nothing.
+   */
+  @Test
+  public void testRenderToBufferTooSmall() {
+    ByteBuffer buffer = ByteBuffer.allocate(97);
+    buffer.put((byte) 1);
+    try {
+      boardRegular.renderTo(buffer);
+      fail("the buffer should be too small");
+    } catch (BufferOverflowException e) {
+      assertEquals(1, buffer.position());
+      assertEquals(0, buffer.get(1));
+    }
+  }
+
+}
@@ -0,0 +1,80 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import solitaire.MarbleSolitaireModelImpl;
+import solitaire.MarbleSolitaireModelPool;
+
+/**
+ * This class tests the methods of the MarbleSolitaireModelPool class.
+ */
+public class MarbleSolitaireModelPoolTest {
+
+  /**
+   * Test that a released game is handed out again, reset to the requested board.
+   */
+  @Test
+  public void testReuse() {
+    MarbleSolitaireModelPool pool = new MarbleSolitaireModelPool(2);
+    MarbleSolitaireModelImpl game = pool.acquire();
+    game.move(1, 3, 3, 3);
+    assertTrue(pool.release(game));
+    assertEquals(1, pool.size());
+    MarbleSolitaireModelImpl again = pool.acquire(3, 2, 3);
+    assertSame(game, again);
+    assertEquals(0, pool.size());
+    assertEquals(new MarbleSolitaireModelImpl(3, 2, 3).getGameState(), again.getGameState());
+    assertFalse(again.undo());
+    assertNotSame(again, pool.acquire());
+  }
+
+  /**
+   * Test that a full pool drops the games given back to it.
+   */
+  @Test
+  public void testCapacity() {
+    MarbleSolitaireModelPool pool = new MarbleSolitaireModelPool(1);
+    assertTrue(pool.release(new MarbleSolitaireModelImpl()));
+    assertFalse(pool.release(new MarbleSolitaireModelImpl()));
+    assertEquals(1, pool.size());
+  }
+
+  /**
+   * Test that an invalid board is rejected without losing the pooled game.
+   */
+  @Test
+  public void testAcquireInvalid() {
+    MarbleSolitaireModelPool pool = new MarbleSolitaireModelPool(1);
+    MarbleSolitaireModelImpl game = new MarbleSolitaireModelImpl();
+    pool.release(game);
+    try {
+      pool.acquire(3, 0, 0);
+      fail("an invalid empty cell should be rejected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Invalid empty cell position", e.getMessage());
+    }
+    assertEquals(1, pool.size());
+    assertSame(game, pool.acquire(5, 5, 5));
+    assertEquals(11, game.getBoardSize());
+  }
+
+  /**
+   * Test that the constructor will throw an exception when the capacity is not positive.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorInvalidCapacity() {
+    new MarbleSolitaireModelPool(0);
+  }
+
+  /**
+   * Test that release will throw an exception when the game is null.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testReleaseNull() {
+    new MarbleSolitaireModelPool(1).release(null);
+  }
+}
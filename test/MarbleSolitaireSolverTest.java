@@ -0,0 +1,98 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import solitaire.MarbleSolitaireModel;
+import solitaire.MarbleSolitaireModelImpl;
+import solitaire.MarbleSolitaireSolver;
+import solitaire.MoveResult;
+import solitaire.Moves;
+import solitaire.SolverResult;
+
+/**
+ * This class tests the MarbleSolitaireSolver class.
+ */
+public class MarbleSolitaireSolverTest {
+
+  /**
+   * Test that the regular board is solved, and that replaying the moves leaves one marble.
+   */
+  @Test
+  public void testSolveRegularBoard() {
+    SolverResult result = new MarbleSolitaireSolver().solve(new MarbleSolitaireModelImpl());
+    assertTrue(result.isSolvable());
+    assertEquals(31, result.getMoves().length);
+    assertTrue(result.getNodes() > 0);
+    assertReplaysToOneMarble(new MarbleSolitaireModelImpl(), result.getMoves());
+  }
+
+  /**
+   * Test that a board whose empty cell is not at the center is solved.
+   */
+  @Test
+  public void testSolveCustomEmptyCell() {
+    SolverResult result = new MarbleSolitaireSolver().solve(new MarbleSolitaireModelImpl(2, 3));
+    assertTrue(result.isSolvable());
+    assertReplaysToOneMarble(new MarbleSolitaireModelImpl(2, 3), result.getMoves());
+  }
+
+  /**
+   * Test that solving starts from the current position of the model, and leaves it unchanged.
+   */
+  @Test
+  public void testSolveMidGame() {
+    MarbleSolitaireModel model = new MarbleSolitaireModelImpl();
+    model.move(1, 3, 3, 3);
+    model.move(2, 1, 2, 3);
+    String gameState = model.getGameState();
+    SolverResult result = new MarbleSolitaireSolver().solve(model);
+    assertEquals(gameState, model.getGameState());
+    assertTrue(result.isSolvable());
+    assertEquals(29, result.getMoves().length);
+    assertReplaysToOneMarble(model, result.getMoves());
+  }
+
+  /**
+   * Test that a board with no moves and more than one marble is proven unsolvable.
+   */
+  @Test
+  public void testUnsolvableBoards() {
+    SolverResult result = new MarbleSolitaireSolver().solve(new MarbleSolitaireModelImpl(1));
+    assertFalse(result.isSolvable());
+    assertEquals(0, result.getMoves().length);
+    assertEquals(1, result.getNodes());
+
+    //play the regular board until it is over with 5 marbles left
+    MarbleSolitaireModel model = new MarbleSolitaireModelImpl();
+    int[][] moves = {{1, 3, 3, 3}, {2, 1, 2, 3}, {0, 2, 2, 2}, {4, 1, 2, 1}, {3, 3, 3, 1},
+        {4, 3, 4, 1}, {3, 0, 3, 2}, {4, 0, 4, 2}, {3, 2, 1, 2}, {2, 0, 2, 2}, {4, 5, 4, 3},
+        {6, 4, 4, 4}, {6, 2, 6, 4}, {5, 2, 5, 4}, {4, 3, 4, 5}, {2, 2, 0, 2}, {6, 4, 4, 4},
+        {4, 5, 4, 3}, {4, 2, 4, 4}, {3, 4, 5, 4}, {1, 4, 3, 4}, {2, 6, 2, 4}, {2, 4, 4, 4},
+        {4, 6, 2, 6}, {5, 4, 3, 4}, {3, 5, 3, 3}};
+    for (int[] move : moves) {
+      model.move(move[0], move[1], move[2], move[3]);
+    }
+    //one move before the end, no move can finish with a single marble
+    result = new MarbleSolitaireSolver().solve(model);
+    assertFalse(result.isSolvable());
+    model.move(2, 3, 4, 3);
+    assertEquals(5, model.getScore());
+    assertFalse(new MarbleSolitaireSolver().solve(model).isSolvable());
+  }
+
+  /**
+   * Test that boards with more than 64 cells are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testSolveLargeBoard() {
+    new MarbleSolitaireSolver().solve(new MarbleSolitaireModelImpl(5));
+  }
+
+  private static void assertReplaysToOneMarble(MarbleSolitaireModel model, int[] moves) {
+    for (int move : moves) {
+      assertEquals(MoveResult.OK, Moves.apply(model, move));
+    }
+    assertEquals(1, model.getScore());
+  }
+}
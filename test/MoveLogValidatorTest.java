@@ -0,0 +1,167 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import solitaire.GameVerdict;
+import solitaire.MarbleSolitaireModelImpl;
+import solitaire.MoveLogValidator;
+import solitaire.MoveResult;
+import solitaire.Moves;
+
+/**
+ * This class tests the methods of the MoveLogValidator class.
+ */
+public class MoveLogValidatorTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static ReadableByteChannel channel(String log) {
+    return Channels.newChannel(new ByteArrayInputStream(log.getBytes(StandardCharsets.US_ASCII)));
+  }
+
+  private static List<GameVerdict> validate(String log) throws IOException {
+    List<GameVerdict> verdicts = new ArrayList<>();
+    try (MoveLogValidator validator = new MoveLogValidator(3, 2)) {
+      assertEquals(validator.validate(channel(log), verdicts::add), verdicts.size());
+    }
+    return verdicts;
+  }
+
+  /**
+   * Test that legal games, illegal games, comments and blank lines are reported in order.
+   */
+  @Test
+  public void testVerdicts() throws IOException {
+    String log = "# arm, empty cell, moves\n"
+        + "3 3 3 1 3 3 3 2 1 2 3\n"
+        + "\n"
+        + "3 3 3 1 3 3 3 1 3 3 3 0 2 2 2\n"
+        + "3,3,3,1,2,3,3   # diagonal\r\n"
+        + "1 1 1\n"
+        + "5 5 5";
+    List<GameVerdict> verdicts = validate(log);
+    assertEquals(5, verdicts.size());
+    assertTrue(verdicts.get(0).isValid());
+    assertEquals(30, verdicts.get(0).getScore());
+    assertEquals(-1, verdicts.get(0).getFailedMove());
+    assertFalse(verdicts.get(1).isValid());
+    assertEquals(1, verdicts.get(1).getFailedMove());
+    assertEquals(MoveResult.TO_OCCUPIED, verdicts.get(1).getReason());
+    assertEquals(31, verdicts.get(1).getScore());
+    assertEquals(MoveResult.DIAGONAL, verdicts.get(2).getReason());
+    assertEquals(32, verdicts.get(2).getScore());
+    assertTrue(verdicts.get(3).isValid());
+    assertTrue(verdicts.get(3).isGameOver());
+    assertEquals(84, verdicts.get(4).getScore());
+    for (int i = 0; i < verdicts.size(); i++) {
+      assertEquals(i, verdicts.get(i).getGame());
+    }
+    assertEquals("1,TO_OCCUPIED,1,31,false", verdicts.get(1).toString());
+  }
+
+  /**
+   * Test that many random games read from a file and replayed in parallel on reused models get
+   * the same verdicts as replaying each one on a new model.
+   */
+  @Test
+  public void testRandomGamesFromFile() throws IOException {
+    Random random = new Random(23);
+    int[] moves = new int[64];
+    StringBuilder log = new StringBuilder();
+    List<String> expected = new ArrayList<>();
+    for (int game = 0; game < 500; game++) {
+      int armThickness = random.nextBoolean() ? 3 : 5;
+      int center = armThickness;
+      MarbleSolitaireModelImpl model = new MarbleSolitaireModelImpl(armThickness);
+      log.append(armThickness).append(' ').append(center).append(' ').append(center);
+      int failedMove = -1;
+      MoveResult reason = MoveResult.OK;
+      int length = random.nextInt(30);
+      for (int i = 0; i < length && model.legalMoves(moves) > 0; i++) {
+        int move = moves[random.nextInt(Math.min(moves.length, model.legalMoveCount()))];
+        int toRow = Moves.toRow(move);
+        if (random.nextInt(40) == 0) {
+          toRow++;
+        }
+        log.append(' ').append(Moves.fromRow(move)).append(' ').append(Moves.fromCol(move))
+            .append(' ').append(toRow).append(' ').append(Moves.toCol(move));
+        MoveResult result = model.tryMove(Moves.fromRow(move), Moves.fromCol(move), toRow,
+            Moves.toCol(move));
+        if (result != MoveResult.OK) {
+          failedMove = i;
+          reason = result;
+          break;
+        }
+      }
+      log.append('\n');
+      expected.add(game + "," + reason + "," + failedMove + "," + model.getScore() + ","
+          + model.isGameOver());
+    }
+    Path in = folder.newFile("games.log").toPath();
+    Path out = folder.getRoot().toPath().resolve("verdicts.csv");
+    Files.writeString(in, log);
+    try (MoveLogValidator validator = new MoveLogValidator(2, 7)) {
+      assertEquals(500, validator.validate(in, out));
+    }
+    assertEquals(expected, Files.readAllLines(out));
+  }
+
+  /**
+   * Test that a line with a partial move is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testPartialMove() throws IOException {
+    validate("3 3 3 1 3 3\n");
+  }
+
+  /**
+   * Test that a game starting from an invalid empty cell is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidStart() throws IOException {
+    validate("3 0 0 1 3 3 3\n");
+  }
+
+  /**
+   * Test that a line with something other than numbers is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotANumber() throws IOException {
+    validate("3 3 3 x\n");
+  }
+
+  /**
+   * Test that a game on a board larger than a log may hold is rejected before it is built.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testArmThicknessTooLarge() throws IOException {
+    validate("20001 10000 10000\n");
+  }
+
+  /**
+   * Test that a game on the largest board a log may hold is replayed.
+   */
+  @Test
+  public void testLargestArmThickness() throws IOException {
+    int arm = MoveLogValidator.MAX_ARM_THICKNESS;
+    int center = arm;
+    List<GameVerdict> verdicts = validate(arm + " " + center + " " + center + " "
+        + (center - 2) + " " + center + " " + center + " " + center + "\n");
+    assertEquals(1, verdicts.size());
+    assertTrue(verdicts.get(0).isValid());
+  }
+}
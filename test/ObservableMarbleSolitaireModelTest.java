@@ -0,0 +1,270 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import solitaire.BitboardMarbleSolitaireModel;
+import solitaire.BoardChange;
+import solitaire.BoardChangeListener;
+import solitaire.Elements;
+import solitaire.MarbleSolitaireModel;
+import solitaire.MarbleSolitaireModelImpl;
+import solitaire.MoveResult;
+import solitaire.Moves;
+import solitaire.ObservableMarbleSolitaireModel;
+
+/**
+ * This class tests the methods of the ObservableMarbleSolitaireModel and BoardChange classes.
+ */
+public class ObservableMarbleSolitaireModelTest {
+
+  /**
+   * Read every cell of a model.
+   */
+  private static Elements[][] cells(MarbleSolitaireModel model) {
+    Elements[][] cells = new Elements[model.getBoardSize()][model.getBoardSize()];
+    for (int row = 0; row < cells.length; row++) {
+      for (int col = 0; col < cells.length; col++) {
+        cells[row][col] = model.getSlotAt(row, col);
+      }
+    }
+    return cells;
+  }
+
+  /**
+   * Test that a move, taking it back and making it again are described by their cells, score and
+   * whether the game is over.
+   */
+  @Test
+  public void testChanges() {
+    ObservableMarbleSolitaireModel model =
+        new ObservableMarbleSolitaireModel(new MarbleSolitaireModelImpl());
+    List<BoardChange> changes = new ArrayList<>();
+    model.addBoardChangeListener(changes::add);
+    model.move(1, 3, 3, 3);
+    assertTrue(model.undo());
+    assertTrue(model.redo());
+    assertEquals(3, changes.size());
+    for (BoardChange change : changes) {
+      assertEquals(Moves.encode(1, 3, Moves.DOWN), change.getMove());
+      assertEquals(1, change.getFromRow());
+      assertEquals(3, change.getFromCol());
+      assertEquals(2, change.getOverRow());
+      assertEquals(3, change.getOverCol());
+      assertEquals(3, change.getToRow());
+      assertEquals(3, change.getToCol());
+      assertFalse(change.isGameOver());
+    }
+    assertFalse(changes.get(0).isUndo());
+    assertEquals(31, changes.get(0).getScore());
+    assertEquals(Elements.EMPTY, changes.get(0).getFromElement());
+    assertEquals(Elements.MARBLE, changes.get(0).getToElement());
+    assertTrue(changes.get(1).isUndo());
+    assertEquals(32, changes.get(1).getScore());
+    assertEquals(Elements.MARBLE, changes.get(1).getFromElement());
+    assertEquals(Elements.EMPTY, changes.get(1).getToElement());
+    assertFalse(changes.get(2).isUndo());
+    assertEquals(31, changes.get(2).getScore());
+  }
+
+  /**
+   * Test that a copy of the board kept up to date from the changes alone matches the board, over
+   * random games of both models with moves taken back and made again.
+   */
+  @Test
+  public void testReplayChanges() {
+    Random random = new Random(24);
+    int[] moves = new int[1024];
+    for (int game = 0; game < 20; game++) {
+      ObservableMarbleSolitaireModel model = new ObservableMarbleSolitaireModel(
+          game % 2 == 0 ? new MarbleSolitaireModelImpl(5) : new BitboardMarbleSolitaireModel());
+      Elements[][] copy = cells(model);
+      BoardChange[] last = new BoardChange[1];
+      model.addBoardChangeListener(change -> {
+        copy[change.getFromRow()][change.getFromCol()] = change.getFromElement();
+        copy[change.getOverRow()][change.getOverCol()] = change.getFromElement();
+        copy[change.getToRow()][change.getToCol()] = change.getToElement();
+        last[0] = change;
+      });
+      while (!model.isGameOver()) {
+        int count = model.legalMoves(moves);
+        assertEquals(MoveResult.OK, Moves.apply(model, moves[random.nextInt(count)]));
+        if (random.nextInt(4) == 0) {
+          assertTrue(model.undo());
+          if (random.nextBoolean()) {
+            assertTrue(model.redo());
+          }
+        }
+        assertTrue(Arrays.deepEquals(cells(model), copy));
+        assertEquals(model.getScore(), last[0].getScore());
+        assertEquals(model.isGameOver(), last[0].isGameOver());
+      }
+      while (model.undo()) {
+        assertTrue(Arrays.deepEquals(cells(model), copy));
+      }
+    }
+  }
+
+  /**
+   * Test that rejected moves, and moves made before the game was wrapped, change nothing and are
+   * not reported.
+   */
+  @Test
+  public void testNoChange() {
+    MarbleSolitaireModel inner = new MarbleSolitaireModelImpl();
+    inner.move(1, 3, 3, 3);
+    ObservableMarbleSolitaireModel model = new ObservableMarbleSolitaireModel(inner);
+    List<BoardChange> changes = new ArrayList<>();
+    BoardChangeListener listener = changes::add;
+    model.addBoardChangeListener(listener);
+    assertFalse(model.undo());
+    assertFalse(model.redo());
+    assertEquals(31, model.getScore());
+    assertEquals(MoveResult.TO_OCCUPIED, model.tryMove(3, 1, 3, 3));
+    try {
+      model.move(0, 0, 0, 2);
+      fail("the move should be rejected");
+    } catch (IllegalArgumentException e) {
+      assertEquals(31, model.getScore());
+    }
+    assertTrue(changes.isEmpty());
+    assertTrue(model.removeBoardChangeListener(listener));
+    assertFalse(model.removeBoardChangeListener(listener));
+    model.move(2, 1, 2, 3);
+    assertTrue(changes.isEmpty());
+  }
+
+  /**
+   * Test that subscribers are given every change in order, and are completed when the game is
+   * closed.
+   */
+  @Test
+  public void testSubscriber() throws InterruptedException {
+    ObservableMarbleSolitaireModel model =
+        new ObservableMarbleSolitaireModel(new MarbleSolitaireModelImpl());
+    List<BoardChange> expected = new ArrayList<>();
+    model.addBoardChangeListener(expected::add);
+    List<BoardChange> published = new ArrayList<>();
+    CountDownLatch completed = new CountDownLatch(1);
+    model.subscribe(new Flow.Subscriber<BoardChange>() {
+      @Override
+      public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+      }
+
+      @Override
+      public void onNext(BoardChange change) {
+        published.add(change);
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+        fail(throwable.toString());
+      }
+
+      @Override
+      public void onComplete() {
+        completed.countDown();
+      }
+    });
+    int[] moves = new int[128];
+    Random random = new Random(25);
+    while (!model.isGameOver()) {
+      model.legalMoves(moves);
+      Moves.apply(model, moves[random.nextInt(model.legalMoveCount())]);
+    }
+    model.undo();
+    model.close();
+    assertTrue(completed.await(10, TimeUnit.SECONDS));
+    assertEquals(expected, published);
+    model.redo();
+    assertEquals(expected.size() - 1, published.size());
+  }
+
+  /**
+   * Test that a listener that throws is reported, and does not keep a change from the other
+   * listeners or from the game.
+   */
+  @Test
+  public void testFailingListener() {
+    ObservableMarbleSolitaireModel model =
+        new ObservableMarbleSolitaireModel(new MarbleSolitaireModelImpl());
+    List<BoardChange> changes = new ArrayList<>();
+    model.addBoardChangeListener(change -> {
+      throw new IllegalStateException("listener failed");
+    });
+    model.addBoardChangeListener(changes::add);
+    List<Throwable> reported = new ArrayList<>();
+    Thread thread = Thread.currentThread();
+    Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+    thread.setUncaughtExceptionHandler((t, e) -> reported.add(e));
+    try {
+      assertEquals(MoveResult.OK, model.tryMove(1, 3, 3, 3));
+      assertTrue(model.undo());
+      assertTrue(model.redo());
+    } finally {
+      thread.setUncaughtExceptionHandler(handler);
+    }
+    assertEquals(3, changes.size());
+    assertEquals(3, reported.size());
+    assertEquals("listener failed", reported.get(0).getMessage());
+    assertEquals(31, model.getScore());
+  }
+
+  /**
+   * Test that a subscriber that falls a full buffer behind never holds up the player, and is
+   * given an error instead of the changes after the ones it missed.
+   */
+  @Test
+  public void testSlowSubscriber() throws InterruptedException {
+    ObservableMarbleSolitaireModel model =
+        new ObservableMarbleSolitaireModel(new MarbleSolitaireModelImpl());
+    List<BoardChange> published = new ArrayList<>();
+    Flow.Subscription[] subscription = new Flow.Subscription[1];
+    Throwable[] error = new Throwable[1];
+    CountDownLatch subscribed = new CountDownLatch(1);
+    CountDownLatch failed = new CountDownLatch(1);
+    model.subscribe(new Flow.Subscriber<BoardChange>() {
+      @Override
+      public void onSubscribe(Flow.Subscription s) {
+        subscription[0] = s;
+        subscribed.countDown();
+      }
+
+      @Override
+      public void onNext(BoardChange change) {
+        published.add(change);
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+        error[0] = throwable;
+        failed.countDown();
+      }
+
+      @Override
+      public void onComplete() {
+        fail("a subscriber that missed changes should not be completed");
+      }
+    });
+    assertTrue(subscribed.await(10, TimeUnit.SECONDS));
+    int changes = 4 * Flow.defaultBufferSize();
+    for (int i = 0; i < changes / 2; i++) {
+      assertEquals(MoveResult.OK, model.tryMove(1, 3, 3, 3));
+      assertTrue(model.undo());
+    }
+    subscription[0].request(Long.MAX_VALUE);
+    model.close();
+    assertTrue(failed.await(10, TimeUnit.SECONDS));
+    assertTrue(error[0] instanceof IllegalStateException);
+    assertTrue(published.size() < changes);
+  }
+}
@@ -0,0 +1,113 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import solitaire.LegalMoveCursor;
+import solitaire.MarbleSolitaireModel;
+import solitaire.MarbleSolitaireModelImpl;
+import solitaire.MoveResult;
+import solitaire.Moves;
+import solitaire.ParallelMarbleSolitaireSolver;
+import solitaire.SolverResult;
+
+/**
+ * This class tests the ParallelMarbleSolitaireSolver class.
+ */
+public class ParallelMarbleSolitaireSolverTest {
+
+  private ParallelMarbleSolitaireSolver solver;
+
+  /**
+   * Set up a solver with four workers.
+   */
+  @Before
+  public void setUp() {
+    this.solver = new ParallelMarbleSolitaireSolver(4);
+  }
+
+  /**
+   * Stop the workers of the solver.
+   */
+  @After
+  public void tearDown() {
+    this.solver.close();
+  }
+
+  /**
+   * Test that the constructor will throw an exception when the parallelism is not positive.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorZeroParallelism() {
+    new ParallelMarbleSolitaireSolver(0);
+  }
+
+  /**
+   * Test that the regular board is solved, and that replaying the moves leaves one marble.
+   */
+  @Test
+  public void testSolveRegularBoard() {
+    SolverResult result = this.solver.solve(new MarbleSolitaireModelImpl());
+    assertTrue(result.isSolvable());
+    MarbleSolitaireModel model = new MarbleSolitaireModelImpl();
+    for (int move : result.getMoves()) {
+      assertEquals(MoveResult.OK, Moves.apply(model, move));
+    }
+    assertEquals(1, model.getScore());
+  }
+
+  /**
+   * Test that boards without a solution are proven unsolvable.
+   */
+  @Test
+  public void testUnsolvableBoard() {
+    SolverResult result = this.solver.solve(new MarbleSolitaireModelImpl(1));
+    assertFalse(result.isSolvable());
+    assertEquals(0, result.getMoves().length);
+    assertEquals(0, this.solver.countSolutions(new MarbleSolitaireModelImpl(1)));
+  }
+
+  /**
+   * Test that the solutions counted from a late position match a count by plain recursion.
+   */
+  @Test
+  public void testCountSolutions() {
+    int[] solution = this.solver.solve(new MarbleSolitaireModelImpl()).getMoves();
+    int[] opening = Arrays.copyOf(solution, 20);
+    long expected = countByRecursion(opening);
+    assertTrue(expected > 0);
+    assertEquals(expected, this.solver.countSolutions(replay(opening)));
+  }
+
+  /**
+   * Count the solutions after a sequence of moves by trying every move, without any table.
+   */
+  private static long countByRecursion(int[] moves) {
+    MarbleSolitaireModel model = replay(moves);
+    if (model.getScore() == 1) {
+      return 1;
+    }
+    long total = 0;
+    LegalMoveCursor cursor = new LegalMoveCursor().reset(model);
+    while (cursor.next()) {
+      int[] next = Arrays.copyOf(moves, moves.length + 1);
+      next[moves.length] = cursor.move();
+      total += countByRecursion(next);
+    }
+    return total;
+  }
+
+  /**
+   * Play a sequence of moves on a new regular board.
+   */
+  private static MarbleSolitaireModel replay(int[] moves) {
+    MarbleSolitaireModel model = new MarbleSolitaireModelImpl();
+    for (int move : moves) {
+      Moves.apply(model, move);
+    }
+    return model;
+  }
+}
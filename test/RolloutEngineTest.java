@@ -0,0 +1,84 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import solitaire.HintEngine;
+import solitaire.MarbleSolitaireModel;
+import solitaire.MarbleSolitaireModelImpl;
+import solitaire.Moves;
+import solitaire.RolloutEngine;
+import solitaire.RolloutResult;
+
+/**
+ * This class tests the methods of the RolloutEngine class.
+ */
+public class RolloutEngineTest {
+
+  /**
+   * Test that the games from the opening of the regular board are all counted, end with at
+   * least one marble, and leave the model as it was.
+   */
+  @Test
+  public void testOpening() {
+    MarbleSolitaireModel model = new MarbleSolitaireModelImpl();
+    String state = model.getGameState();
+    try (RolloutEngine engine = new RolloutEngine(3)) {
+      RolloutResult result = engine.run(model, 2000, 1);
+      assertEquals(2000, result.getPlayouts());
+      long total = 0;
+      for (long count : result.getHistogram()) {
+        total += count;
+      }
+      assertEquals(2000, total);
+      assertEquals(0, result.getCount(0));
+      assertTrue(result.getMinScore() >= 1);
+      assertTrue(result.getMeanScore() > 1 && result.getMeanScore() < 32);
+    }
+    assertEquals(state, model.getGameState());
+    assertEquals(32, model.getScore());
+  }
+
+  /**
+   * Test that the same seed and parallelism give the same histogram.
+   */
+  @Test
+  public void testSeedIsReproducible() {
+    MarbleSolitaireModel model = new MarbleSolitaireModelImpl(5);
+    try (RolloutEngine first = new RolloutEngine(2); RolloutEngine second = new RolloutEngine(2)) {
+      assertArrayEquals(first.run(model, 500, 99).getHistogram(),
+          second.run(model, 500, 99).getHistogram());
+    }
+  }
+
+  /**
+   * Test that games from a position with no move all end with its score, and that games from a
+   * solvable position with two marbles all end with one.
+   */
+  @Test
+  public void testForcedOutcomes() {
+    try (RolloutEngine engine = new RolloutEngine(2)) {
+      assertEquals(7, engine.run(new MarbleSolitaireModelImpl(1), 7).getCount(4));
+
+      HintEngine hints = new HintEngine();
+      MarbleSolitaireModel model = new MarbleSolitaireModelImpl();
+      while (model.getScore() > 2) {
+        Moves.apply(model, hints.hint(model));
+      }
+      RolloutResult result = engine.run(model, 100);
+      assertEquals(100, result.getCount(1));
+      assertEquals(1, result.getMinScore());
+      assertEquals(1.0, result.getMeanScore(), 0);
+    }
+  }
+
+  /**
+   * Test that a negative number of games is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativePlayouts() {
+    try (RolloutEngine engine = new RolloutEngine(1)) {
+      engine.run(new MarbleSolitaireModelImpl(), -1);
+    }
+  }
+}